@@ -1,14 +1,30 @@
 package com.eliteinventorybackups;
 
+import com.eliteinventorybackups.backup.AutosaveScheduler;
+import com.eliteinventorybackups.backup.BackupJournal;
+import com.eliteinventorybackups.backup.BackupSnapshot;
+import com.eliteinventorybackups.backup.BackupTransfer;
+import com.eliteinventorybackups.backup.BackupWriter;
+import com.eliteinventorybackups.backup.JournalReplayer;
+import com.eliteinventorybackups.backup.LoginSnapshotDeferrer;
+import com.eliteinventorybackups.backup.RetentionSweeper;
 import com.eliteinventorybackups.config.ModConfig;
 import com.eliteinventorybackups.database.DatabaseManager;
 import com.eliteinventorybackups.commands.ViewCommand;
 import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.config.ModConfig.Type;
 
 import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.common.MinecraftForge;
@@ -20,6 +36,14 @@ public class EliteInventoryBackups {
     private static final Logger LOGGER = LogUtils.getLogger();
 
     private static DatabaseManager databaseManager;
+    private static BackupWriter backupWriter;
+    private static RetentionSweeper retentionSweeper;
+    private static AutosaveScheduler autosaveScheduler;
+    private static LoginSnapshotDeferrer loginSnapshotDeferrer;
+    private static BackupJournal backupJournal;
+    private static JournalReplayer journalReplayer;
+    private static BackupTransfer backupTransfer;
+    private static volatile boolean stopping = false;
 
     public EliteInventoryBackups() {
         LOGGER.info("Elite Inventory Backups is loading!");
@@ -42,16 +66,64 @@ public class EliteInventoryBackups {
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
         LOGGER.info("Server starting, initializing DatabaseManager with config...");
+        stopping = false;
         // Config is now loaded, safe to initialize DatabaseManager
         if (databaseManager == null) {
             databaseManager = new DatabaseManager();
             LOGGER.info("DatabaseManager initialized successfully.");
         }
+        if (retentionSweeper == null) {
+            retentionSweeper = new RetentionSweeper(databaseManager);
+        }
+        if (backupJournal == null && ModConfig.SERVER.enableJournal.get()) {
+            try {
+                backupJournal = new BackupJournal(Paths.get("config", "eliteinventorybackups", "journal"),
+                    ModConfig.SERVER.journalSegmentSizeMb.get() * 1024L * 1024L);
+                journalReplayer = new JournalReplayer(backupJournal, databaseManager, retentionSweeper);
+            } catch (IOException e) {
+                LOGGER.error("Could not open the backup journal, backups will be saved without it. Full error: ", e);
+            }
+        }
+        if (journalReplayer != null) {
+            // Forward what piled up in the journal as soon as the database is back after an outage
+            databaseManager.onStoreRecovered(() -> {
+                JournalReplayer replayer = journalReplayer;
+                if (replayer != null) {
+                    replayer.replayNow();
+                }
+            });
+        }
+        if (backupWriter == null) {
+            backupWriter = new BackupWriter(databaseManager, retentionSweeper, backupJournal);
+        }
+        if (autosaveScheduler == null) {
+            autosaveScheduler = new AutosaveScheduler(backupWriter);
+        }
+        if (loginSnapshotDeferrer == null) {
+            loginSnapshotDeferrer = new LoginSnapshotDeferrer(backupWriter, databaseManager);
+        }
+        if (backupTransfer == null) {
+            backupTransfer = new BackupTransfer(databaseManager, Paths.get("config", "eliteinventorybackups", "exports"));
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        if (loginSnapshotDeferrer != null) {
+            loginSnapshotDeferrer.tick(event.getServer());
+        }
+        if (autosaveScheduler != null) {
+            autosaveScheduler.tick(event.getServer());
+        }
     }
 
     @SubscribeEvent
     public void onServerStopping(ServerStoppingEvent event) {
         LOGGER.info("Elite Inventory Backups shutting down...");
+        stopping = true;
         
         try {
             // Clean up ViewCommand resources
@@ -61,6 +133,65 @@ public class EliteInventoryBackups {
             LOGGER.error("Error during ViewCommand cleanup", e);
         }
         
+        // No new autosaves or deferred logins once shutdown has started; the shutdown snapshot covers everyone still online
+        autosaveScheduler = null;
+        loginSnapshotDeferrer = null;
+
+        // Captured now, while the players are still here; the logout events come after the database has closed
+        List<BackupSnapshot> shutdownSnapshots = captureOnlinePlayers(event.getServer());
+
+        try {
+            // Drain queued backups before the database goes away, then save the shutdown snapshots after them
+            if (backupWriter != null) {
+                backupWriter.shutdown();
+                if (!shutdownSnapshots.isEmpty()) {
+                    int saved = backupWriter.persistAll(shutdownSnapshots, ModConfig.SERVER.shutdownSnapshotSeconds.get() * 1000L);
+                    if (saved == shutdownSnapshots.size()) {
+                        LOGGER.info("Shutdown snapshot saved for all {} online player(s).", saved);
+                    } else {
+                        LOGGER.warn("Shutdown snapshot saved for {} of {} online player(s) within {}s.",
+                            saved, shutdownSnapshots.size(), ModConfig.SERVER.shutdownSnapshotSeconds.get());
+                    }
+                }
+                backupWriter = null;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error during BackupWriter shutdown", e);
+        }
+        
+        try {
+            // After the writer, so the shutdown snapshots are journaled too
+            if (journalReplayer != null) {
+                journalReplayer.shutdown();
+                journalReplayer = null;
+            }
+            if (backupJournal != null) {
+                backupJournal.close();
+                backupJournal = null;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error during backup journal shutdown", e);
+        }
+
+        try {
+            // Stops at a chunk boundary, so the export or import continues cleanly next time
+            if (backupTransfer != null) {
+                backupTransfer.shutdown();
+                backupTransfer = null;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error during BackupTransfer shutdown", e);
+        }
+
+        try {
+            if (retentionSweeper != null) {
+                retentionSweeper.shutdown();
+                retentionSweeper = null;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error during RetentionSweeper shutdown", e);
+        }
+        
         try {
             // Shutdown database manager
             if (databaseManager != null) {
@@ -74,10 +205,60 @@ public class EliteInventoryBackups {
         LOGGER.info("Elite Inventory Backups has shut down.");
     }
 
+    private static List<BackupSnapshot> captureOnlinePlayers(MinecraftServer server) {
+        List<BackupSnapshot> snapshots = new ArrayList<>();
+        if (!ModConfig.SERVER.enableShutdownSnapshots.get() || backupWriter == null) {
+            return snapshots;
+        }
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            try {
+                snapshots.add(BackupSnapshot.capture(player, "shutdown", null));
+            } catch (Exception e) {
+                LOGGER.error("Error creating shutdown backup for player {}: {}", player.getName().getString(), e.getMessage(), e);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * True from the moment the server starts stopping, when backups can no longer be submitted.
+     */
+    public static boolean isStopping() {
+        return stopping;
+    }
+
     public static DatabaseManager getDatabaseManager() {
         return databaseManager;
     }
 
+    public static BackupWriter getBackupWriter() {
+        return backupWriter;
+    }
+
+    public static RetentionSweeper getRetentionSweeper() {
+        return retentionSweeper;
+    }
+
+    public static BackupJournal getBackupJournal() {
+        return backupJournal;
+    }
+
+    public static JournalReplayer getJournalReplayer() {
+        return journalReplayer;
+    }
+
+    public static AutosaveScheduler getAutosaveScheduler() {
+        return autosaveScheduler;
+    }
+
+    public static LoginSnapshotDeferrer getLoginSnapshotDeferrer() {
+        return loginSnapshotDeferrer;
+    }
+
+    public static BackupTransfer getBackupTransfer() {
+        return backupTransfer;
+    }
+
 //    private void setup(final FMLCommonSetupEvent event) {
 //        // some preinit code
 //        LOGGER.info("HELLO FROM PREINIT");
@@ -1,24 +1,19 @@
 package com.eliteinventorybackups;
 
+import com.eliteinventorybackups.backup.AutosaveScheduler;
+import com.eliteinventorybackups.backup.BackupSnapshot;
+import com.eliteinventorybackups.backup.BackupWriter;
+import com.eliteinventorybackups.backup.LoginSnapshotDeferrer;
 import com.eliteinventorybackups.config.ModConfig;
-import com.eliteinventorybackups.database.DatabaseManager;
-import com.eliteinventorybackups.integration.CuriosIntegration;
-import com.eliteinventorybackups.integration.GenericNbtIntegration;
-import com.eliteinventorybackups.model.BackupEntry;
-import com.eliteinventorybackups.util.InventorySerializer;
 import com.mojang.logging.LogUtils;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.damagesource.DamageSource;
-import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.slf4j.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Mod.EventBusSubscriber(modid = EliteInventoryBackups.MODID)
 public class PlayerEventHandler {
 
@@ -27,14 +22,28 @@ public class PlayerEventHandler {
     @SubscribeEvent
     public static void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.getEntity() instanceof ServerPlayer player && ModConfig.SERVER.enableLoginSnapshots.get()) {
-            createBackup(player, "login", null);
+            LoginSnapshotDeferrer deferrer = EliteInventoryBackups.getLoginSnapshotDeferrer();
+            if (deferrer != null && ModConfig.SERVER.deferLoginSnapshots.get()) {
+                deferrer.schedule(player);
+            } else {
+                createBackup(player, "login", null);
+            }
         }
     }
 
     @SubscribeEvent
     public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
-        if (event.getEntity() instanceof ServerPlayer player && ModConfig.SERVER.enableLogoutSnapshots.get()) {
-            createBackup(player, "logout", null);
+        boolean logoutSnapshot = event.getEntity() instanceof ServerPlayer && ModConfig.SERVER.enableLogoutSnapshots.get();
+        if (logoutSnapshot) {
+            createBackup((ServerPlayer) event.getEntity(), "logout", null);
+        }
+        LoginSnapshotDeferrer deferrer = EliteInventoryBackups.getLoginSnapshotDeferrer();
+        if (deferrer != null) {
+            deferrer.onLogout(event.getEntity().getUUID(), logoutSnapshot);
+        }
+        AutosaveScheduler autosaveScheduler = EliteInventoryBackups.getAutosaveScheduler();
+        if (autosaveScheduler != null) {
+            autosaveScheduler.forget(event.getEntity().getUUID());
         }
     }
 
@@ -49,92 +58,19 @@ public class PlayerEventHandler {
 
     private static void createBackup(ServerPlayer player, String eventType, String causeOfDeath) {
         try {
-            DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
-            if (dbManager == null) {
-                LOGGER.error("DatabaseManager is not initialized, cannot create backup for player {}", player.getName().getString());
-                return;
-            }
-
-            // Don't create backups during server shutdown to prevent hanging
-            if ("logout".equals(eventType)) {
-                // Quick timeout check - if database operations take too long during logout, skip them
-                try {
-                    // Attempt a quick backup save - the DatabaseManager already has shutdown protection
-                    performBackupSave(player, eventType, causeOfDeath, dbManager);
-                } catch (Exception e) {
-                    LOGGER.warn("Skipping backup for player {} during logout due to potential shutdown: {}", 
-                        player.getName().getString(), e.getMessage());
-                }
-            } else {
-                // Normal backup for login/death events
-                performBackupSave(player, eventType, causeOfDeath, dbManager);
-            }
-
-        } catch (Exception e) {
-            LOGGER.error("Error creating backup for player {}: {}", player.getName().getString(), e.getMessage(), e);
-        }
-    }
-
-    private static void performBackupSave(ServerPlayer player, String eventType, String causeOfDeath, DatabaseManager dbManager) {
-        try {
-            // Standard inventory backups
-            String mainInv = InventorySerializer.serializeItemListToString(player.getInventory().items);
-            String armorInv = InventorySerializer.serializeItemListToString(player.getInventory().armor);
-            String offhandInv = InventorySerializer.serializeItemListToString(player.getInventory().offhand);
-            
-            // Fix ender chest access
-            List<ItemStack> enderChestItems = new ArrayList<>();
-            for (int i = 0; i < player.getEnderChestInventory().getContainerSize(); i++) {
-                enderChestItems.add(player.getEnderChestInventory().getItem(i));
-            }
-            String enderChestInv = InventorySerializer.serializeItemListToString(enderChestItems);
-
-            // Curios items - Use integration if available and enabled
-            String curiosInv = null;
-            if (ModConfig.SERVER.enableCuriosBackup.get() && CuriosIntegration.isAvailable()) {
-                curiosInv = CuriosIntegration.backupCurios(player);
-                if (curiosInv != null) {
-                    LOGGER.debug("Backed up Curios for player {}: {} characters", player.getName().getString(), curiosInv.length());
-                }
-            }
-
-            // Generic NBT backup as fallback
-            String playerNbt = null;
-            if (ModConfig.SERVER.enableGenericNbtBackup.get()) {
-                playerNbt = GenericNbtIntegration.backupPlayerNbt(player);
-                if (playerNbt != null && !playerNbt.equals("{}")) {
-                    LOGGER.debug("Backed up generic NBT for player {}: {} characters", player.getName().getString(), playerNbt.length());
+            BackupWriter backupWriter = EliteInventoryBackups.getBackupWriter();
+            if (backupWriter == null) {
+                if (EliteInventoryBackups.isStopping()) {
+                    // Logouts during shutdown are covered by the shutdown snapshot
+                    LOGGER.debug("Server is stopping, skipping {} backup for player {}", eventType, player.getName().getString());
+                    return;
                 }
+                LOGGER.error("BackupWriter is not initialized, cannot create backup for player {}", player.getName().getString());
+                return;
             }
 
-            // Modded inventories placeholder (for future mod integrations)
-            String moddedInventories = "{}";
-
-            BackupEntry backupEntry = new BackupEntry(
-                0, // ID will be auto-generated by database
-                player.getUUID(),
-                player.getName().getString(),
-                System.currentTimeMillis(),
-                eventType,
-                player.getLevel().dimension().location().toString(),
-                player.getX(),
-                player.getY(),
-                player.getZ(),
-                player.experienceLevel,
-                player.getXpNeededForNextLevel() > 0 ? (float) player.totalExperience / player.getXpNeededForNextLevel() : 0f,
-                mainInv,
-                armorInv,
-                offhandInv,
-                enderChestInv,
-                causeOfDeath, curiosInv, playerNbt, moddedInventories
-            );
-
-            // Fix saveBackup call - it returns void
-            dbManager.saveBackup(backupEntry);
-            LOGGER.info("Backup [{}] created for player {} ({}) at world {}, x:{}, y:{}, z:{}", 
-                eventType, player.getName().getString(), player.getUUID(), 
-                player.getLevel().dimension().location().toString(), 
-                player.getX(), player.getY(), player.getZ());
+            // Only the snapshot is taken here; serialization and the database write happen on the writer threads
+            backupWriter.submit(BackupSnapshot.capture(player, eventType, causeOfDeath));
 
         } catch (Exception e) {
             LOGGER.error("Error creating backup for player {}: {}", player.getName().getString(), e.getMessage(), e);
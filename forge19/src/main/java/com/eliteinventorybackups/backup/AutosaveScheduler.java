@@ -0,0 +1,135 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.Container;
+import net.minecraft.world.item.ItemStack;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Takes a periodic "autosave" backup of every online player. Each player gets a fixed tick slot within the
+ * interval (from their UUID), so a full server is spread evenly instead of being captured all at once.
+ * Captures are limited by a per-tick time budget; players left over carry on to the next tick.
+ * Runs entirely on the server thread.
+ */
+public class AutosaveScheduler {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int TICKS_PER_MINUTE = 20 * 60;
+
+    private final BackupWriter backupWriter;
+    // Players whose slot came up but who didn't fit in the tick budget yet
+    private final Deque<UUID> pending = new ArrayDeque<>();
+    // State of each player at their last autosave, to skip players that haven't changed
+    private final Map<UUID, StateKey> lastSaved = new HashMap<>();
+
+    // Metrics
+    private long captured = 0;
+    private long skippedUnchanged = 0;
+    private long deferred = 0;
+
+    public AutosaveScheduler(BackupWriter backupWriter) {
+        this.backupWriter = backupWriter;
+        if (ModConfig.SERVER.enableAutosave.get()) {
+            LOGGER.info("Autosave backups enabled, every {} minute(s)", ModConfig.SERVER.autosaveIntervalMinutes.get());
+        }
+    }
+
+    /**
+     * Call once per server tick.
+     */
+    public void tick(MinecraftServer server) {
+        if (!ModConfig.SERVER.enableAutosave.get()) {
+            pending.clear();
+            return;
+        }
+
+        int intervalTicks = ModConfig.SERVER.autosaveIntervalMinutes.get() * TICKS_PER_MINUTE;
+        int slot = Math.floorMod(server.getTickCount(), intervalTicks);
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (Math.floorMod(player.getUUID().hashCode(), intervalTicks) == slot) {
+                pending.add(player.getUUID());
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long budgetNanos = ModConfig.SERVER.autosaveTickBudgetMillis.get() * 1_000_000L;
+        long start = System.nanoTime();
+        // Always handle at least one player so a tiny budget can't stall the queue
+        do {
+            ServerPlayer player = server.getPlayerList().getPlayer(pending.poll());
+            if (player != null) {
+                autosave(player);
+            }
+        } while (!pending.isEmpty() && System.nanoTime() - start < budgetNanos);
+
+        if (!pending.isEmpty()) {
+            deferred += pending.size();
+            LOGGER.debug("Autosave tick budget used up, {} player(s) carried over to the next tick", pending.size());
+        }
+    }
+
+    private void autosave(ServerPlayer player) {
+        StateKey state = StateKey.of(player);
+        if (ModConfig.SERVER.autosaveSkipUnchanged.get() && state.equals(lastSaved.get(player.getUUID()))) {
+            skippedUnchanged++;
+            return;
+        }
+
+        try {
+            backupWriter.submit(BackupSnapshot.capture(player, "autosave", null));
+            lastSaved.put(player.getUUID(), state);
+            captured++;
+        } catch (Exception e) {
+            LOGGER.error("Error creating autosave backup for player {}: {}", player.getName().getString(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drop what we know about a player that logged out.
+     */
+    public void forget(UUID playerUuid) {
+        lastSaved.remove(playerUuid);
+    }
+
+    public Stats getStats() {
+        return new Stats(captured, skippedUnchanged, deferred);
+    }
+
+    public record Stats(long captured, long skippedUnchanged, long deferred) {}
+
+    /**
+     * Cheap summary of what an autosave would store. The main inventory has its own change counter;
+     * the ender chest doesn't, so it is hashed (only once per interval per player).
+     * Curios and other modded data are not covered; unchanged snapshots are still caught by duplicateSnapshotPolicy.
+     */
+    private record StateKey(int inventoryChanges, int enderChestHash, int experienceLevel, float experienceProgress) {
+        static StateKey of(ServerPlayer player) {
+            return new StateKey(
+                player.getInventory().getTimesChanged(),
+                hashContents(player.getEnderChestInventory()),
+                player.experienceLevel,
+                player.experienceProgress
+            );
+        }
+
+        private static int hashContents(Container container) {
+            int hash = 1;
+            for (int i = 0; i < container.getContainerSize(); i++) {
+                ItemStack stack = container.getItem(i);
+                hash = 31 * hash + (stack.isEmpty() ? 0 : Objects.hash(stack.getItem(), stack.getCount(), stack.getTag()));
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.util.BackupEntryTags;
+import com.eliteinventorybackups.util.NbtPayloadCodec;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of serialized backups. The writer threads journal each batch (one fsync per batch)
+ * before it goes to the database, and mark every record saved or failed once the commit is done.
+ * Segments whose records are all saved are truncated or deleted; failed records, and segments left over
+ * from a crash, are sent to the database again by the {@link JournalReplayer}. Until they are, newer backups of the
+ * same players are held back behind them (see {@link #hasUnsaved}), so every player's backups are numbered in capture order.
+ * <p>
+ * Record layout: {@code [int length][int CRC32 of the body][body]}, the body being an {@link NbtPayloadCodec} payload.
+ */
+public class BackupJournal {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 8;
+    // A length above this can only come from a torn or corrupt header
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    // Oldest first; the active segment is always last
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long nextSegmentNumber = 1;
+    // Records waiting to be replayed, per player
+    private final Object2IntOpenHashMap<UUID> unsavedByPlayer = new Object2IntOpenHashMap<>();
+
+    public BackupJournal(Path directory, long segmentMaxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(BackupJournal::isSegmentFile).sorted(Comparator.comparingLong(BackupJournal::segmentNumber)).toList()) {
+                Segment segment = new Segment(path, null);
+                segment.size = Files.size(path);
+                if (segment.size == 0) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                segment.leftover = true;
+                // Nothing is known about them, so every record counts as not saved until the replayer has checked
+                for (Record record : readRecords(path, segment.size, offset -> true)) {
+                    addUnsaved(segment, record.offset(), record.entry().playerUuid());
+                }
+                segments.add(segment);
+                nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(path) + 1);
+            }
+        }
+        if (!segments.isEmpty()) {
+            LOGGER.info("Found {} backup journal segment(s) left over from the last run, they will be replayed.", segments.size());
+        }
+        active = openSegment();
+    }
+
+    /**
+     * Append a batch of entries and fsync once for the whole batch.
+     * @return One handle per entry, in order, to pass to {@link #resolve} once the entry has been saved or has failed
+     */
+    public List<Handle> append(List<BackupEntry> entries) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>(entries.size());
+        for (BackupEntry entry : entries) {
+            byte[] body = NbtPayloadCodec.encode(BackupEntryTags.toTag(entry));
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+            record.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+            records.add(record);
+        }
+
+        List<Handle> handles = new ArrayList<>(entries.size());
+        FileChannel channel;
+        synchronized (this) {
+            if (active.size >= segmentMaxBytes) {
+                rotate();
+            }
+            for (int i = 0; i < records.size(); i++) {
+                ByteBuffer record = records.get(i);
+                long offset = active.size;
+                while (record.hasRemaining()) {
+                    active.channel.write(record, active.size + record.position());
+                }
+                active.size += record.limit();
+                active.pending++;
+                handles.add(new Handle(active, offset, entries.get(i).playerUuid()));
+            }
+            channel = active.channel;
+        }
+
+        // Outside the lock so other writer threads can append while this one waits on the disk
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Rotated meanwhile; rotation forces the segment before closing it
+        }
+        return handles;
+    }
+
+    /**
+     * Record the outcome of a journaled entry. Saved entries are done with; failed ones are replayed later.
+     */
+    public synchronized void resolve(Handle handle, boolean saved) {
+        Segment segment = handle.segment();
+        segment.pending--;
+        if (!saved) {
+            addUnsaved(segment, handle.offset(), handle.playerUuid());
+        }
+        release(segment);
+    }
+
+    /**
+     * Whether a player has journaled backups that haven't reached the database yet. A newer backup of theirs has to be
+     * journaled as failed too instead of being saved, or it would be numbered ahead of the older ones.
+     */
+    public synchronized boolean hasUnsaved(UUID playerUuid) {
+        return unsavedByPlayer.getInt(playerUuid) > 0;
+    }
+
+    private void addUnsaved(Segment segment, long offset, UUID playerUuid) {
+        if (segment.failed.put(offset, playerUuid) == null) {
+            unsavedByPlayer.addTo(playerUuid, 1);
+        }
+    }
+
+    /**
+     * Segments with records that still have to reach the database, oldest first. Seals the active segment
+     * first if it has failed records, so a segment never changes while it is being replayed.
+     */
+    synchronized List<Segment> segmentsToReplay() throws IOException {
+        if (!active.failed.isEmpty()) {
+            rotate();
+        }
+        List<Segment> replay = new ArrayList<>();
+        for (Segment segment : segments) {
+            // Records still in flight are resolved by their writer first
+            if (segment != active && segment.pending == 0 && (segment.leftover || !segment.failed.isEmpty())) {
+                replay.add(segment);
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * Read the records of a segment that need replaying. Reading stops at the first torn or corrupt record,
+     * which is where a crash cut the segment off.
+     */
+    List<Record> readForReplay(Segment segment) throws IOException {
+        Set<Long> wanted;
+        long size;
+        synchronized (this) {
+            wanted = new HashSet<>(segment.failed.keySet());
+            size = segment.size;
+        }
+        return readRecords(segment.path, size, wanted::contains);
+    }
+
+    /**
+     * Backups of a player that are in the journal but not in the database, newest first.
+     * Lets commands show something while the database is down.
+     */
+    public List<BackupEntry> spooled(UUID playerUuid) {
+        Map<Path, LongPredicate> toRead = new LinkedHashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (!segment.failed.isEmpty()) {
+                    Set<Long> failed = new HashSet<>(segment.failed.keySet());
+                    toRead.put(segment.path, failed::contains);
+                    sizes.put(segment.path, segment.size);
+                }
+            }
+        }
+
+        List<BackupEntry> entries = new ArrayList<>();
+        toRead.forEach((path, wanted) -> {
+            try {
+                for (Record record : readRecords(path, sizes.get(path), wanted)) {
+                    if (record.entry().playerUuid().equals(playerUuid)) {
+                        entries.add(record.entry());
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Could not read backup journal {}. Full error: ", path.getFileName(), e);
+            }
+        });
+        entries.sort(Comparator.comparingLong(BackupEntry::timestamp).reversed());
+        return entries;
+    }
+
+    /**
+     * Read the wanted records of a segment file up to {@code size}. Reading stops at the first torn or corrupt record.
+     */
+    private static List<Record> readRecords(Path path, long size, LongPredicate wanted) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long offset = 0;
+            while (offset + RECORD_HEADER_SIZE <= size) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE || offset + RECORD_HEADER_SIZE + length > size) {
+                    LOGGER.warn("Backup journal {} ends in a torn record at offset {}, ignoring the rest", path.getFileName(), offset);
+                    break;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                CRC32 actual = new CRC32();
+                actual.update(body);
+                if ((int) actual.getValue() != crc) {
+                    LOGGER.warn("Backup journal {} has a corrupt record at offset {}, ignoring the rest", path.getFileName(), offset);
+                    break;
+                }
+
+                if (wanted.test(offset)) {
+                    try {
+                        records.add(new Record(offset, BackupEntryTags.fromTag(NbtPayloadCodec.decode(body))));
+                    } catch (IOException | RuntimeException e) {
+                        LOGGER.error("Could not read journaled backup at offset {} of {}. Full error: ", offset, path.getFileName(), e);
+                    }
+                }
+                offset += RECORD_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Backup journal {} ended early", path.getFileName());
+        }
+        return records;
+    }
+
+    /**
+     * Finish a replay pass over a segment.
+     * @param stillFailed Offsets of the records that could not be saved this time
+     */
+    synchronized void replayDone(Segment segment, Set<Long> stillFailed) {
+        segment.leftover = false;
+        // Saved, already in the database, or unreadable: either way nothing is waiting on them anymore
+        Iterator<Map.Entry<Long, UUID>> iterator = segment.failed.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, UUID> record = iterator.next();
+            if (!stillFailed.contains(record.getKey())) {
+                iterator.remove();
+                if (unsavedByPlayer.addTo(record.getValue(), -1) <= 1) {
+                    unsavedByPlayer.removeInt(record.getValue());
+                }
+            }
+        }
+        release(segment);
+    }
+
+    /**
+     * Close all segments. Segments with records that never reached the database stay on disk for the next start.
+     */
+    public synchronized void close() {
+        for (Segment segment : new ArrayList<>(segments)) {
+            try {
+                if (segment.channel != null) {
+                    segment.channel.force(false);
+                    segment.channel.close();
+                }
+                if (segment.size == 0) {
+                    Files.deleteIfExists(segment.path);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Could not close backup journal {}. Full error: ", segment.path.getFileName(), e);
+            }
+        }
+        long unsaved = segments.stream().filter(segment -> segment.size > 0).count();
+        if (unsaved > 0) {
+            LOGGER.warn("Backup journal closed with {} segment(s) still to replay on the next start.", unsaved);
+        }
+    }
+
+    public synchronized Stats getStats() {
+        long bytes = 0;
+        int failed = 0;
+        int leftover = 0;
+        for (Segment segment : segments) {
+            bytes += segment.size;
+            failed += segment.failed.size();
+            if (segment.leftover) {
+                leftover++;
+            }
+        }
+        return new Stats(segments.size(), bytes, failed, leftover);
+    }
+
+    /**
+     * Drop a segment once nothing in it is needed anymore: the active one is truncated, older ones deleted.
+     */
+    private void release(Segment segment) {
+        if (segment.pending > 0 || segment.leftover || !segment.failed.isEmpty() || segment.size == 0) {
+            return;
+        }
+        try {
+            if (segment == active) {
+                segment.channel.truncate(0);
+                segment.size = 0;
+            } else {
+                if (segment.channel != null) {
+                    segment.channel.close();
+                }
+                Files.deleteIfExists(segment.path);
+                segments.remove(segment);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not release backup journal {}. Full error: ", segment.path.getFileName(), e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        active.channel.force(false);
+        active.channel.close();
+        active.channel = null;
+        Segment sealed = active;
+        active = openSegment();
+        release(sealed);
+    }
+
+    private Segment openSegment() throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + nextSegmentNumber++ + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Segment segment = new Segment(path, channel);
+        segments.add(segment);
+        return segment;
+    }
+
+    private static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && segmentNumber(path) > 0;
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * One segment file. All fields are guarded by the journal.
+     */
+    static class Segment {
+        private final Path path;
+        @Nullable
+        private FileChannel channel; // Null once sealed
+        private long size = 0;
+        // Appended records whose outcome isn't known yet
+        private int pending = 0;
+        // Offsets of records the database didn't take, or hasn't been asked about since a crash, with their player
+        private final Map<Long, UUID> failed = new HashMap<>();
+        // Found on startup; all its records are in failed
+        private boolean leftover = false;
+
+        private Segment(Path path, @Nullable FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        Path path() {
+            return path;
+        }
+    }
+
+    public record Handle(Segment segment, long offset, UUID playerUuid) {}
+
+    record Record(long offset, BackupEntry entry) {}
+
+    /**
+     * @param failedRecords Records the database didn't take, waiting to be replayed
+     * @param leftoverSegments Segments from a previous run not replayed yet
+     */
+    public record Stats(int segments, long bytes, int failedRecords, int leftoverSegments) {}
+}
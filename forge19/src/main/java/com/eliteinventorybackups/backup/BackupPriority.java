@@ -0,0 +1,29 @@
+package com.eliteinventorybackups.backup;
+
+/**
+ * How much a snapshot is worth keeping when the write queue is under pressure, lowest first.
+ */
+public enum BackupPriority {
+    LOGIN,
+    AUTOSAVE,
+    LOGOUT,
+    MANUAL,
+    DEATH;
+
+    /**
+     * Death and manual backups are never dropped or replaced; if there is no room they are saved on the calling thread.
+     */
+    public boolean isCritical() {
+        return this == MANUAL || this == DEATH;
+    }
+
+    public static BackupPriority of(String eventType) {
+        return switch (eventType) {
+            case "death" -> DEATH;
+            case "manual" -> MANUAL;
+            case "logout", "shutdown" -> LOGOUT;
+            case "autosave" -> AUTOSAVE;
+            default -> LOGIN;
+        };
+    }
+}
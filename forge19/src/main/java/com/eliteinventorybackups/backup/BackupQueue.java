@@ -0,0 +1,224 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of snapshots waiting to be written, handed out highest {@link BackupPriority} first
+ * (oldest first within a priority), except that one player's snapshots always come out in the order they were captured.
+ * What happens when it is full is decided by {@link ModConfig.QueueFullPolicy}; critical snapshots that nothing makes
+ * room for go in over capacity, so they are never turned away.
+ */
+class BackupQueue {
+    private final int capacity;
+    // One FIFO per priority, indexed by ordinal
+    private final ArrayDeque<PendingBackup>[] byPriority;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    BackupQueue(int capacity) {
+        this.capacity = capacity;
+        this.byPriority = new ArrayDeque[BackupPriority.values().length];
+        for (int i = 0; i < byPriority.length; i++) {
+            byPriority[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Queue a snapshot, applying the full-queue policy if there is no room.
+     * A displaced snapshot is removed from the queue and returned to the caller, which completes its future.
+     */
+    Offer offer(PendingBackup pending, ModConfig.QueueFullPolicy policy, long blockTimeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            // Critical snapshots get in either way, so making them wait would only stall the caller
+            if (size >= capacity && policy == ModConfig.QueueFullPolicy.BLOCK && !pending.priority().isCritical()) {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+                while (size >= capacity && remainingNanos > 0) {
+                    remainingNanos = notFull.awaitNanos(remainingNanos);
+                }
+            }
+            if (size < capacity) {
+                add(pending);
+                return new Offer(Outcome.QUEUED, null);
+            }
+
+            if (policy == ModConfig.QueueFullPolicy.COALESCE) {
+                PendingBackup superseded = removeSupersededBy(pending);
+                if (superseded != null) {
+                    add(pending);
+                    return new Offer(Outcome.COALESCED, superseded);
+                }
+            }
+            // DROP_LOWEST, and the fallback when coalescing or blocking didn't free a slot
+            PendingBackup lowest = removeLowerThan(pending.priority());
+            if (lowest != null) {
+                add(pending);
+                return new Offer(Outcome.DISPLACED_LOWER, lowest);
+            }
+            if (pending.priority().isCritical()) {
+                // Stays behind the player's older snapshots, so it is still numbered in capture order
+                add(pending);
+                return new Offer(Outcome.OVER_CAPACITY, null);
+            }
+            return new Offer(Outcome.REJECTED, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the highest-priority snapshot, waiting up to the timeout for one to arrive.
+     * @return The snapshot, or null if none arrived in time
+     */
+    @Nullable
+    PendingBackup poll(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = unit.toNanos(timeout);
+            while (size == 0) {
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
+            }
+            for (int i = byPriority.length - 1; i >= 0; i--) {
+                if (!byPriority[i].isEmpty()) {
+                    PendingBackup pending = takeInCaptureOrder(i);
+                    size--;
+                    notFull.signal();
+                    return pending;
+                }
+            }
+            throw new IllegalStateException("Backup queue size out of sync");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void drainTo(Collection<PendingBackup> target) {
+        lock.lock();
+        try {
+            for (int i = byPriority.length - 1; i >= 0; i--) {
+                target.addAll(byPriority[i]);
+                byPriority[i].clear();
+            }
+            size = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    private void add(PendingBackup pending) {
+        byPriority[pending.priority().ordinal()].addLast(pending);
+        size++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Removes the next snapshot of the given priority, unless the same player has an older snapshot queued at a lower
+     * priority: that one goes first, so priority only decides between players and never renumbers one player's backups.
+     */
+    private PendingBackup takeInCaptureOrder(int priority) {
+        PendingBackup next = byPriority[priority].peekFirst();
+        UUID playerUuid = next.snapshot().playerUuid();
+        ArrayDeque<PendingBackup> from = byPriority[priority];
+        for (int i = 0; i < priority; i++) {
+            // Each FIFO is oldest first, so only its first snapshot of the player matters
+            for (PendingBackup queued : byPriority[i]) {
+                if (queued.snapshot().playerUuid().equals(playerUuid)) {
+                    if (queued.snapshot().capturedAtNanos() - next.snapshot().capturedAtNanos() < 0) {
+                        next = queued;
+                        from = byPriority[i];
+                    }
+                    break;
+                }
+            }
+        }
+        from.removeFirstOccurrence(next);
+        return next;
+    }
+
+    /**
+     * Remove the oldest snapshot of the lowest priority below the given one. Critical snapshots are never removed.
+     */
+    @Nullable
+    private PendingBackup removeLowerThan(BackupPriority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (!BackupPriority.values()[i].isCritical() && !byPriority[i].isEmpty()) {
+                size--;
+                return byPriority[i].pollFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove a queued snapshot of the same player that the new one makes redundant: same or lower priority, not critical.
+     */
+    @Nullable
+    private PendingBackup removeSupersededBy(PendingBackup pending) {
+        UUID playerUuid = pending.snapshot().playerUuid();
+        for (int i = 0; i <= pending.priority().ordinal(); i++) {
+            if (BackupPriority.values()[i].isCritical()) {
+                continue;
+            }
+            Iterator<PendingBackup> iterator = byPriority[i].iterator();
+            while (iterator.hasNext()) {
+                PendingBackup queued = iterator.next();
+                if (queued.snapshot().playerUuid().equals(playerUuid)) {
+                    iterator.remove();
+                    size--;
+                    return queued;
+                }
+            }
+        }
+        return null;
+    }
+
+    enum Outcome {
+        QUEUED,
+        // Queued in place of a lower-priority snapshot, which was dropped
+        DISPLACED_LOWER,
+        // Queued in place of an older snapshot of the same player
+        COALESCED,
+        // Critical and nothing could be dropped for it, so queued beyond the capacity
+        OVER_CAPACITY,
+        // Not critical, no room and nothing could be dropped for it
+        REJECTED
+    }
+
+    record Offer(Outcome outcome, @Nullable PendingBackup displaced) {}
+
+    record PendingBackup(BackupSnapshot snapshot, BackupPriority priority, CompletableFuture<Integer> result) {}
+}
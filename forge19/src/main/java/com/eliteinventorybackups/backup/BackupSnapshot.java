@@ -0,0 +1,132 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.integration.CuriosIntegration;
+import com.eliteinventorybackups.integration.GenericNbtIntegration;
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.util.InventorySerializer;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable copy of a player's backup-relevant state, taken on the server thread.
+ * Capturing only copies stacks and NBT; all serialization happens later in {@link #toEntry()},
+ * which is safe to call from a background thread.
+ */
+public record BackupSnapshot(
+    UUID playerUuid,
+    String playerName,
+    long timestamp,
+    String eventType,
+    String causeOfDeath, // Nullable, only for death events
+    String world,
+    double posX,
+    double posY,
+    double posZ,
+    int experienceLevel,
+    float experienceProgress,
+    List<ItemStack> mainItems,
+    List<ItemStack> armorItems,
+    List<ItemStack> offhandItems,
+    List<ItemStack> enderChestItems,
+    Map<String, List<ItemStack>> curiosItems, // Nullable, only when Curios backup is enabled
+    CompoundTag playerNbt, // Nullable, only when generic NBT backup is enabled
+    long capturedAtNanos
+) {
+
+    /**
+     * Capture the player's current state. Must be called on the server thread.
+     */
+    public static BackupSnapshot capture(ServerPlayer player, String eventType, String causeOfDeath) {
+        List<ItemStack> enderChestItems = new ArrayList<>();
+        for (int i = 0; i < player.getEnderChestInventory().getContainerSize(); i++) {
+            enderChestItems.add(player.getEnderChestInventory().getItem(i).copy());
+        }
+
+        Map<String, List<ItemStack>> curiosItems = null;
+        if (ModConfig.SERVER.enableCuriosBackup.get() && CuriosIntegration.isAvailable()) {
+            curiosItems = CuriosIntegration.captureCurios(player);
+        }
+
+        CompoundTag playerNbt = null;
+        if (ModConfig.SERVER.enableGenericNbtBackup.get()) {
+            playerNbt = GenericNbtIntegration.capturePlayerNbt(player);
+        }
+
+        return new BackupSnapshot(
+            player.getUUID(),
+            player.getName().getString(),
+            System.currentTimeMillis(),
+            eventType,
+            causeOfDeath,
+            player.getLevel().dimension().location().toString(),
+            player.getX(),
+            player.getY(),
+            player.getZ(),
+            player.experienceLevel,
+            experienceProgress(player, eventType),
+            copyStacks(player.getInventory().items),
+            copyStacks(player.getInventory().armor),
+            copyStacks(player.getInventory().offhand),
+            enderChestItems,
+            curiosItems,
+            playerNbt,
+            System.nanoTime()
+        );
+    }
+
+    /**
+     * Manual backups have always stored the XP bar's progress, event backups total experience over the next level's
+     * cost. Kept apart so backups taken before the writer moved off the server thread still mean the same thing.
+     */
+    private static float experienceProgress(ServerPlayer player, String eventType) {
+        if ("manual".equals(eventType)) {
+            return player.experienceProgress;
+        }
+        return player.getXpNeededForNextLevel() > 0 ? (float) player.totalExperience / player.getXpNeededForNextLevel() : 0f;
+    }
+
+    /**
+     * Serialize this snapshot into a {@link BackupEntry} ready to be saved.
+     */
+    public BackupEntry toEntry() {
+        CompoundTag curiosInv = curiosItems != null ? CuriosIntegration.curiosToTag(curiosItems) : null;
+        CompoundTag nbt = GenericNbtIntegration.filterCapturedNbt(playerNbt, playerName);
+
+        return new BackupEntry(
+            0, // ID will be auto-generated by database
+            playerUuid,
+            playerName,
+            timestamp,
+            eventType,
+            world,
+            posX,
+            posY,
+            posZ,
+            experienceLevel,
+            experienceProgress,
+            InventorySerializer.serializeItemList(mainItems),
+            InventorySerializer.serializeItemList(armorItems),
+            InventorySerializer.serializeItemList(offhandItems),
+            InventorySerializer.serializeItemList(enderChestItems),
+            causeOfDeath,
+            curiosInv,
+            nbt,
+            new CompoundTag() // Modded inventories placeholder (for future mod integrations)
+        );
+    }
+
+    private static List<ItemStack> copyStacks(List<ItemStack> stacks) {
+        List<ItemStack> copies = new ArrayList<>(stacks.size());
+        for (ItemStack stack : stacks) {
+            copies.add(stack.copy());
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,352 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.database.BackupStore.BackupPosition;
+import com.eliteinventorybackups.database.BackupStore.NumberedBackup;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.mojang.logging.LogUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Runs {@code /eib export} and {@code /eib import} on a background thread, one transfer at a time.
+ * <p>
+ * Both stream: an export reads a page of backups at a time and writes each page as one {@link ExportArchive} chunk,
+ * an import reads one chunk at a time and saves it as one batch. Either can be cancelled or interrupted by a
+ * restart and picks up where it stopped when started again with the same name. An import remembers its place in
+ * a {@code .progress} file next to the export; replaying a chunk is harmless since backups that already exist are skipped.
+ */
+public class BackupTransfer {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String FILE_SUFFIX = ".eibx";
+    private static final String PROGRESS_SUFFIX = ".progress";
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_.-]+");
+    // Backups per page read and per chunk written; bounds memory no matter how big the database is
+    private static final int CHUNK_SIZE = 200;
+    private static final long LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final DatabaseManager databaseManager;
+    private final Path directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EIB-Transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    @Nullable
+    private volatile Job job;
+
+    public BackupTransfer(DatabaseManager databaseManager, Path directory) {
+        this.databaseManager = databaseManager;
+        this.directory = directory;
+    }
+
+    /**
+     * Starts exporting every backup to {@code <name>.eibx}, or continues an export to it that did not finish.
+     * @param onDone Called from the transfer thread with a one-line result
+     * @return Null if the export started, otherwise why it didn't
+     */
+    @Nullable
+    public synchronized String startExport(String name, Consumer<String> onDone) {
+        Path file = resolve(name);
+        if (file == null) {
+            return "Invalid file name '" + name + "'. Use letters, digits, '.', '_' and '-' only.";
+        }
+        if (isRunning()) {
+            return "Another transfer is still running; see /eib transfer.";
+        }
+        Job export = new Job(true, file.getFileName().toString());
+        job = export;
+        executor.execute(() -> run(export, () -> export(export, file), onDone));
+        return null;
+    }
+
+    /**
+     * Starts importing {@code <name>.eibx}, continuing where an earlier import of the same file stopped.
+     * @param onDone Called from the transfer thread with a one-line result
+     * @return Null if the import started, otherwise why it didn't
+     */
+    @Nullable
+    public synchronized String startImport(String name, Consumer<String> onDone) {
+        Path file = resolve(name);
+        if (file == null) {
+            return "Invalid file name '" + name + "'. Use letters, digits, '.', '_' and '-' only.";
+        }
+        if (!Files.isRegularFile(file)) {
+            return "No export named " + file.getFileName() + " in " + directory + ".";
+        }
+        if (isRunning()) {
+            return "Another transfer is still running; see /eib transfer.";
+        }
+        Job importJob = new Job(false, file.getFileName().toString());
+        job = importJob;
+        executor.execute(() -> run(importJob, () -> importFile(importJob, file), onDone));
+        return null;
+    }
+
+    /**
+     * Asks the running transfer to stop after its current chunk. It can be continued later.
+     * @return False if nothing was running
+     */
+    public boolean cancel() {
+        Job current = job;
+        if (current == null || !current.running) {
+            return false;
+        }
+        current.cancelled = true;
+        return true;
+    }
+
+    /**
+     * @return The running transfer, or the last one that ran, or null if there hasn't been any
+     */
+    @Nullable
+    public Job getJob() {
+        return job;
+    }
+
+    private boolean isRunning() {
+        Job current = job;
+        return current != null && current.running;
+    }
+
+    private void run(Job job, TransferTask task, Consumer<String> onDone) {
+        String result;
+        try {
+            result = task.run();
+        } catch (Exception e) {
+            LOGGER.error("{} of {} failed. Full error: ", job.export ? "Export" : "Import", job.file, e);
+            result = (job.export ? "Export" : "Import") + " of " + job.file + " failed: " + e.getMessage()
+                + ". Run it again to continue where it stopped.";
+        }
+        job.result = result;
+        job.running = false;
+        job.finishedAt = System.currentTimeMillis();
+        LOGGER.info(result);
+        try {
+            onDone.accept(result);
+        } catch (Exception e) {
+            LOGGER.error("Could not report the result of a transfer. Full error: ", e);
+        }
+    }
+
+    private String export(Job job, Path file) throws IOException {
+        try (ExportArchive.Writer writer = new ExportArchive.Writer(file)) {
+            if (writer.finished()) {
+                return "Export " + job.file + " already exists and is complete; pick another name to export again.";
+            }
+            BackupPosition after = writer.last();
+            if (after != null) {
+                LOGGER.info("Continuing export {} after {} backup(s)", job.file, writer.backups());
+            }
+            job.backups = writer.backups();
+            job.bytes = writer.size();
+
+            while (true) {
+                if (job.cancelled) {
+                    return "Export " + job.file + " cancelled after " + job.backups + " backup(s). Run it again to continue.";
+                }
+                List<NumberedBackup> page = databaseManager.readBackupsAfter(after, CHUNK_SIZE);
+                if (page == null) {
+                    throw new IOException("could not read backups from the database");
+                }
+                if (page.isEmpty()) {
+                    break;
+                }
+                writer.write(page);
+                after = page.get(page.size() - 1).position();
+                job.backups = writer.backups();
+                job.bytes = writer.size();
+                job.logProgress();
+            }
+            writer.finish();
+            job.bytes = writer.size();
+        }
+        return "Exported " + job.backups + " backup(s) to " + job.file + " (" + job.bytes / 1024 + " KB).";
+    }
+
+    private String importFile(Job job, Path file) throws IOException {
+        Path progressFile = file.resolveSibling(file.getFileName() + PROGRESS_SUFFIX);
+        long[] progress = readProgress(progressFile);
+        if (progress[0] > 0) {
+            LOGGER.info("Continuing import {} after {} backup(s)", job.file, progress[1] + progress[2]);
+        }
+        job.backups = progress[1];
+        job.skipped = progress[2];
+
+        try (ExportArchive.Reader reader = new ExportArchive.Reader(file, progress[0])) {
+            job.totalBytes = reader.size();
+            job.bytes = reader.position();
+            while (true) {
+                if (job.cancelled) {
+                    return "Import " + job.file + " cancelled after " + (job.backups + job.skipped) + " backup(s). Run it again to continue.";
+                }
+                List<NumberedBackup> chunk = reader.next();
+                if (chunk == null) {
+                    break;
+                }
+                int imported = databaseManager.importBackups(chunk);
+                if (imported < 0) {
+                    throw new IOException("could not save backups to the database");
+                }
+                job.backups += imported;
+                job.skipped += chunk.size() - imported;
+                job.bytes = reader.position();
+                // Only after the batch is committed, so a crash replays at most this chunk
+                writeProgress(progressFile, reader.position(), job.backups, job.skipped);
+                job.logProgress();
+            }
+        }
+        Files.deleteIfExists(progressFile);
+        return "Imported " + job.backups + " backup(s) from " + job.file
+            + (job.skipped > 0 ? " (" + job.skipped + " already present, skipped)." : ".");
+    }
+
+    /**
+     * @return {next chunk offset, imported, skipped}, all 0 when the import starts fresh
+     */
+    private static long[] readProgress(Path progressFile) {
+        if (!Files.exists(progressFile)) {
+            return new long[3];
+        }
+        try {
+            String[] parts = Files.readString(progressFile, StandardCharsets.UTF_8).trim().split(" ");
+            return new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+        } catch (IOException | RuntimeException e) {
+            // Starting over is safe, existing backups are skipped
+            LOGGER.warn("Could not read import progress {}, starting from the beginning. Full error: ", progressFile, e);
+            return new long[3];
+        }
+    }
+
+    private static void writeProgress(Path progressFile, long offset, long imported, long skipped) throws IOException {
+        Path temp = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+        Files.writeString(temp, offset + " " + imported + " " + skipped, StandardCharsets.UTF_8);
+        Files.move(temp, progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The export file for a name, or null if the name could point outside the export folder
+     */
+    @Nullable
+    private Path resolve(String name) {
+        if (!NAME_PATTERN.matcher(name).matches() || name.startsWith(".")) {
+            return null;
+        }
+        return directory.resolve(name.endsWith(FILE_SUFFIX) ? name : name + FILE_SUFFIX);
+    }
+
+    /**
+     * Cancels a running transfer and waits briefly for it to stop, so it is never cut off mid-chunk
+     * by the database shutting down.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Backup transfer did not stop in time; it will continue from its last chunk next time.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransferTask {
+        String run() throws IOException;
+    }
+
+    /**
+     * Progress of one export or import, updated by the transfer thread as chunks complete.
+     */
+    public static class Job {
+        private final boolean export;
+        private final String file;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long finishedAt;
+        private volatile boolean running = true;
+        private volatile boolean cancelled;
+        private volatile long backups;
+        private volatile long skipped;
+        private volatile long bytes;
+        private volatile long totalBytes;
+        @Nullable
+        private volatile String result;
+        private long lastLogged = startedAt;
+
+        private Job(boolean export, String file) {
+            this.export = export;
+            this.file = file;
+        }
+
+        private void logProgress() {
+            long now = System.currentTimeMillis();
+            if (now - lastLogged >= LOG_INTERVAL_MILLIS) {
+                lastLogged = now;
+                LOGGER.info("{} {}: {} backup(s) so far", export ? "Exporting" : "Importing", file, backups + skipped);
+            }
+        }
+
+        public boolean isExport() {
+            return export;
+        }
+
+        public String file() {
+            return file;
+        }
+
+        public boolean running() {
+            return running;
+        }
+
+        /**
+         * Backups written by an export, or saved by an import.
+         */
+        public long backups() {
+            return backups;
+        }
+
+        /**
+         * Backups an import skipped because they already existed.
+         */
+        public long skipped() {
+            return skipped;
+        }
+
+        /**
+         * Bytes written so far by an export, or read so far by an import.
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        /**
+         * Size of the file being imported; 0 for an export, whose final size isn't known up front.
+         */
+        public long totalBytes() {
+            return totalBytes;
+        }
+
+        public long elapsedMillis() {
+            return (running ? System.currentTimeMillis() : finishedAt) - startedAt;
+        }
+
+        @Nullable
+        public String result() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.backup.BackupQueue.PendingBackup;
+import com.eliteinventorybackups.model.BackupEntry;
+import com.mojang.logging.LogUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persists captured snapshots on a small pool of background threads so the server thread
+ * never waits on serialization or JDBC round-trips.
+ * <p>
+ * Each worker has its own queue and every player always goes to the same one, so a player's backups are
+ * numbered in the order they were captured no matter how many workers there are.
+ */
+public class BackupWriter {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long POLL_INTERVAL_MILLIS = 250;
+
+    private final DatabaseManager databaseManager;
+    private final RetentionSweeper retentionSweeper;
+    @Nullable
+    private final BackupJournal journal;
+    // One per worker, picked by player
+    private final BackupQueue[] queues;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder queuedOverCapacity = new LongAdder();
+    private final Map<BackupPriority, LongAdder> dropped = new EnumMap<>(BackupPriority.class);
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder groupCommits = new LongAdder();
+    private final LongAdder groupedBackups = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final LongAdder totalPersistNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    /**
+     * @param journal Journal every batch is written to before it goes to the database, or null to save without one
+     */
+    public BackupWriter(DatabaseManager databaseManager, RetentionSweeper retentionSweeper, @Nullable BackupJournal journal) {
+        this.databaseManager = databaseManager;
+        this.retentionSweeper = retentionSweeper;
+        this.journal = journal;
+        for (BackupPriority priority : BackupPriority.values()) {
+            dropped.put(priority, new LongAdder());
+        }
+
+        int threads = ModConfig.SERVER.writerThreads.get();
+        int capacityPerQueue = Math.max(1, (ModConfig.SERVER.writeQueueCapacity.get() + threads - 1) / threads);
+        this.queues = new BackupQueue[threads];
+        for (int i = 0; i < threads; i++) {
+            BackupQueue queue = new BackupQueue(capacityPerQueue);
+            queues[i] = queue;
+            Thread worker = new Thread(() -> runWorker(queue), "EIB-Writer-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        LOGGER.info("Backup writer started with {} thread(s) and a queue capacity of {}", threads, capacityPerQueue * threads);
+    }
+
+    private BackupQueue queueFor(UUID playerUuid) {
+        return queues[Math.floorMod(playerUuid.hashCode(), queues.length)];
+    }
+
+    private int queueSize() {
+        int size = 0;
+        for (BackupQueue queue : queues) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Queue a snapshot to be persisted. When the queue is full, {@code queueFullPolicy} decides what gives way;
+     * death and manual backups that still don't fit are queued over capacity so they are never lost.
+     * @return A future completed with the assigned backup number, 0 if it was skipped as a duplicate, or -1 if it was dropped or the save failed
+     */
+    public CompletableFuture<Integer> submit(BackupSnapshot snapshot) {
+        if (!accepting) {
+            LOGGER.warn("Backup writer is shutting down, skipping {} backup for player {}", snapshot.eventType(), snapshot.playerName());
+            return CompletableFuture.completedFuture(-1);
+        }
+
+        submitted.increment();
+        PendingBackup pending = new PendingBackup(snapshot, BackupPriority.of(snapshot.eventType()), new CompletableFuture<>());
+        BackupQueue queue = queueFor(snapshot.playerUuid());
+        BackupQueue.Offer offer;
+        try {
+            offer = queue.offer(pending, ModConfig.SERVER.queueFullPolicy.get(), ModConfig.SERVER.queueBlockTimeoutMillis.get());
+        } catch (InterruptedException e) {
+            // Only BLOCK waits, and never for a critical snapshot
+            Thread.currentThread().interrupt();
+            offer = new BackupQueue.Offer(BackupQueue.Outcome.REJECTED, null);
+        }
+
+        switch (offer.outcome()) {
+            case QUEUED -> peakQueueDepth.accumulateAndGet(queueSize(), Math::max);
+            case COALESCED -> {
+                coalesced.increment();
+                LOGGER.debug("Backup queue is full, {} backup for player {} replaces their queued {} backup",
+                    snapshot.eventType(), snapshot.playerName(), offer.displaced().snapshot().eventType());
+                offer.displaced().result().complete(-1);
+            }
+            case DISPLACED_LOWER -> drop(offer.displaced(), "to make room for a " + snapshot.eventType() + " backup");
+            case OVER_CAPACITY -> {
+                LOGGER.warn("Backup queue is full ({} pending), queueing {} backup for player {} over capacity",
+                    queue.size(), snapshot.eventType(), snapshot.playerName());
+                queuedOverCapacity.increment();
+                peakQueueDepth.accumulateAndGet(queueSize(), Math::max);
+            }
+            case REJECTED -> drop(pending, "because the backup queue is full");
+        }
+        return pending.result();
+    }
+
+    private void drop(PendingBackup pending, String reason) {
+        dropped.get(pending.priority()).increment();
+        LOGGER.warn("Dropped {} backup for player {} {}", pending.snapshot().eventType(), pending.snapshot().playerName(), reason);
+        pending.result().complete(-1);
+    }
+
+    private void runWorker(BackupQueue queue) {
+        List<PendingBackup> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingBackup pending = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (pending == null) {
+                    continue;
+                }
+                if (commitsAlone(pending)) {
+                    persist(pending);
+                    continue;
+                }
+
+                // Gather more snapshots for the same commit until the batch is full or the delay is up
+                batch.add(pending);
+                int maxBatch = ModConfig.SERVER.groupCommitMaxBatch.get();
+                long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ModConfig.SERVER.groupCommitMaxDelayMillis.get());
+                while (batch.size() < maxBatch) {
+                    // No point waiting for more once shutting down
+                    long waitNanos = running ? deadlineNanos - System.nanoTime() : 0;
+                    PendingBackup next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (commitsAlone(next)) {
+                        // Everything gathered so far was captured before it, so it is saved first
+                        persistBatch(batch);
+                        batch.clear();
+                        persist(next);
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (!batch.isEmpty()) {
+                    persistBatch(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (PendingBackup pending : batch) {
+                    failed.increment();
+                    pending.result().complete(-1);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deaths and manual backups get their own commit (unless configured otherwise), so they are durable
+     * as soon as they are reported saved.
+     */
+    private static boolean commitsAlone(PendingBackup pending) {
+        return ModConfig.SERVER.groupCommitMaxBatch.get() <= 1
+            || (pending.priority().isCritical() && !ModConfig.SERVER.groupCommitCriticalBackups.get());
+    }
+
+    private void persist(PendingBackup pending) {
+        persistBatch(List.of(pending));
+    }
+
+    /**
+     * Save a batch of snapshots in one transaction and complete their futures.
+     */
+    private void persistBatch(List<PendingBackup> batch) {
+        long startNanos = System.nanoTime();
+        List<PendingBackup> converted = new ArrayList<>(batch.size());
+        List<BackupEntry> entries = new ArrayList<>(batch.size());
+        for (PendingBackup pending : batch) {
+            totalQueueWaitNanos.add(startNanos - pending.snapshot().capturedAtNanos());
+            try {
+                entries.add(pending.snapshot().toEntry());
+                converted.add(pending);
+            } catch (Exception e) {
+                failed.increment();
+                LOGGER.error("Error creating backup for player {}: {}", pending.snapshot().playerName(), e.getMessage(), e);
+                pending.result().complete(-1);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<BackupJournal.Handle> journaled = journal(entries);
+        // Players with older backups still waiting in the journal are held back behind them: these stay in the
+        // journal as failed and the replayer saves them after the older ones, in the order they were captured
+        List<Integer> toSave = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            if (journaled == null || !journal.hasUnsaved(entries.get(i).playerUuid())) {
+                toSave.add(i);
+            }
+        }
+        if (toSave.size() < entries.size()) {
+            LOGGER.debug("Holding back {} backup(s) behind older ones still in the journal", entries.size() - toSave.size());
+        }
+
+        int[] results = new int[entries.size()];
+        Arrays.fill(results, -1);
+        if (!toSave.isEmpty()) {
+            try {
+                int[] saved = databaseManager.saveBackups(toSave.stream().map(entries::get).toList());
+                for (int i = 0; i < saved.length; i++) {
+                    results[toSave.get(i)] = saved[i];
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error saving {} backup(s): {}", toSave.size(), e.getMessage(), e);
+            }
+        }
+
+        long endNanos = System.nanoTime();
+        if (toSave.size() > 1) {
+            groupCommits.increment();
+            groupedBackups.add(toSave.size());
+        }
+        for (int i = 0; i < converted.size(); i++) {
+            PendingBackup pending = converted.get(i);
+            complete(pending, results[i]);
+            if (journaled != null) {
+                // Failed backups stay in the journal for the replayer
+                journal.resolve(journaled.get(i), results[i] >= 0);
+            }
+            // The commit is shared, so each backup is charged its share of it
+            totalPersistNanos.add((endNanos - startNanos) / entries.size());
+            maxLatencyNanos.accumulateAndGet(endNanos - pending.snapshot().capturedAtNanos(), Math::max);
+        }
+    }
+
+    @Nullable
+    private List<BackupJournal.Handle> journal(List<BackupEntry> entries) {
+        if (journal == null) {
+            return null;
+        }
+        try {
+            return journal.append(entries);
+        } catch (IOException e) {
+            LOGGER.error("Could not write {} backup(s) to the journal, saving them without it. Full error: ", entries.size(), e);
+            return null;
+        }
+    }
+
+    private void complete(PendingBackup pending, int backupNumber) {
+        BackupSnapshot snapshot = pending.snapshot();
+        if (backupNumber > 0) {
+            persisted.increment();
+            retentionSweeper.markDirty(snapshot.playerUuid());
+            LOGGER.info("Backup [{}] created for player {} ({}) at world {}, x:{}, y:{}, z:{}",
+                snapshot.eventType(), snapshot.playerName(), snapshot.playerUuid(),
+                snapshot.world(), snapshot.posX(), snapshot.posY(), snapshot.posZ());
+        } else if (backupNumber == 0) {
+            // Identical to the previous backup and skipped by the duplicate snapshot policy
+            persisted.increment();
+        } else {
+            failed.increment();
+        }
+        pending.result().complete(backupNumber);
+    }
+
+    /**
+     * Save snapshots on the calling thread in group-commit batches, bypassing the queue, until they are all saved
+     * or the timeout passes. Used for the shutdown snapshot once the workers have stopped.
+     * @return How many snapshots were persisted
+     */
+    public int persistAll(List<BackupSnapshot> snapshots, long timeoutMillis) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int batchSize = ModConfig.SERVER.groupCommitMaxBatch.get();
+        List<CompletableFuture<Integer>> results = new ArrayList<>(snapshots.size());
+
+        for (int start = 0; start < snapshots.size() && System.nanoTime() < deadlineNanos; start += batchSize) {
+            List<PendingBackup> batch = new ArrayList<>(batchSize);
+            for (BackupSnapshot snapshot : snapshots.subList(start, Math.min(start + batchSize, snapshots.size()))) {
+                submitted.increment();
+                batch.add(new PendingBackup(snapshot, BackupPriority.of(snapshot.eventType()), new CompletableFuture<>()));
+            }
+            persistBatch(batch);
+            batch.forEach(pending -> results.add(pending.result()));
+        }
+        // Batches run on this thread, so every future is already complete
+        return (int) results.stream().filter(result -> result.join() >= 0).count();
+    }
+
+    /**
+     * Stop accepting new snapshots and wait up to the configured deadline for queued ones to be saved.
+     */
+    public void shutdown() {
+        accepting = false;
+        running = false;
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(ModConfig.SERVER.shutdownDrainSeconds.get());
+        LOGGER.info("Backup writer draining {} queued backup(s)...", queueSize());
+
+        for (Thread worker : workers) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            try {
+                worker.join(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        List<PendingBackup> abandoned = new ArrayList<>();
+        for (BackupQueue queue : queues) {
+            queue.drainTo(abandoned);
+        }
+        for (PendingBackup pending : abandoned) {
+            pending.result().complete(-1);
+        }
+        workers.forEach(Thread::interrupt);
+
+        if (abandoned.isEmpty()) {
+            LOGGER.info("Backup writer drained successfully.");
+        } else {
+            LOGGER.warn("Backup writer drain deadline reached, {} queued backup(s) were not saved.", abandoned.size());
+        }
+    }
+
+    public Stats getStats() {
+        long persistedCount = persisted.sum();
+        long processed = persistedCount + failed.sum();
+        return new Stats(
+            queueSize(),
+            peakQueueDepth.get(),
+            submitted.sum(),
+            persistedCount,
+            failed.sum(),
+            queuedOverCapacity.sum(),
+            droppedCounts(),
+            coalesced.sum(),
+            groupCommits.sum(),
+            groupedBackups.sum(),
+            processed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalQueueWaitNanos.sum() / processed) : 0,
+            processed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalPersistNanos.sum() / processed) : 0,
+            TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get())
+        );
+    }
+
+    private Map<BackupPriority, Long> droppedCounts() {
+        Map<BackupPriority, Long> counts = new EnumMap<>(BackupPriority.class);
+        dropped.forEach((priority, count) -> counts.put(priority, count.sum()));
+        return counts;
+    }
+
+    public record Stats(
+        int queueDepth,
+        int peakQueueDepth,
+        long submitted,
+        long persisted,
+        long failed,
+        long queuedOverCapacity,
+        Map<BackupPriority, Long> dropped,
+        long coalesced,
+        long groupCommits,
+        long groupedBackups,
+        long avgQueueWaitMillis,
+        long avgPersistMillis,
+        long maxLatencyMillis
+    ) {}
+}
@@ -0,0 +1,312 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.database.BackupStore.BackupPosition;
+import com.eliteinventorybackups.database.BackupStore.NumberedBackup;
+import com.eliteinventorybackups.util.BackupEntryTags;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File format of {@code /eib export}: a header followed by independently compressed chunks, so files of any size are
+ * written and read one chunk at a time and an interrupted export continues after its last complete chunk.
+ * <p>
+ * Layout: {@code [int magic][int version]}, then chunks {@code [int body length][int CRC32 of body][int backup count][body]}.
+ * A body is the deflated sequence of one NBT compound per backup, holding its number, its death count and the
+ * {@link BackupEntryTags} form of the entry. A chunk without backups marks a finished export.
+ */
+public class ExportArchive {
+    private static final int MAGIC = 0x45494258; // "EIBX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int CHUNK_HEADER_SIZE = 12;
+    // A length above this can only come from a torn or corrupt header
+    private static final int MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * Appends chunks to an export file, picking up where an interrupted export stopped.
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private long size;
+        private long backups;
+        @Nullable
+        private BackupPosition last;
+        private boolean finished;
+
+        public Writer(Path file) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (channel.size() < HEADER_SIZE) {
+                    channel.truncate(0);
+                    writeFully(channel, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+                    channel.force(false);
+                    size = HEADER_SIZE;
+                } else {
+                    checkHeader(channel);
+                    recover();
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Finds the last complete chunk and cuts off anything after it.
+         */
+        private void recover() throws IOException {
+            List<long[]> chunks = new ArrayList<>(); // offset, backup count
+            long position = HEADER_SIZE;
+            long fileSize = channel.size();
+            while (position + CHUNK_HEADER_SIZE <= fileSize) {
+                ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+                readFully(channel, header, position);
+                int length = header.getInt(0);
+                int count = header.getInt(8);
+                if (length < 0 || length > MAX_CHUNK_SIZE || position + CHUNK_HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                position += CHUNK_HEADER_SIZE + length;
+                if (count == 0) {
+                    finished = true;
+                    break;
+                }
+                chunks.add(new long[] {position - CHUNK_HEADER_SIZE - length, count});
+            }
+
+            // Every chunk is forced before the next one is started, so only the last can be torn
+            List<NumberedBackup> lastChunk = null;
+            while (!finished && !chunks.isEmpty() && lastChunk == null) {
+                long[] chunk = chunks.get(chunks.size() - 1);
+                try {
+                    lastChunk = readChunk(channel, chunk[0]);
+                } catch (IOException e) {
+                    chunks.remove(chunks.size() - 1);
+                    position = chunk[0];
+                }
+            }
+            for (long[] chunk : chunks) {
+                backups += chunk[1];
+            }
+            if (lastChunk != null && !lastChunk.isEmpty()) {
+                last = lastChunk.get(lastChunk.size() - 1).position();
+            }
+
+            channel.truncate(position);
+            size = position;
+        }
+
+        /**
+         * Appends one chunk and forces it to disk.
+         */
+        public void write(List<NumberedBackup> chunk) throws IOException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+                for (NumberedBackup backup : chunk) {
+                    CompoundTag tag = new CompoundTag();
+                    tag.putInt("number", backup.backupNumber());
+                    tag.putInt("deaths", backup.deathCount());
+                    tag.put("backup", BackupEntryTags.toTag(backup.entry()));
+                    NbtIo.write(tag, out);
+                }
+            } finally {
+                deflater.end();
+            }
+            size += appendChunk(bytes.toByteArray(), chunk.size());
+            backups += chunk.size();
+            last = chunk.get(chunk.size() - 1).position();
+        }
+
+        /**
+         * Marks the export as complete.
+         */
+        public void finish() throws IOException {
+            size += appendChunk(new byte[0], 0);
+            finished = true;
+        }
+
+        private int appendChunk(byte[] body, int count) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_HEADER_SIZE + body.length)
+                .putInt(body.length)
+                .putInt(checksum(body))
+                .putInt(count)
+                .put(body)
+                .flip();
+            int written = writeFully(channel, buffer, size);
+            channel.force(false);
+            return written;
+        }
+
+        /**
+         * @return The last backup in the file, or null if it has none yet
+         */
+        @Nullable
+        public BackupPosition last() {
+            return last;
+        }
+
+        public long backups() {
+            return backups;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public boolean finished() {
+            return finished;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads an export file chunk by chunk.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private long position;
+
+        /**
+         * @param offset Where to start: 0 for the first chunk, or a {@link #position()} from an earlier reader
+         */
+        public Reader(Path file, long offset) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                checkHeader(channel);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            position = Math.max(offset, HEADER_SIZE);
+        }
+
+        /**
+         * @return The backups of the next chunk, or null once the end of a finished export is reached
+         * @throws IOException if the chunk is corrupt, or the file ends without being finished
+         */
+        @Nullable
+        public List<NumberedBackup> next() throws IOException {
+            if (position + CHUNK_HEADER_SIZE > channel.size()) {
+                throw new IOException("The export file ends early; the export did not finish");
+            }
+            List<NumberedBackup> chunk = readChunk(channel, position);
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(channel, length, position);
+            position += CHUNK_HEADER_SIZE + length.getInt(0);
+            return chunk.isEmpty() ? null : chunk;
+        }
+
+        /**
+         * Offset of the next chunk; a reader opened there continues with it.
+         */
+        public long position() {
+            return position;
+        }
+
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static void checkHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not an Elite Inventory Backups export file");
+        }
+        if (header.getInt(4) > VERSION) {
+            throw new IOException("Export file version " + header.getInt(4) + " is newer than this version of the mod supports");
+        }
+    }
+
+    /**
+     * Reads and decodes the chunk at an offset, checking its checksum.
+     */
+    private static List<NumberedBackup> readChunk(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+        readFully(channel, header, offset);
+        int length = header.getInt(0);
+        int count = header.getInt(8);
+        if (length < 0 || length > MAX_CHUNK_SIZE || count < 0) {
+            throw new IOException("Corrupt export chunk header at offset " + offset);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(channel, body, offset + CHUNK_HEADER_SIZE);
+        if (checksum(body.array()) != header.getInt(4)) {
+            throw new IOException("Export chunk at offset " + offset + " is corrupt");
+        }
+
+        List<NumberedBackup> backups = new ArrayList<>(count);
+        if (count == 0) {
+            return backups;
+        }
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(body.array())))) {
+            for (int i = 0; i < count; i++) {
+                CompoundTag tag = NbtIo.read(in, NbtAccounter.UNLIMITED);
+                // Exports written before death counts were kept have none; every backup counted one death then
+                int deaths = tag.contains("deaths") ? tag.getInt("deaths") : 1;
+                // Inventories are always exported whole, so an import stores them that way
+                backups.add(new NumberedBackup(tag.getInt("number"), BackupEntryTags.fromTag(tag.getCompound("backup")), deaths, false));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Could not decode export chunk at offset " + offset, e);
+        }
+        return backups;
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Export file ended early");
+            }
+        }
+    }
+}
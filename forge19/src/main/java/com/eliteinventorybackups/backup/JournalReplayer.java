@@ -0,0 +1,149 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.model.BackupEntry;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends journaled backups that never reached the database (crash, database unreachable) to it again,
+ * on a fixed schedule. The first run happens right away, replaying whatever the last run left behind.
+ */
+public class JournalReplayer {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final BackupJournal journal;
+    private final DatabaseManager databaseManager;
+    private final RetentionSweeper retentionSweeper;
+    private final ScheduledExecutorService executor;
+
+    // Metrics
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong alreadySaved = new AtomicLong();
+
+    public JournalReplayer(BackupJournal journal, DatabaseManager databaseManager, RetentionSweeper retentionSweeper) {
+        this.journal = journal;
+        this.databaseManager = databaseManager;
+        this.retentionSweeper = retentionSweeper;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EIB-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int interval = ModConfig.SERVER.journalReplayIntervalSeconds.get();
+        executor.scheduleWithFixedDelay(this::runSafely, 0, interval, TimeUnit.SECONDS);
+    }
+
+    private void runSafely() {
+        try {
+            replay();
+        } catch (Exception e) {
+            LOGGER.error("Backup journal replay failed. Full error: ", e);
+        }
+    }
+
+    /**
+     * Replay right away instead of waiting for the next scheduled run, e.g. once the database is back.
+     */
+    public void replayNow() {
+        if (!executor.isShutdown()) {
+            executor.execute(this::runSafely);
+        }
+    }
+
+    private void replay() throws Exception {
+        if (!databaseManager.isAvailable()) {
+            return; // Nothing would get through; the database's recovery triggers a run
+        }
+        for (BackupJournal.Segment segment : journal.segmentsToReplay()) {
+            List<BackupJournal.Record> records = journal.readForReplay(segment);
+            Set<Long> stillFailed = new HashSet<>();
+            int saved = 0;
+
+            int batchSize = ModConfig.SERVER.groupCommitMaxBatch.get();
+            int start = 0;
+            while (start < records.size()) {
+                // At most one record per player in a batch, so a player's record that fails never has a newer one
+                // of theirs saved ahead of it in the same commit
+                List<BackupJournal.Record> batch = new ArrayList<>();
+                Set<UUID> players = new HashSet<>();
+                for (; start < records.size() && batch.size() < batchSize; start++) {
+                    BackupJournal.Record record = records.get(start);
+                    BackupEntry entry = record.entry();
+                    if (!players.add(entry.playerUuid())) {
+                        break;
+                    }
+                    // A crash between the commit and the journal update leaves records that are already saved
+                    if (databaseManager.hasBackup(entry.playerUuid(), entry.timestamp(), entry.eventType())) {
+                        alreadySaved.incrementAndGet();
+                    } else {
+                        batch.add(record);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                int[] results = databaseManager.saveBackups(batch.stream().map(BackupJournal.Record::entry).toList());
+                for (int i = 0; i < batch.size(); i++) {
+                    if (results[i] >= 0) {
+                        saved++;
+                        retentionSweeper.markDirty(batch.get(i).entry().playerUuid());
+                    } else {
+                        stillFailed.add(batch.get(i).offset());
+                    }
+                }
+                if (!stillFailed.isEmpty()) {
+                    // Don't hammer a database that is refusing writes; the rest waits for the next run
+                    records.subList(start, records.size()).forEach(record -> stillFailed.add(record.offset()));
+                    break;
+                }
+            }
+
+            journal.replayDone(segment, stillFailed);
+            replayed.addAndGet(saved);
+            if (!stillFailed.isEmpty()) {
+                // Most likely the database is still unreachable; the later segments can wait for the next run
+                LOGGER.warn("Replayed {} journaled backup(s) from {}, {} could not be saved yet and will be retried",
+                    saved, segment.path().getFileName(), stillFailed.size());
+                return;
+            }
+            if (saved > 0) {
+                LOGGER.info("Replayed {} journaled backup(s) from {}", saved, segment.path().getFileName());
+            }
+        }
+    }
+
+    /**
+     * Stop the schedule, letting a run in progress finish first.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(replayed.get(), alreadySaved.get());
+    }
+
+    public record Stats(long replayed, long alreadySaved) {}
+}
@@ -0,0 +1,151 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import org.slf4j.Logger;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads login snapshots out after a restart, when everyone reconnects at once. Each login is captured after
+ * a random delay, at most {@code loginSnapshotsPerSecond} per second, and skipped entirely when the player's
+ * last backup is a logout from within the coalesce window (their state can't have changed while offline).
+ * Runs entirely on the server thread.
+ */
+public class LoginSnapshotDeferrer {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int TICKS_PER_SECOND = 20;
+
+    private final BackupWriter backupWriter;
+    private final DatabaseManager databaseManager;
+    private final PriorityQueue<PendingLogin> queue = new PriorityQueue<>(Comparator.comparingLong(PendingLogin::dueTick));
+    private final Map<UUID, PendingLogin> pendingByPlayer = new HashMap<>();
+    // Logout snapshots taken this session, so a quick relog doesn't need a database lookup
+    private final Map<UUID, Long> recentLogouts = new HashMap<>();
+    private long ticks = 0;
+    private int releasedThisSecond = 0;
+
+    // Metrics
+    private long deferred = 0;
+    private long captured = 0;
+    private long coalesced = 0;
+
+    public LoginSnapshotDeferrer(BackupWriter backupWriter, DatabaseManager databaseManager) {
+        this.backupWriter = backupWriter;
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Queue a login snapshot for the player.
+     */
+    public void schedule(ServerPlayer player) {
+        UUID playerUuid = player.getUUID();
+        if (pendingByPlayer.containsKey(playerUuid)) {
+            return; // Relogged before the first one ran
+        }
+
+        int maxDelayTicks = ModConfig.SERVER.loginSnapshotMaxDelaySeconds.get() * TICKS_PER_SECOND;
+        long dueTick = ticks + ThreadLocalRandom.current().nextInt(maxDelayTicks + 1);
+        // Look the latest backup up now, so the answer is normally in by the time the snapshot is due
+        CompletableFuture<BackupSummary> latest = isRecentLogout(recentLogouts.get(playerUuid)) || !coalescing()
+            ? CompletableFuture.completedFuture(null)
+            : databaseManager.getLatestBackupSummaryAsync(playerUuid);
+
+        PendingLogin pending = new PendingLogin(playerUuid, dueTick, latest);
+        queue.add(pending);
+        pendingByPlayer.put(playerUuid, pending);
+        deferred++;
+    }
+
+    /**
+     * Call when a player logs out.
+     * @param logoutSnapshotTaken Whether a logout snapshot was just submitted for them
+     */
+    public void onLogout(UUID playerUuid, boolean logoutSnapshotTaken) {
+        // The logout snapshot, if any, already covers a login that hasn't been captured yet
+        pendingByPlayer.remove(playerUuid);
+        if (logoutSnapshotTaken) {
+            recentLogouts.put(playerUuid, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Call once per server tick.
+     */
+    public void tick(MinecraftServer server) {
+        ticks++;
+        if (ticks % TICKS_PER_SECOND == 0) {
+            releasedThisSecond = 0;
+            if (ticks % (60 * TICKS_PER_SECOND) == 0) {
+                recentLogouts.values().removeIf(time -> !isRecentLogout(time));
+            }
+        }
+
+        int perSecond = ModConfig.SERVER.loginSnapshotsPerSecond.get();
+        while (!queue.isEmpty() && queue.peek().dueTick() <= ticks && releasedThisSecond < perSecond) {
+            PendingLogin pending = queue.poll();
+            if (pendingByPlayer.get(pending.playerUuid()) != pending) {
+                continue; // Logged out meanwhile
+            }
+            pendingByPlayer.remove(pending.playerUuid());
+
+            ServerPlayer player = server.getPlayerList().getPlayer(pending.playerUuid());
+            if (player == null) {
+                continue;
+            }
+            if (coalescesWithLogout(pending)) {
+                coalesced++;
+                LOGGER.debug("Skipping login snapshot for {}, their last backup is a recent logout", player.getName().getString());
+                continue;
+            }
+
+            try {
+                backupWriter.submit(BackupSnapshot.capture(player, "login", null));
+                captured++;
+                releasedThisSecond++;
+            } catch (Exception e) {
+                LOGGER.error("Error creating login backup for player {}: {}", player.getName().getString(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean coalescesWithLogout(PendingLogin pending) {
+        if (!coalescing()) {
+            return false;
+        }
+        if (isRecentLogout(recentLogouts.get(pending.playerUuid()))) {
+            return true;
+        }
+        // Never wait on the database here; without an answer the snapshot is simply taken
+        BackupSummary latest = pending.latest().getNow(null);
+        return latest != null && ("logout".equals(latest.eventType()) || "shutdown".equals(latest.eventType()))
+            && isRecentLogout(latest.timestamp());
+    }
+
+    private static boolean coalescing() {
+        return ModConfig.SERVER.loginCoalesceWindowSeconds.get() > 0;
+    }
+
+    private static boolean isRecentLogout(Long logoutTime) {
+        return logoutTime != null
+            && System.currentTimeMillis() - logoutTime <= ModConfig.SERVER.loginCoalesceWindowSeconds.get() * 1000L;
+    }
+
+    public Stats getStats() {
+        return new Stats(pendingByPlayer.size(), deferred, captured, coalesced);
+    }
+
+    public record Stats(int pending, long deferred, long captured, long coalesced) {}
+
+    private record PendingLogin(UUID playerUuid, long dueTick, CompletableFuture<BackupSummary> latest) {}
+}
@@ -0,0 +1,170 @@
+package com.eliteinventorybackups.backup;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trims players down to {@code maxBackupsPerPlayer} in the background. Players are marked dirty
+ * when they receive a backup and trimmed in batches on a fixed schedule, one delete per player.
+ * The same schedule archives backups older than {@code archiveAfterDays}.
+ */
+public class RetentionSweeper {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    // Once archiving has caught up, backups only become old enough slowly; no need to look every run
+    private static final long ARCHIVE_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final DatabaseManager databaseManager;
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor;
+    // Limit seen on the previous run; a change triggers a full scan so a lowered limit applies to everyone
+    private int lastLimit = -1;
+    private long nextArchiveRun = 0;
+
+    // Metrics
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong lastRunReclaimed = new AtomicLong();
+    private final AtomicLong totalReclaimed = new AtomicLong();
+    private final AtomicLong totalArchived = new AtomicLong();
+
+    public RetentionSweeper(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EIB-Retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int interval = ModConfig.SERVER.retentionSweepIntervalSeconds.get();
+        // First run happens right away so limits lowered while the server was offline are applied
+        executor.scheduleWithFixedDelay(this::runSafely, 0, interval, TimeUnit.SECONDS);
+        LOGGER.info("Retention sweeper started, running every {} seconds", interval);
+    }
+
+    /**
+     * Mark a player as needing a retention check on the next run.
+     */
+    public void markDirty(UUID playerUuid) {
+        dirtyPlayers.add(playerUuid);
+    }
+
+    private void runSafely() {
+        try {
+            sweep();
+            archive();
+            // Also picks up sections freed by /eib removeall, so it runs even when nothing was trimmed
+            int removedSections = databaseManager.removeUnusedSections();
+            if (removedSections > 0) {
+                LOGGER.info("Retention sweep removed {} unused backup section(s)", removedSections);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Retention sweep failed. Full error: ", e);
+        }
+    }
+
+    private void sweep() {
+        int maxBackups = ModConfig.SERVER.maxBackupsPerPlayer.get();
+        if (maxBackups <= 0) {
+            dirtyPlayers.clear(); // Unlimited, nothing to trim
+            lastLimit = maxBackups;
+            return;
+        }
+
+        if (maxBackups != lastLimit) {
+            List<UUID> overLimit = databaseManager.getPlayersOverBackupLimit(maxBackups);
+            if (!overLimit.isEmpty()) {
+                LOGGER.info("{} player(s) are over the backup limit of {}, queuing them for trimming", overLimit.size(), maxBackups);
+            }
+            dirtyPlayers.addAll(overLimit);
+            lastLimit = maxBackups;
+        }
+
+        List<UUID> batch = new ArrayList<>();
+        int batchSize = ModConfig.SERVER.retentionSweepBatchSize.get();
+        Iterator<UUID> iterator = dirtyPlayers.iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long reclaimed = 0;
+        int trimmedPlayers = 0;
+        for (UUID playerUuid : batch) {
+            int deleted = databaseManager.trimBackupsForPlayer(playerUuid, maxBackups);
+            if (deleted > 0) {
+                reclaimed += deleted;
+                trimmedPlayers++;
+            }
+        }
+
+        runs.incrementAndGet();
+        lastRunReclaimed.set(reclaimed);
+        totalReclaimed.addAndGet(reclaimed);
+        if (reclaimed > 0) {
+            LOGGER.info("Retention sweep removed {} old backup(s) across {} player(s) ({} checked, {} still pending)",
+                reclaimed, trimmedPlayers, batch.size(), dirtyPlayers.size());
+        } else {
+            LOGGER.debug("Retention sweep checked {} player(s), nothing to remove", batch.size());
+        }
+    }
+
+    /**
+     * Archives one batch of old backups, first thing after startup and then again while whole batches keep coming back.
+     * Runs before the section cleanup, which then frees what the archived backups no longer use.
+     */
+    private void archive() {
+        int archiveAfterDays = ModConfig.SERVER.archiveAfterDays.get();
+        long now = System.currentTimeMillis();
+        if (archiveAfterDays <= 0 || now < nextArchiveRun) {
+            return;
+        }
+
+        int batchSize = ModConfig.SERVER.archiveBatchSize.get();
+        int archived = databaseManager.archiveBackupsOlderThan(now - TimeUnit.DAYS.toMillis(archiveAfterDays), batchSize);
+        if (archived < batchSize) {
+            nextArchiveRun = now + ARCHIVE_IDLE_MILLIS;
+        }
+        if (archived > 0) {
+            totalArchived.addAndGet(archived);
+            LOGGER.info("Archived {} backup(s) older than {} day(s)", archived, archiveAfterDays);
+        }
+    }
+
+    /**
+     * Stop the schedule, letting a run in progress finish first.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Anything still dirty is picked up by the startup scan next time
+        LOGGER.info("Retention sweeper stopped with {} player(s) pending.", dirtyPlayers.size());
+    }
+
+    public Stats getStats() {
+        return new Stats(dirtyPlayers.size(), runs.get(), lastRunReclaimed.get(), totalReclaimed.get(), totalArchived.get());
+    }
+
+    public record Stats(int pendingPlayers, long runs, long lastRunReclaimed, long totalReclaimed, long totalArchived) {}
+}
@@ -0,0 +1,52 @@
+package com.eliteinventorybackups.commands;
+
+import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.arguments.EntityArgument;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.List;
+
+/**
+ * Shared tab-completion providers for the backup commands.
+ */
+public class BackupSuggestions {
+
+    /**
+     * Suggests the backup numbers of the player in the "player" argument. Answers from the summary
+     * cache right away; on a cache miss the suggestions complete once a background lookup finishes,
+     * so the server thread never waits on the database.
+     */
+    public static final SuggestionProvider<CommandSourceStack> BACKUP_NUMBERS = (context, builder) -> {
+        ServerPlayer targetPlayer;
+        try {
+            targetPlayer = EntityArgument.getPlayer(context, "player");
+        } catch (Exception e) {
+            // If we can't get the player, just don't suggest anything
+            return builder.buildFuture();
+        }
+
+        DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
+        if (dbManager == null) {
+            return builder.buildFuture();
+        }
+
+        List<BackupSummary> cached = dbManager.getCachedBackupSummaries(targetPlayer.getUUID());
+        if (cached != null) {
+            return suggest(builder, cached).buildFuture();
+        }
+        return dbManager.getBackupsSummaryForPlayerAsync(targetPlayer.getUUID())
+            .thenApply(summaries -> suggest(builder, summaries).build());
+    };
+
+    private static SuggestionsBuilder suggest(SuggestionsBuilder builder, List<BackupSummary> summaries) {
+        for (BackupSummary summary : summaries) {
+            builder.suggest(summary.id()); // id holds the backup number, not the database id
+        }
+        return builder;
+    }
+}
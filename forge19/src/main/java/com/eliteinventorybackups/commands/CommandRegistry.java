@@ -24,6 +24,11 @@ public class CommandRegistry {
             .then(ViewCommand.register(dispatcher))
             .then(RestoreCommand.register(dispatcher))
             .then(RemoveAllCommand.register(dispatcher))
+            .then(StatsCommand.register(dispatcher))
+            .then(ExportCommand.register(dispatcher))
+            .then(ImportCommand.register(dispatcher))
+            .then(TransferCommand.register(dispatcher))
+            .then(MigrateCommand.register(dispatcher))
             ;
 
         dispatcher.register(eibCommand);
@@ -0,0 +1,47 @@
+package com.eliteinventorybackups.commands;
+
+import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.backup.BackupTransfer;
+import com.eliteinventorybackups.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.logging.LogUtils;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+import org.slf4j.Logger;
+
+public class ImportCommand {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public static LiteralArgumentBuilder<CommandSourceStack> register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        return Commands.literal("import")
+            .requires(PermissionUtil::hasAdminPermission)
+            .then(Commands.argument("name", StringArgumentType.word())
+                .executes(context -> importBackups(context.getSource(), StringArgumentType.getString(context, "name")))
+            );
+    }
+
+    private static int importBackups(CommandSourceStack source, String name) {
+        BackupTransfer transfer = EliteInventoryBackups.getBackupTransfer();
+        if (transfer == null) {
+            source.sendFailure(Component.literal("BackupTransfer not initialized."));
+            return 0;
+        }
+
+        String error = transfer.startImport(name, result -> TransferCommand.reply(source, result));
+        if (error != null) {
+            source.sendFailure(Component.literal(error));
+            return 0;
+        }
+
+        LOGGER.info("Admin {} started importing backups from {}", source.getTextName(), name);
+        source.sendSuccess(Component.literal("Importing backups from ")
+            .append(Component.literal(name).withStyle(Style.EMPTY.withColor(ChatFormatting.YELLOW)))
+            .append(Component.literal(" in the background. Use /eib transfer to follow it.")), false);
+        return 1;
+    }
+}
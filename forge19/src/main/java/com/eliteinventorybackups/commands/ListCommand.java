@@ -1,7 +1,9 @@
 package com.eliteinventorybackups.commands;
 
 import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.backup.BackupJournal;
 import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.model.BackupEntry;
 import com.eliteinventorybackups.model.BackupSummary;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
@@ -18,6 +20,7 @@ import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 import com.eliteinventorybackups.util.PermissionUtil;
 import net.minecraft.network.chat.MutableComponent;
+import org.jetbrains.annotations.Nullable;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -33,14 +36,23 @@ public class ListCommand {
         return Commands.literal("list")
             .requires(PermissionUtil::hasAdminPermission)
             .then(Commands.argument("player", EntityArgument.player())
-                .executes(context -> listBackups(context.getSource(), EntityArgument.getPlayer(context, "player"), 1))
+                .executes(context -> listBackups(context.getSource(), EntityArgument.getPlayer(context, "player"), 1, null))
                 .then(Commands.argument("page", IntegerArgumentType.integer(1))
-                    .executes(context -> listBackups(context.getSource(), EntityArgument.getPlayer(context, "player"), IntegerArgumentType.getInteger(context, "page")))
+                    .executes(context -> listBackups(context.getSource(), EntityArgument.getPlayer(context, "player"), IntegerArgumentType.getInteger(context, "page"), null))
+                    // Used by the navigation links: page from the first/last backup shown instead of by offset
+                    .then(Commands.literal("before")
+                        .then(Commands.argument("cursor", IntegerArgumentType.integer(0))
+                            .executes(context -> listBackups(context.getSource(), EntityArgument.getPlayer(context, "player"), IntegerArgumentType.getInteger(context, "page"),
+                                new PageCursor(true, IntegerArgumentType.getInteger(context, "cursor"))))))
+                    .then(Commands.literal("after")
+                        .then(Commands.argument("cursor", IntegerArgumentType.integer(0))
+                            .executes(context -> listBackups(context.getSource(), EntityArgument.getPlayer(context, "player"), IntegerArgumentType.getInteger(context, "page"),
+                                new PageCursor(false, IntegerArgumentType.getInteger(context, "cursor"))))))
                 )
             );
     }
 
-    private static int listBackups(CommandSourceStack source, ServerPlayer targetPlayer, int page) {
+    private static int listBackups(CommandSourceStack source, ServerPlayer targetPlayer, int page, @Nullable PageCursor cursor) {
         DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
 
         if (dbManager == null) {
@@ -49,39 +61,60 @@ public class ListCommand {
         }
 
         UUID playerUuid = targetPlayer.getUUID();
-        List<BackupSummary> summaries = dbManager.getBackupsSummaryForPlayer(playerUuid);
+        if (!dbManager.isAvailable()) {
+            return listSpooledBackups(source, targetPlayer);
+        }
+        int totalBackups = dbManager.countBackups(playerUuid);
 
-        if (summaries.isEmpty()) {
+        if (totalBackups == 0) {
             source.sendSuccess(Component.literal("No backups found for " + targetPlayer.getName().getString() + "."), false);
             return 1;
         }
 
-        int totalPages = (int) Math.ceil((double) summaries.size() / ENTRIES_PER_PAGE);
+        int totalPages = (int) Math.ceil((double) totalBackups / ENTRIES_PER_PAGE);
         if (page > totalPages) {
             source.sendFailure(Component.literal("Page " + page + " does not exist. Maximum page: " + totalPages));
             return 0;
         }
 
+        List<BackupSummary> summaries;
+        if (cursor != null) {
+            summaries = cursor.older()
+                ? dbManager.getBackupsOlderThan(playerUuid, cursor.backupNumber(), ENTRIES_PER_PAGE)
+                : dbManager.getBackupsNewerThan(playerUuid, cursor.backupNumber(), ENTRIES_PER_PAGE);
+        } else if (page == 1) {
+            summaries = dbManager.getBackupsOlderThan(playerUuid, Integer.MAX_VALUE, ENTRIES_PER_PAGE);
+        } else {
+            summaries = List.of();
+        }
+        if (summaries.isEmpty()) {
+            // Typed page number, or the cursor no longer points anywhere because backups were removed
+            summaries = dbManager.getBackupSummaryPage(playerUuid, (page - 1) * ENTRIES_PER_PAGE, ENTRIES_PER_PAGE);
+        }
+
         int startIndex = (page - 1) * ENTRIES_PER_PAGE;
-        int endIndex = Math.min(startIndex + ENTRIES_PER_PAGE, summaries.size());
+        int endIndex = Math.min(startIndex + summaries.size(), totalBackups);
+        String listCommand = "/eib list " + targetPlayer.getName().getString() + " ";
 
         // Simple header
         source.sendSuccess(Component.literal("Backups for ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY))
             .append(Component.literal(targetPlayer.getName().getString()).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.WHITE)))
             .append(Component.literal(" (").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY)))
-            .append(Component.literal(String.valueOf(summaries.size())).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GOLD)))
+            .append(Component.literal(String.valueOf(totalBackups)).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GOLD)))
             .append(Component.literal(" total) - Page ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY)))
             .append(Component.literal(String.valueOf(page)).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.YELLOW)))
             .append(Component.literal("/").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY)))
             .append(Component.literal(String.valueOf(totalPages)).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.YELLOW))), false);
 
         // Backup entries
-        for (int i = startIndex; i < endIndex; i++) {
-            BackupSummary summary = summaries.get(i);
+        for (BackupSummary summary : summaries) {
             String formattedDate = DATE_FORMAT.format(new Date(summary.timestamp()));
             
             // Format event type with colors
-            Component eventType = formatEventType(summary.eventType());
+            MutableComponent eventType = formatEventType(summary.eventType()).copy();
+            if (summary.deathCount() > 1) {
+                eventType.append(Component.literal(" ×" + summary.deathCount()).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_RED)));
+            }
             
             Component message = Component.literal("#" + summary.id()).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.YELLOW))
                 .append(Component.literal(" • ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)))
@@ -90,24 +123,28 @@ public class ListCommand {
                 .append(Component.literal(formattedDate).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY)))
                 .append(Component.literal(" • ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)))
                 .append(Component.literal(getWorldDisplayName(summary.world())).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GREEN)));
+            if (summary.archived()) {
+                message = message.copy().append(Component.literal(" [archived]").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)));
+            }
             
             // Add click and hover events
             Style clickableStyle = Style.EMPTY
                 .withClickEvent(new ClickEvent(ClickEvent.Action.SUGGEST_COMMAND, "/eib view " + targetPlayer.getName().getString() + " " + summary.id()))
                 .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, 
-                    Component.literal("Click to view backup #" + summary.id()).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.AQUA))));
+                    Component.literal("Click to view backup #" + summary.id() + (summary.archived() ? " (archived, takes a moment to load)" : ""))
+                        .withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.AQUA))));
             
             source.sendSuccess(message.copy().setStyle(clickableStyle), false);
         }
 
         // Navigation footer
-        if (totalPages > 1) {
+        if (totalPages > 1 && !summaries.isEmpty()) {
             MutableComponent footer = Component.literal("");
             
             if (page > 1) {
                 footer = footer.append(Component.literal("← Previous").withStyle(Style.EMPTY
                     .withColor(net.minecraft.ChatFormatting.AQUA)
-                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/eib list " + targetPlayer.getName().getString() + " " + (page - 1)))
+                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, listCommand + (page - 1) + " after " + summaries.get(0).id()))
                     .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Component.literal("Go to page " + (page - 1))))));
             } else {
                 footer = footer.append(Component.literal("← Previous").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)));
@@ -118,7 +155,7 @@ public class ListCommand {
             if (page < totalPages) {
                 footer = footer.append(Component.literal("Next →").withStyle(Style.EMPTY
                     .withColor(net.minecraft.ChatFormatting.AQUA)
-                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/eib list " + targetPlayer.getName().getString() + " " + (page + 1)))
+                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, listCommand + (page + 1) + " before " + summaries.get(summaries.size() - 1).id()))
                     .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Component.literal("Go to page " + (page + 1))))));
             } else {
                 footer = footer.append(Component.literal("Next →").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)));
@@ -129,7 +166,7 @@ public class ListCommand {
                 .append(Component.literal("-").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)))
                 .append(Component.literal(String.valueOf(endIndex)).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.WHITE)))
                 .append(Component.literal(" of ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)))
-                .append(Component.literal(String.valueOf(summaries.size())).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.WHITE)))
+                .append(Component.literal(String.valueOf(totalBackups)).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.WHITE)))
                 .append(Component.literal(")").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)));
             
             source.sendSuccess(footer, false);
@@ -138,12 +175,51 @@ public class ListCommand {
         return 1;
     }
 
+    /**
+     * While the database is down, show the backups waiting in the local journal instead. They have no number yet,
+     * so they can't be viewed or restored until they reach the database.
+     */
+    private static int listSpooledBackups(CommandSourceStack source, ServerPlayer targetPlayer) {
+        source.sendFailure(Component.literal("The backup database is unavailable right now."));
+        BackupJournal journal = EliteInventoryBackups.getBackupJournal();
+        if (journal == null) {
+            return 0;
+        }
+
+        List<BackupEntry> spooled = journal.spooled(targetPlayer.getUUID());
+        if (spooled.isEmpty()) {
+            source.sendSuccess(Component.literal("No backups of " + targetPlayer.getName().getString() + " are waiting to be saved.")
+                .withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY)), false);
+            return 1;
+        }
+
+        source.sendSuccess(Component.literal("Waiting to be saved for ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY))
+            .append(Component.literal(targetPlayer.getName().getString()).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.WHITE)))
+            .append(Component.literal(" (" + spooled.size() + ")").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY))), false);
+        for (BackupEntry entry : spooled.subList(0, Math.min(ENTRIES_PER_PAGE, spooled.size()))) {
+            source.sendSuccess(Component.literal("• ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY))
+                .append(formatEventType(entry.eventType()))
+                .append(Component.literal(" • ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)))
+                .append(Component.literal(DATE_FORMAT.format(new Date(entry.timestamp()))).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY)))
+                .append(Component.literal(" • ").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY)))
+                .append(Component.literal(getWorldDisplayName(entry.world())).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GREEN))), false);
+        }
+        return 1;
+    }
+
+    /**
+     * Position to page from: the backups older than (or newer than) a given backup number.
+     */
+    private record PageCursor(boolean older, int backupNumber) {}
+
     private static Component formatEventType(String eventType) {
         return switch (eventType.toLowerCase()) {
             case "death" -> Component.literal("💀 Death").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.RED));
             case "login" -> Component.literal("🟢 Login").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GREEN));
             case "logout" -> Component.literal("🔴 Logout").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.GRAY));
             case "manual" -> Component.literal("⚙️ Manual").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.BLUE));
+            case "autosave" -> Component.literal("💾 Autosave").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.AQUA));
+            case "shutdown" -> Component.literal("🛑 Shutdown").withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.DARK_GRAY));
             default -> Component.literal("❓ " + eventType).withStyle(Style.EMPTY.withColor(net.minecraft.ChatFormatting.WHITE));
         };
     }
@@ -0,0 +1,95 @@
+package com.eliteinventorybackups.commands;
+
+import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.database.StoreMigrator;
+import com.eliteinventorybackups.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.logging.LogUtils;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+import org.slf4j.Logger;
+
+/**
+ * Starts, follows and cancels the online migration to MySQL, see {@link StoreMigrator}.
+ */
+public class MigrateCommand {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public static LiteralArgumentBuilder<CommandSourceStack> register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        return Commands.literal("migrate")
+            .requires(PermissionUtil::hasAdminPermission)
+            .executes(context -> showStatus(context.getSource()))
+            .then(Commands.literal("start")
+                .executes(context -> start(context.getSource()))
+            )
+            .then(Commands.literal("cancel")
+                .executes(context -> cancel(context.getSource()))
+            );
+    }
+
+    private static int start(CommandSourceStack source) {
+        DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
+        if (dbManager == null) {
+            source.sendFailure(Component.literal("DatabaseManager not initialized."));
+            return 0;
+        }
+
+        String error = dbManager.startMigration();
+        if (error != null) {
+            source.sendFailure(Component.literal(error));
+            return 0;
+        }
+
+        LOGGER.info("Admin {} started migrating backups to MySQL", source.getTextName());
+        source.sendSuccess(Component.literal("Migrating all backups to MySQL in the background. The server switches to it by itself once ")
+            .append(Component.literal("everything is copied and verified. Use /eib migrate to follow it.")), true);
+        return 1;
+    }
+
+    private static int showStatus(CommandSourceStack source) {
+        DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
+        if (dbManager == null) {
+            source.sendFailure(Component.literal("DatabaseManager not initialized."));
+            return 0;
+        }
+        StoreMigrator migrator = dbManager.getMigrator();
+        if (migrator == null) {
+            source.sendSuccess(Component.literal("No migration has run since the server started. Use /eib migrate start to move backups to MySQL."), false);
+            return 1;
+        }
+
+        StoreMigrator.Progress progress = migrator.getProgress();
+        long seconds = Math.max(1, progress.elapsedMillis() / 1000);
+        source.sendSuccess(Component.literal("Migration to MySQL").withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+        source.sendSuccess(StatsCommand.line("Phase", progress.phase().name().toLowerCase()), false);
+        source.sendSuccess(StatsCommand.line("Copied", progress.percent() + "% (" + progress.rangesDone() + " of " + progress.ranges() + " key ranges done)"), false);
+        source.sendSuccess(StatsCommand.line("Backups copied / already there", progress.copied() + " / " + progress.alreadyCopied()
+            + " (" + (progress.copied() + progress.alreadyCopied()) / seconds + " backups/s)"), false);
+        source.sendSuccess(StatsCommand.line("Backups verified", String.valueOf(progress.verified())), false);
+        source.sendSuccess(StatsCommand.line("New backups written to both", progress.dualWrites()
+            + (progress.missedWrites() > 0 ? " (" + progress.missedWrites() + " missed by MySQL, fixed up before the switch)" : "")), false);
+        source.sendSuccess(StatsCommand.line("Players fixed up / waiting", progress.fixedPlayers() + " / " + progress.pendingPlayers()), false);
+        source.sendSuccess(StatsCommand.line("Elapsed", seconds + "s"), false);
+        if (progress.result() != null) {
+            source.sendSuccess(StatsCommand.line("Result", progress.result()), false);
+        }
+        return 1;
+    }
+
+    private static int cancel(CommandSourceStack source) {
+        DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
+        StoreMigrator migrator = dbManager != null ? dbManager.getMigrator() : null;
+        if (migrator == null || !migrator.cancel()) {
+            source.sendFailure(Component.literal("No migration is running, or it is already switching over."));
+            return 0;
+        }
+        LOGGER.info("Admin {} cancelled the migration to MySQL", source.getTextName());
+        source.sendSuccess(Component.literal("Cancelling the migration; the server stays on its current database."), true);
+        return 1;
+    }
+}
@@ -3,12 +3,10 @@ package com.eliteinventorybackups.commands;
 import com.eliteinventorybackups.EliteInventoryBackups;
 import com.eliteinventorybackups.database.DatabaseManager;
 import com.eliteinventorybackups.model.BackupEntry;
-import com.eliteinventorybackups.model.BackupSummary;
 import com.eliteinventorybackups.util.InventorySerializer;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
-import com.mojang.brigadier.suggestion.SuggestionProvider;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.commands.arguments.EntityArgument;
@@ -27,30 +25,12 @@ import java.util.List;
 public class RestoreCommand {
     private static final Logger LOGGER = LogUtils.getLogger();
     
-    private static final SuggestionProvider<CommandSourceStack> BACKUP_NUMBER_SUGGESTIONS = (context, builder) -> {
-        try {
-            // Get the player argument from the context
-            ServerPlayer targetPlayer = EntityArgument.getPlayer(context, "player");
-            DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
-            
-            if (dbManager != null) {
-                List<BackupSummary> summaries = dbManager.getBackupsSummaryForPlayer(targetPlayer.getUUID());
-                for (BackupSummary summary : summaries) {
-                    builder.suggest(summary.id()); // This now contains backup_number, not database id
-                }
-            }
-        } catch (Exception e) {
-            // If we can't get the player or database, just don't suggest anything
-        }
-        return builder.buildFuture();
-    };
-
     public static LiteralArgumentBuilder<CommandSourceStack> register(CommandDispatcher<CommandSourceStack> dispatcher) {
         return Commands.literal("restore")
             .requires(PermissionUtil::hasAdminPermission)
             .then(Commands.argument("player", EntityArgument.player())
                 .then(Commands.argument("backupNumber", IntegerArgumentType.integer(1))
-                    .suggests(BACKUP_NUMBER_SUGGESTIONS)
+                    .suggests(BackupSuggestions.BACKUP_NUMBERS)
                     .executes(context -> {
                         CommandSourceStack source = context.getSource();
                         ServerPlayer targetPlayer = EntityArgument.getPlayer(context, "player");
@@ -76,10 +56,10 @@ public class RestoreCommand {
                             targetPlayer.setExperiencePoints(0); // Also clears progress
 
                             // Restore Inventories
-                            List<ItemStack> mainInv = InventorySerializer.deserializeStringToList(backupEntry.inventoryMain());
-                            List<ItemStack> armorInv = InventorySerializer.deserializeStringToList(backupEntry.inventoryArmor());
-                            List<ItemStack> offhandInv = InventorySerializer.deserializeStringToList(backupEntry.inventoryOffhand());
-                            List<ItemStack> enderChestInv = InventorySerializer.deserializeStringToList(backupEntry.inventoryEnderChest());
+                            List<ItemStack> mainInv = InventorySerializer.deserializeItemList(backupEntry.inventoryMain());
+                            List<ItemStack> armorInv = InventorySerializer.deserializeItemList(backupEntry.inventoryArmor());
+                            List<ItemStack> offhandInv = InventorySerializer.deserializeItemList(backupEntry.inventoryOffhand());
+                            List<ItemStack> enderChestInv = InventorySerializer.deserializeItemList(backupEntry.inventoryEnderChest());
 
                             // Main inventory (slots 0-35)
                             for (int i = 0; i < mainInv.size() && i < targetPlayer.getInventory().items.size(); i++) {
@@ -104,11 +84,9 @@ public class RestoreCommand {
                             
                             // Restore Curios if available and enabled
                             if (ModConfig.SERVER.enableCuriosBackup.get() && CuriosIntegration.isAvailable() && backupEntry.inventoryCurios() != null) {
-                                LOGGER.info("Attempting to restore Curios for player {}. Curios data: {}", 
+                                LOGGER.info("Attempting to restore Curios for player {}. Curios slot types: {}", 
                                     targetPlayer.getName().getString(), 
-                                    backupEntry.inventoryCurios().length() > 100 ? 
-                                        backupEntry.inventoryCurios().substring(0, 100) + "..." : 
-                                        backupEntry.inventoryCurios());
+                                    backupEntry.inventoryCurios().getAllKeys());
                                 
                                 boolean curiosRestored = CuriosIntegration.restoreCurios(targetPlayer, backupEntry.inventoryCurios());
                                 if (curiosRestored) {
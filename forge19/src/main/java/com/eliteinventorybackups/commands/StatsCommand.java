@@ -0,0 +1,142 @@
+package com.eliteinventorybackups.commands;
+
+import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.backup.AutosaveScheduler;
+import com.eliteinventorybackups.backup.BackupJournal;
+import com.eliteinventorybackups.backup.BackupPriority;
+import com.eliteinventorybackups.backup.BackupWriter;
+import com.eliteinventorybackups.backup.JournalReplayer;
+import com.eliteinventorybackups.backup.LoginSnapshotDeferrer;
+import com.eliteinventorybackups.backup.RetentionSweeper;
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.database.BackupStore;
+import com.eliteinventorybackups.database.CircuitBreaker;
+import com.eliteinventorybackups.database.DatabaseManager;
+import com.eliteinventorybackups.database.LogBackupStore;
+import com.eliteinventorybackups.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+
+import java.util.Map;
+import java.util.StringJoiner;
+
+public class StatsCommand {
+
+    public static LiteralArgumentBuilder<CommandSourceStack> register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        return Commands.literal("stats")
+            .requires(PermissionUtil::hasAdminPermission)
+            .executes(context -> showStats(context.getSource()));
+    }
+
+    private static int showStats(CommandSourceStack source) {
+        BackupWriter backupWriter = EliteInventoryBackups.getBackupWriter();
+        if (backupWriter == null) {
+            source.sendFailure(Component.literal("BackupWriter not initialized."));
+            return 0;
+        }
+
+        BackupWriter.Stats stats = backupWriter.getStats();
+        source.sendSuccess(Component.literal("Backup writer statistics").withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+        source.sendSuccess(line("Queue depth", stats.queueDepth() + " (peak " + stats.peakQueueDepth() + ")"), false);
+        source.sendSuccess(line("Submitted", String.valueOf(stats.submitted())), false);
+        source.sendSuccess(line("Persisted", String.valueOf(stats.persisted())), false);
+        source.sendSuccess(line("Failed", String.valueOf(stats.failed())), false);
+        source.sendSuccess(line("Over capacity (queue full)", String.valueOf(stats.queuedOverCapacity())), false);
+        source.sendSuccess(line("Group commits", stats.groupCommits() > 0
+            ? String.format("%d (avg %.1f backups)", stats.groupCommits(), (double) stats.groupedBackups() / stats.groupCommits())
+            : "0"), false);
+        source.sendSuccess(line("Dropped (queue full)", formatDropped(stats.dropped())), false);
+        source.sendSuccess(line("Coalesced (queue full)", String.valueOf(stats.coalesced())), false);
+        source.sendSuccess(line("Avg queue wait", stats.avgQueueWaitMillis() + " ms"), false);
+        source.sendSuccess(line("Avg persist time", stats.avgPersistMillis() + " ms"), false);
+        source.sendSuccess(line("Max end-to-end latency", stats.maxLatencyMillis() + " ms"), false);
+
+        DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
+        if (dbManager != null) {
+            BackupStore.StorageStats storage = dbManager.getStorageStats();
+            CircuitBreaker circuitBreaker = dbManager.getCircuitBreaker();
+            if (circuitBreaker != null) {
+                CircuitBreaker.Stats breaker = circuitBreaker.getStats();
+                source.sendSuccess(line("Database", (breaker.open()
+                    ? "unavailable for " + (System.currentTimeMillis() - breaker.openSince()) / 1000 + "s"
+                    : "available") + " (" + breaker.trips() + " outage(s))"), false);
+            } else {
+                source.sendSuccess(line("Database", ModConfig.SERVER.databaseType.get().name()), false);
+            }
+            if (dbManager.getStore() instanceof LogBackupStore logStore) {
+                LogBackupStore.Stats log = logStore.getStats();
+                long livePercent = log.bytes() == 0 ? 100 : log.liveBytes() * 100 / log.bytes();
+                source.sendSuccess(line("Log segments", log.segments() + " (" + log.bytes() / (1024 * 1024) + " MB, " + livePercent + "% live)"), false);
+                source.sendSuccess(line("Segments compacted", log.compactedSegments() + " (" + log.reclaimedBytes() / (1024 * 1024) + " MB reclaimed)"), false);
+            }
+            source.sendSuccess(line("Unchanged snapshots (skipped / referenced)", storage.skippedDuplicates() + " / " + storage.referencedDuplicates()), false);
+            source.sendSuccess(line("Repeated deaths folded", String.valueOf(storage.coalescedDeaths())), false);
+        }
+
+        RetentionSweeper retentionSweeper = EliteInventoryBackups.getRetentionSweeper();
+        if (retentionSweeper != null) {
+            RetentionSweeper.Stats retention = retentionSweeper.getStats();
+            source.sendSuccess(Component.literal("Retention").withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+            source.sendSuccess(line("Players pending", String.valueOf(retention.pendingPlayers())), false);
+            source.sendSuccess(line("Sweeps run", String.valueOf(retention.runs())), false);
+            source.sendSuccess(line("Reclaimed (last / total)", retention.lastRunReclaimed() + " / " + retention.totalReclaimed()), false);
+            if (ModConfig.SERVER.archiveAfterDays.get() > 0) {
+                source.sendSuccess(line("Archived", String.valueOf(retention.totalArchived())), false);
+            }
+        }
+
+        BackupJournal journal = EliteInventoryBackups.getBackupJournal();
+        JournalReplayer journalReplayer = EliteInventoryBackups.getJournalReplayer();
+        if (journal != null && journalReplayer != null) {
+            BackupJournal.Stats journalStats = journal.getStats();
+            JournalReplayer.Stats replay = journalReplayer.getStats();
+            source.sendSuccess(Component.literal("Journal").withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+            source.sendSuccess(line("Segments", journalStats.segments() + " (" + journalStats.bytes() / 1024 + " KB)"), false);
+            source.sendSuccess(line("Waiting for replay", journalStats.failedRecords() + " backup(s), " + journalStats.leftoverSegments() + " leftover segment(s)"), false);
+            source.sendSuccess(line("Replayed (saved / already saved)", replay.replayed() + " / " + replay.alreadySaved()), false);
+        }
+
+        LoginSnapshotDeferrer loginDeferrer = EliteInventoryBackups.getLoginSnapshotDeferrer();
+        if (loginDeferrer != null) {
+            LoginSnapshotDeferrer.Stats logins = loginDeferrer.getStats();
+            source.sendSuccess(Component.literal("Deferred logins").withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+            source.sendSuccess(line("Pending", String.valueOf(logins.pending())), false);
+            source.sendSuccess(line("Deferred / captured", logins.deferred() + " / " + logins.captured()), false);
+            source.sendSuccess(line("Coalesced with logout", String.valueOf(logins.coalesced())), false);
+        }
+
+        AutosaveScheduler autosaveScheduler = EliteInventoryBackups.getAutosaveScheduler();
+        if (autosaveScheduler != null) {
+            AutosaveScheduler.Stats autosave = autosaveScheduler.getStats();
+            source.sendSuccess(Component.literal("Autosave").withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+            source.sendSuccess(line("Captured", String.valueOf(autosave.captured())), false);
+            source.sendSuccess(line("Skipped (unchanged)", String.valueOf(autosave.skippedUnchanged())), false);
+            source.sendSuccess(line("Carried over (tick budget)", String.valueOf(autosave.deferred())), false);
+        }
+        return 1;
+    }
+
+    private static String formatDropped(Map<BackupPriority, Long> dropped) {
+        long total = dropped.values().stream().mapToLong(Long::longValue).sum();
+        if (total == 0) {
+            return "0";
+        }
+        StringJoiner perPriority = new StringJoiner(", ", total + " (", ")");
+        dropped.forEach((priority, count) -> {
+            if (count > 0) {
+                perPriority.add(priority.name().toLowerCase() + " " + count);
+            }
+        });
+        return perPriority.toString();
+    }
+
+    static Component line(String label, String value) {
+        return Component.literal(label + ": ").withStyle(Style.EMPTY.withColor(ChatFormatting.GRAY))
+            .append(Component.literal(value).withStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+    }
+}
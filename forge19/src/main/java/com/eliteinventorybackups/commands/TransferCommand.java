@@ -0,0 +1,80 @@
+package com.eliteinventorybackups.commands;
+
+import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.backup.BackupTransfer;
+import com.eliteinventorybackups.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+
+/**
+ * Shows or cancels the export / import started by {@link ExportCommand} or {@link ImportCommand}.
+ */
+public class TransferCommand {
+
+    public static LiteralArgumentBuilder<CommandSourceStack> register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        return Commands.literal("transfer")
+            .requires(PermissionUtil::hasAdminPermission)
+            .executes(context -> showStatus(context.getSource()))
+            .then(Commands.literal("cancel")
+                .executes(context -> cancel(context.getSource()))
+            );
+    }
+
+    private static int showStatus(CommandSourceStack source) {
+        BackupTransfer transfer = EliteInventoryBackups.getBackupTransfer();
+        if (transfer == null) {
+            source.sendFailure(Component.literal("BackupTransfer not initialized."));
+            return 0;
+        }
+        BackupTransfer.Job job = transfer.getJob();
+        if (job == null) {
+            source.sendSuccess(Component.literal("No export or import has run since the server started."), false);
+            return 1;
+        }
+
+        source.sendSuccess(Component.literal((job.isExport() ? "Export " : "Import ") + job.file())
+            .withStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)), false);
+        source.sendSuccess(StatsCommand.line("State", job.running() ? "running" : "finished"), false);
+        source.sendSuccess(StatsCommand.line(job.isExport() ? "Exported" : "Imported", String.valueOf(job.backups())), false);
+        if (!job.isExport()) {
+            source.sendSuccess(StatsCommand.line("Already present", String.valueOf(job.skipped())), false);
+        }
+        String bytes = job.bytes() / 1024 + " KB";
+        if (job.totalBytes() > 0) {
+            bytes += " of " + job.totalBytes() / 1024 + " KB (" + job.bytes() * 100 / job.totalBytes() + "%)";
+        }
+        source.sendSuccess(StatsCommand.line(job.isExport() ? "Written" : "Read", bytes), false);
+        long seconds = Math.max(1, job.elapsedMillis() / 1000);
+        source.sendSuccess(StatsCommand.line("Elapsed", seconds + "s (" + (job.backups() + job.skipped()) / seconds + " backups/s)"), false);
+        if (job.result() != null) {
+            source.sendSuccess(StatsCommand.line("Result", job.result()), false);
+        }
+        return 1;
+    }
+
+    private static int cancel(CommandSourceStack source) {
+        BackupTransfer transfer = EliteInventoryBackups.getBackupTransfer();
+        if (transfer == null) {
+            source.sendFailure(Component.literal("BackupTransfer not initialized."));
+            return 0;
+        }
+        if (!transfer.cancel()) {
+            source.sendFailure(Component.literal("No export or import is running."));
+            return 0;
+        }
+        source.sendSuccess(Component.literal("Stopping after the current chunk; run the same command again to continue."), false);
+        return 1;
+    }
+
+    /**
+     * Sends a transfer's result back to whoever started it, on the server thread.
+     */
+    static void reply(CommandSourceStack source, String result) {
+        source.getServer().execute(() -> source.sendSuccess(Component.literal(result), true));
+    }
+}
@@ -3,7 +3,6 @@ package com.eliteinventorybackups.commands;
 import com.eliteinventorybackups.EliteInventoryBackups;
 import com.eliteinventorybackups.database.DatabaseManager;
 import com.eliteinventorybackups.model.BackupEntry;
-import com.eliteinventorybackups.model.BackupSummary;
 import com.eliteinventorybackups.util.InventorySerializer;
 import com.eliteinventorybackups.util.PermissionUtil;
 import com.eliteinventorybackups.integration.CuriosIntegration;
@@ -44,23 +43,6 @@ public class ViewCommand {
     // Store backup data for open inventories
     private static final Map<UUID, ViewerData> activeViewers = new HashMap<>();
     
-    private static final SuggestionProvider<CommandSourceStack> BACKUP_NUMBER_SUGGESTIONS = (context, builder) -> {
-        try {
-            ServerPlayer targetPlayer = EntityArgument.getPlayer(context, "player");
-            DatabaseManager dbManager = EliteInventoryBackups.getDatabaseManager();
-            
-            if (dbManager != null) {
-                List<BackupSummary> summaries = dbManager.getBackupsSummaryForPlayer(targetPlayer.getUUID());
-                for (BackupSummary summary : summaries) {
-                    builder.suggest(summary.id());
-                }
-            }
-        } catch (Exception e) {
-            // If we can't get suggestions, just don't suggest anything
-        }
-        return builder.buildFuture();
-    };
-    
     private static final SuggestionProvider<CommandSourceStack> SECTION_SUGGESTIONS = (context, builder) -> {
         builder.suggest("main");
         builder.suggest("armor");
@@ -75,7 +57,7 @@ public class ViewCommand {
             .requires(PermissionUtil::hasAdminPermission)
             .then(Commands.argument("player", EntityArgument.player())
                 .then(Commands.argument("backupNumber", IntegerArgumentType.integer(1))
-                    .suggests(BACKUP_NUMBER_SUGGESTIONS)
+                    .suggests(BackupSuggestions.BACKUP_NUMBERS)
                     .executes(context -> {
                         // Default to main inventory
                         return openBackupView(context.getSource(), 
@@ -128,23 +110,23 @@ public class ViewCommand {
         
         switch (section.toLowerCase()) {
             case "main":
-                items = InventorySerializer.deserializeStringToList(viewerData.backupEntry.inventoryMain());
+                items = InventorySerializer.deserializeItemList(viewerData.backupEntry.inventoryMain());
                 displayName = "Main Inventory (Unequipped Items)";
                 break;
             case "armor":
-                items = InventorySerializer.deserializeStringToList(viewerData.backupEntry.inventoryArmor());
+                items = InventorySerializer.deserializeItemList(viewerData.backupEntry.inventoryArmor());
                 displayName = "Armor Slots (Equipped Armor)";
                 break;
             case "offhand":
-                items = InventorySerializer.deserializeStringToList(viewerData.backupEntry.inventoryOffhand());
+                items = InventorySerializer.deserializeItemList(viewerData.backupEntry.inventoryOffhand());
                 displayName = "Offhand Slot (Equipped in Offhand)";
                 break;
             case "enderchest":
-                items = InventorySerializer.deserializeStringToList(viewerData.backupEntry.inventoryEnderChest());
+                items = InventorySerializer.deserializeItemList(viewerData.backupEntry.inventoryEnderChest());
                 displayName = "Ender Chest";
                 break;
             case "curios":
-                if (viewerData.backupEntry.inventoryCurios() != null && !viewerData.backupEntry.inventoryCurios().equals("{}")) {
+                if (viewerData.backupEntry.inventoryCurios() != null && !viewerData.backupEntry.inventoryCurios().isEmpty()) {
                     items = getCuriosItems(viewerData.backupEntry.inventoryCurios());
                     displayName = "Curios Slots (Equipped Accessories)";
                 } else {
@@ -302,40 +284,21 @@ public class ViewCommand {
         container.setItem(navRow + 8, closeButton);
     }
     
-    private static List<ItemStack> getCuriosItems(String curiosData) {
+    private static List<ItemStack> getCuriosItems(CompoundTag curiosData) {
         List<ItemStack> allItems = new ArrayList<>();
         
         try {
-            if (curiosData.startsWith("{") && curiosData.endsWith("}")) {
-                String content = curiosData.substring(1, curiosData.length() - 1);
-                if (content.trim().isEmpty()) {
-                    return allItems;
-                }
+            for (String slotType : curiosData.getAllKeys()) {
+                List<ItemStack> slotItems = InventorySerializer.deserializeItemList(curiosData.getCompound(slotType));
                 
-                String[] pairs = content.split(",(?=\")");
-                for (String pair : pairs) {
-                    String[] keyValue = pair.split("\":", 2);
-                    if (keyValue.length == 2) {
-                        String slotType = keyValue[0].substring(1); // Remove leading quote
-                        String stacksData = keyValue[1];
-                        
-                        if (stacksData.startsWith("\"") && stacksData.endsWith("\"")) {
-                            stacksData = stacksData.substring(1, stacksData.length() - 1);
-                        }
-                        stacksData = stacksData.replace("\\\"", "\"");
-                        
-                        List<ItemStack> slotItems = InventorySerializer.deserializeStringToList(stacksData);
-                        
-                        // Add slot type info to items
-                        for (int i = 0; i < slotItems.size(); i++) {
-                            ItemStack item = slotItems.get(i);
-                            if (item != null && !item.isEmpty()) {
-                                // Add lore indicating which Curios slot this came from
-                                ItemStack itemWithLore = item.copy();
-                                itemWithLore.setHoverName(Component.literal(item.getDisplayName().getString() + " §7(" + slotType + " #" + i + ")"));
-                                allItems.add(itemWithLore);
-                            }
-                        }
+                // Add slot type info to items
+                for (int i = 0; i < slotItems.size(); i++) {
+                    ItemStack item = slotItems.get(i);
+                    if (item != null && !item.isEmpty()) {
+                        // Add lore indicating which Curios slot this came from
+                        ItemStack itemWithLore = item.copy();
+                        itemWithLore.setHoverName(Component.literal(item.getDisplayName().getString() + " §7(" + slotType + " #" + i + ")"));
+                        allItems.add(itemWithLore);
                     }
                 }
             }
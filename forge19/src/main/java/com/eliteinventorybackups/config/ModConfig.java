@@ -14,10 +14,45 @@ public class ModConfig {
         public final ForgeConfigSpec.BooleanValue mysqlUseSSL;
         public final ForgeConfigSpec.ConfigValue<String> mysqlExtraParams;
 
+        // Log Store Settings
+        public final ForgeConfigSpec.IntValue logSegmentSizeMb;
+        public final ForgeConfigSpec.IntValue logCompactionThresholdPercent;
+
+        // Connection Pool Settings
+        public final ForgeConfigSpec.IntValue poolMinIdle;
+        public final ForgeConfigSpec.IntValue poolMaxSize;
+        public final ForgeConfigSpec.IntValue poolIdleTimeoutSeconds;
+        public final ForgeConfigSpec.IntValue poolConnectionTimeoutSeconds;
+        public final ForgeConfigSpec.ConfigValue<String> poolValidationQuery;
+        public final ForgeConfigSpec.IntValue poolLeakDetectionSeconds;
+        public final ForgeConfigSpec.IntValue circuitBreakerFailureThreshold;
+        public final ForgeConfigSpec.IntValue circuitBreakerProbeSeconds;
+        public final ForgeConfigSpec.IntValue migrationThreads;
+        public final ForgeConfigSpec.IntValue migrationChunkSize;
+
+        // Journal Settings
+        public final ForgeConfigSpec.BooleanValue enableJournal;
+        public final ForgeConfigSpec.IntValue journalSegmentSizeMb;
+        public final ForgeConfigSpec.IntValue journalReplayIntervalSeconds;
+
         // Event Snapshot Settings
         public final ForgeConfigSpec.BooleanValue enableDeathSnapshots;
         public final ForgeConfigSpec.BooleanValue enableLoginSnapshots;
         public final ForgeConfigSpec.BooleanValue enableLogoutSnapshots;
+        public final ForgeConfigSpec.BooleanValue enableShutdownSnapshots;
+        public final ForgeConfigSpec.IntValue shutdownSnapshotSeconds;
+        public final ForgeConfigSpec.BooleanValue deferLoginSnapshots;
+        public final ForgeConfigSpec.IntValue loginSnapshotMaxDelaySeconds;
+        public final ForgeConfigSpec.IntValue loginSnapshotsPerSecond;
+        public final ForgeConfigSpec.IntValue loginCoalesceWindowSeconds;
+        public final ForgeConfigSpec.IntValue deathCoalesceWindowSeconds;
+        public final ForgeConfigSpec.IntValue deathCoalesceMaxDeaths;
+
+        // Autosave Settings
+        public final ForgeConfigSpec.BooleanValue enableAutosave;
+        public final ForgeConfigSpec.IntValue autosaveIntervalMinutes;
+        public final ForgeConfigSpec.IntValue autosaveTickBudgetMillis;
+        public final ForgeConfigSpec.BooleanValue autosaveSkipUnchanged;
 
         // Mod Integration Settings
         public final ForgeConfigSpec.BooleanValue enableCuriosBackup;
@@ -26,12 +61,34 @@ public class ModConfig {
 
         // Backup Retention Settings
         public final ForgeConfigSpec.IntValue maxBackupsPerPlayer;
+        public final ForgeConfigSpec.IntValue retentionSweepIntervalSeconds;
+        public final ForgeConfigSpec.IntValue retentionSweepBatchSize;
+        public final ForgeConfigSpec.IntValue archiveAfterDays;
+        public final ForgeConfigSpec.IntValue archiveBatchSize;
+
+        // Storage Settings
+        public final ForgeConfigSpec.IntValue payloadCompressionLevel;
+        public final ForgeConfigSpec.IntValue summaryCacheSize;
+        public final ForgeConfigSpec.EnumValue<DuplicateSnapshotPolicy> duplicateSnapshotPolicy;
+        public final ForgeConfigSpec.IntValue deltaKeyframeInterval;
+
+        // Write Pipeline Settings
+        public final ForgeConfigSpec.IntValue writerThreads;
+        public final ForgeConfigSpec.IntValue writeQueueCapacity;
+        public final ForgeConfigSpec.IntValue shutdownDrainSeconds;
+        public final ForgeConfigSpec.EnumValue<QueueFullPolicy> queueFullPolicy;
+        public final ForgeConfigSpec.IntValue queueBlockTimeoutMillis;
+        public final ForgeConfigSpec.IntValue groupCommitMaxBatch;
+        public final ForgeConfigSpec.IntValue groupCommitMaxDelayMillis;
+        public final ForgeConfigSpec.BooleanValue groupCommitCriticalBackups;
 
         Server(ForgeConfigSpec.Builder builder) {
             builder.comment("Database settings for Elite Inventory Backups").push("database");
 
             databaseType = builder
-                .comment("Type of database to use. H2 is local file-based, MYSQL requires a separate MySQL/MariaDB server.")
+                .comment("Type of database to use. H2 is local file-based, MYSQL requires a separate MySQL/MariaDB server.",
+                         "LOG is a lighter local option: an append-only log of compressed backups with a memory-mapped index.",
+                         "MEMORY keeps backups in memory only and loses them on restart; meant for testing and benchmarks.")
                 .defineEnum("databaseType", DatabaseType.H2);
 
             builder.push("mysql");
@@ -58,6 +115,53 @@ public class ModConfig {
                 .define("mysqlExtraParams", "serverTimezone=UTC");
             builder.pop(); // mysql
 
+            builder.comment("Append-only log store, used when databaseType is LOG").push("log");
+            logSegmentSizeMb = builder
+                .comment("Size in MB at which the log starts a new segment file. Only full (sealed) segments are ever compacted.")
+                .defineInRange("logSegmentSizeMb", 64, 1, 1024);
+            logCompactionThresholdPercent = builder
+                .comment("The retention sweep rewrites a sealed segment once less than this percentage of it is still live backups,",
+                         "reclaiming the space of deleted ones. 0 disables compaction.")
+                .defineInRange("logCompactionThresholdPercent", 50, 0, 100);
+            builder.pop(); // log
+
+            builder.comment("Connection pool settings, used for both H2 and MySQL").push("pool");
+            poolMinIdle = builder
+                .comment("Minimum number of idle connections kept open.")
+                .defineInRange("poolMinIdle", 2, 0, 64);
+            poolMaxSize = builder
+                .comment("Maximum number of open connections.")
+                .defineInRange("poolMaxSize", 8, 1, 64);
+            poolIdleTimeoutSeconds = builder
+                .comment("Seconds a connection above the minimum may sit idle before it is closed.")
+                .defineInRange("poolIdleTimeoutSeconds", 600, 10, 86400);
+            poolConnectionTimeoutSeconds = builder
+                .comment("Seconds to wait for a free connection before an operation fails.")
+                .defineInRange("poolConnectionTimeoutSeconds", 5, 1, 300);
+            poolValidationQuery = builder
+                .comment("Query used to check a connection is alive (e.g., SELECT 1). Leave empty to use the driver's built-in check.")
+                .define("poolValidationQuery", "");
+            poolLeakDetectionSeconds = builder
+                .comment("Log a warning when a connection is held longer than this many seconds. Set to 0 to disable.")
+                .defineInRange("poolLeakDetectionSeconds", 0, 0, 3600);
+            circuitBreakerFailureThreshold = builder
+                .comment("Consecutive failures to reach the database after which it is treated as down (a busy pool doesn't count): database access then fails",
+                         "at once instead of waiting for the timeout, and backups stay in the local journal until it is back. Set to 0 to disable.")
+                .defineInRange("circuitBreakerFailureThreshold", 3, 0, 100);
+            circuitBreakerProbeSeconds = builder
+                .comment("Seconds between checks whether a database treated as down is reachable again.")
+                .defineInRange("circuitBreakerProbeSeconds", 15, 1, 3600);
+            builder.pop(); // pool
+
+            builder.comment("Online migration to the MySQL server above with /eib migrate").push("migration");
+            migrationThreads = builder
+                .comment("Key ranges copied and verified at the same time. Each one holds a connection to both databases while it works.")
+                .defineInRange("migrationThreads", 4, 1, 16);
+            migrationChunkSize = builder
+                .comment("Backups read per query and written per transaction while migrating.")
+                .defineInRange("migrationChunkSize", 200, 10, 5000);
+            builder.pop(); // migration
+
             builder.pop(); // database
 
             builder.comment("Backup retention settings").push("retention");
@@ -66,8 +170,110 @@ public class ModConfig {
                 .comment("Maximum number of backups to keep per player. Set to 0 for unlimited.")
                 .defineInRange("maxBackupsPerPlayer", 24, 0, Integer.MAX_VALUE);
 
+            retentionSweepIntervalSeconds = builder
+                .comment("How often (in seconds) old backups are trimmed for players who received new backups.")
+                .defineInRange("retentionSweepIntervalSeconds", 30, 5, 3600);
+
+            retentionSweepBatchSize = builder
+                .comment("Maximum number of players trimmed per retention sweep. Remaining players are handled on the next run.")
+                .defineInRange("retentionSweepBatchSize", 100, 1, 10000);
+
+            archiveAfterDays = builder
+                .comment("Move the inventories of backups older than this many days out of the database into compressed per-player",
+                         "archive files in config/eliteinventorybackups/data/archive. Archived backups stay listed and can still be viewed",
+                         "and restored, they just take longer to load. Only used with H2 and MYSQL. Set to 0 to disable.",
+                         "Archive files live on the server that wrote them, so leave this at 0 if several servers share a MySQL database.")
+                .defineInRange("archiveAfterDays", 0, 0, 36500);
+
+            archiveBatchSize = builder
+                .comment("Maximum number of backups archived per retention sweep.")
+                .defineInRange("archiveBatchSize", 100, 1, 10000);
+
             builder.pop(); // retention
 
+            builder.comment("Storage format settings").push("storage");
+
+            payloadCompressionLevel = builder
+                .comment("Deflate level (1-9) used for stored backup payloads. Set to 0 to store them uncompressed.")
+                .defineInRange("payloadCompressionLevel", 6, 0, 9);
+
+            summaryCacheSize = builder
+                .comment("Number of players whose backup lists are kept in memory for tab-completion and /eib list.")
+                .defineInRange("summaryCacheSize", 256, 0, 100000);
+
+            duplicateSnapshotPolicy = builder
+                .comment("What to do when a snapshot is identical to the player's previous backup.",
+                         "STORE saves it in full, REFERENCE records a small entry that shares the previous backup's data,",
+                         "SKIP does not record it at all (death and manual backups are always at least referenced).")
+                .defineEnum("duplicateSnapshotPolicy", DuplicateSnapshotPolicy.REFERENCE);
+
+            deltaKeyframeInterval = builder
+                .comment("Changed sections are stored as slot-level differences from the player's previous backup,",
+                         "with a full copy every this many versions. Reading a backup replays at most this many - 1 differences.",
+                         "Set to 1 to always store full copies.")
+                .defineInRange("deltaKeyframeInterval", 10, 1, 100);
+
+            builder.pop(); // storage
+
+            builder.comment("Background write pipeline settings. Snapshots are captured on the server thread and persisted by these workers.").push("pipeline");
+
+            writerThreads = builder
+                .comment("Number of background threads that serialize and save backups. Each player always goes to the same thread.")
+                .defineInRange("writerThreads", 2, 1, 16);
+
+            writeQueueCapacity = builder
+                .comment("Maximum number of captured snapshots waiting to be saved, split evenly between the writer threads. See queueFullPolicy for what happens when it is full.",
+                         "Death and manual backups can go over it.")
+                .defineInRange("writeQueueCapacity", 512, 16, 65536);
+
+            shutdownDrainSeconds = builder
+                .comment("How long the server waits on shutdown for queued backups to be saved before giving up.")
+                .defineInRange("shutdownDrainSeconds", 10, 0, 300);
+
+            queueFullPolicy = builder
+                .comment("What happens when the write queue is full. Snapshots are ranked death > manual > logout > autosave > login.",
+                         "DROP_LOWEST drops the oldest queued snapshot of a lower rank (or the new one if there is none),",
+                         "COALESCE first replaces a queued snapshot of the same player, BLOCK first waits up to queueBlockTimeoutMillis for room.",
+                         "Death and manual backups are never dropped; if nothing can make room they are queued over capacity.")
+                .defineEnum("queueFullPolicy", QueueFullPolicy.DROP_LOWEST);
+
+            queueBlockTimeoutMillis = builder
+                .comment("How long BLOCK waits for room in the write queue. This stalls the server thread, keep it short.",
+                         "Death and manual backups don't wait, they are queued over capacity right away.")
+                .defineInRange("queueBlockTimeoutMillis", 50, 0, 5000);
+
+            groupCommitMaxBatch = builder
+                .comment("Maximum number of backups a writer thread saves in one transaction. Grouping saves a commit (fsync or",
+                         "network round-trip) per backup under load, e.g. mass logouts or autosave waves. Set to 1 to commit every backup on its own.")
+                .defineInRange("groupCommitMaxBatch", 32, 1, 1000);
+
+            groupCommitMaxDelayMillis = builder
+                .comment("How long a writer thread waits for more backups to fill a batch before committing what it has.")
+                .defineInRange("groupCommitMaxDelayMillis", 50, 0, 5000);
+
+            groupCommitCriticalBackups = builder
+                .comment("Also group death and manual backups. By default they are committed on their own, so they are durable as soon as they are saved.")
+                .define("groupCommitCriticalBackups", false);
+
+            builder.pop(); // pipeline
+
+            builder.comment("Local write-ahead journal, so queued backups survive a crash or an unreachable database").push("journal");
+
+            enableJournal = builder
+                .comment("Write every backup to a local journal before it goes to the database. Backups the database doesn't take",
+                         "(crash, database unreachable) are replayed from it later, and on the next start.")
+                .define("enableJournal", true);
+
+            journalSegmentSizeMb = builder
+                .comment("Size in MB at which the journal starts a new segment file. Segments are deleted once all their backups are saved.")
+                .defineInRange("journalSegmentSizeMb", 16, 1, 1024);
+
+            journalReplayIntervalSeconds = builder
+                .comment("Seconds between attempts to replay journaled backups the database didn't take.")
+                .defineInRange("journalReplayIntervalSeconds", 30, 5, 3600);
+
+            builder.pop(); // journal
+
             builder.comment("Event snapshot settings for controlling when backups are created").push("event_snapshots");
 
             enableDeathSnapshots = builder
@@ -82,8 +288,61 @@ public class ModConfig {
                 .comment("Enable automatic inventory backups when a player logs out.")
                 .define("enableLogoutSnapshots", true);
 
+            enableShutdownSnapshots = builder
+                .comment("Back up every online player when the server stops. Their logout snapshots come too late to be saved.")
+                .define("enableShutdownSnapshots", true);
+
+            shutdownSnapshotSeconds = builder
+                .comment("How long the server waits on shutdown for the shutdown snapshots to be saved, after the queue has been drained.")
+                .defineInRange("shutdownSnapshotSeconds", 15, 0, 300);
+
+            deferLoginSnapshots = builder
+                .comment("Take login snapshots after a random delay instead of right away, to flatten the spike when everyone reconnects after a restart.")
+                .define("deferLoginSnapshots", true);
+
+            loginSnapshotMaxDelaySeconds = builder
+                .comment("Longest random delay (in seconds) before a deferred login snapshot is taken.")
+                .defineInRange("loginSnapshotMaxDelaySeconds", 30, 0, 600);
+
+            loginSnapshotsPerSecond = builder
+                .comment("Maximum number of deferred login snapshots taken per second.")
+                .defineInRange("loginSnapshotsPerSecond", 5, 1, 1000);
+
+            loginCoalesceWindowSeconds = builder
+                .comment("Skip a deferred login snapshot when the player's last backup is a logout from within this many seconds. Set to 0 to always take it.")
+                .defineInRange("loginCoalesceWindowSeconds", 300, 0, 86400);
+
+            deathCoalesceWindowSeconds = builder
+                .comment("A death within this many seconds of the player's previous death, with an unchanged inventory, only bumps the",
+                         "death count of the previous death backup instead of creating a new one (spawn-kill loops, lava traps). Set to 0 to disable.")
+                .defineInRange("deathCoalesceWindowSeconds", 60, 0, 3600);
+
+            deathCoalesceMaxDeaths = builder
+                .comment("Maximum number of deaths folded into one death backup before a new one is started.")
+                .defineInRange("deathCoalesceMaxDeaths", 100, 2, 100000);
+
             builder.pop(); // event_snapshots
 
+            builder.comment("Periodic backups of online players, spread evenly over the interval").push("autosave");
+
+            enableAutosave = builder
+                .comment("Enable periodic backups of every online player.")
+                .define("enableAutosave", true);
+
+            autosaveIntervalMinutes = builder
+                .comment("Minutes between autosave backups of the same player.")
+                .defineInRange("autosaveIntervalMinutes", 15, 1, 1440);
+
+            autosaveTickBudgetMillis = builder
+                .comment("Maximum milliseconds per server tick spent capturing autosaves. Players over budget are handled on the next tick.")
+                .defineInRange("autosaveTickBudgetMillis", 2, 1, 50);
+
+            autosaveSkipUnchanged = builder
+                .comment("Skip the autosave when the player's inventory, ender chest and experience haven't changed since their last one.")
+                .define("autosaveSkipUnchanged", true);
+
+            builder.pop(); // autosave
+
             builder.comment("Mod integration settings for backing up modded inventories").push("mod_integrations");
 
             enableCuriosBackup = builder
@@ -112,6 +371,14 @@ public class ModConfig {
     }
 
     public enum DatabaseType {
-        H2, MYSQL
+        H2, MYSQL, LOG, MEMORY
+    }
+
+    public enum DuplicateSnapshotPolicy {
+        STORE, SKIP, REFERENCE
+    }
+
+    public enum QueueFullPolicy {
+        DROP_LOWEST, COALESCE, BLOCK
     }
 } 
\ No newline at end of file
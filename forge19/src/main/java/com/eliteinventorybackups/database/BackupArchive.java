@@ -0,0 +1,219 @@
+package com.eliteinventorybackups.database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Per-player files holding backup payloads moved out of the database by tiering. The database keeps the
+ * backup rows and remembers where each payload went; this class only reads and writes the files.
+ * <p>
+ * Files are named {@code <uuid>-<generation>.eiba}. New records go to the highest generation; a rewrite
+ * copies the live records into the next one so the older files can be deleted.
+ * Layout: {@code [int magic][int version]} followed by records {@code [int body length][int CRC32 of body][int payload id][body]},
+ * where the body is a payload encoded by {@link com.eliteinventorybackups.util.NbtPayloadCodec}.
+ * Not thread-safe; the caller serializes writes against reads.
+ */
+class BackupArchive {
+    private static final String FILE_SUFFIX = ".eiba";
+    private static final int FILE_MAGIC = 0x45494241; // "EIBA"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 12;
+    // A length above this can only come from a wrong offset or a corrupt file
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+
+    BackupArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Appends payloads to the player's current archive file and forces them to disk.
+     * @return Where each record went, in order
+     */
+    List<Location> append(UUID playerUuid, List<Record> records) throws IOException {
+        List<Path> files = files(playerUuid);
+        Path file = files.isEmpty() ? directory.resolve(fileName(playerUuid, 1)) : files.get(files.size() - 1);
+        return write(file, records);
+    }
+
+    /**
+     * Writes records (normally the live ones, read back with {@link #read}) to a new archive file for the player.
+     * The old files stay until {@link #deleteExcept} is called, so nothing is lost if the caller fails to record
+     * the new locations.
+     * @return Where each record went, in order
+     */
+    List<Location> rewrite(UUID playerUuid, List<Record> records) throws IOException {
+        List<Path> files = files(playerUuid);
+        int generation = files.isEmpty() ? 1 : generation(files.get(files.size() - 1)) + 1;
+        return write(directory.resolve(fileName(playerUuid, generation)), records);
+    }
+
+    private List<Location> write(Path file, List<Record> records) throws IOException {
+        Files.createDirectories(directory);
+        List<Location> locations = new ArrayList<>(records.size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = channel.size();
+            if (position < FILE_HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION).flip();
+                writeFully(channel, header, 0);
+                position = FILE_HEADER_SIZE;
+            }
+            for (Record record : records) {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.body().length)
+                    .putInt(record.body().length)
+                    .putInt(checksum(record.body()))
+                    .putInt(record.payloadId())
+                    .put(record.body())
+                    .flip();
+                locations.add(new Location(file.getFileName().toString(), position));
+                position += writeFully(channel, buffer, position);
+            }
+            channel.force(false);
+        }
+        return locations;
+    }
+
+    /**
+     * Reads one payload back, checking it is the one that was asked for.
+     */
+    byte[] read(Location location, int payloadId) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(location), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            readFully(channel, header, location.offset());
+            int length = header.getInt(0);
+            if (length < 0 || length > MAX_RECORD_SIZE || header.getInt(8) != payloadId) {
+                throw new IOException("No archived payload " + payloadId + " at " + location);
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, location.offset() + RECORD_HEADER_SIZE);
+            if (checksum(body.array()) != header.getInt(4)) {
+                throw new IOException("Archived payload " + payloadId + " at " + location + " is corrupt");
+            }
+            return body.array();
+        }
+    }
+
+    /**
+     * Size of the record at a location, header included.
+     */
+    long recordSize(Location location) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(location), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(channel, header, location.offset());
+            return RECORD_HEADER_SIZE + (long) header.getInt(0);
+        }
+    }
+
+    boolean hasFiles(UUID playerUuid) throws IOException {
+        return !files(playerUuid).isEmpty();
+    }
+
+    /**
+     * Total size of the player's archive files, headers and dead records included.
+     */
+    long size(UUID playerUuid) throws IOException {
+        long size = 0;
+        for (Path file : files(playerUuid)) {
+            size += Files.size(file);
+        }
+        return size;
+    }
+
+    /**
+     * Deletes the player's archive files whose names are not in {@code keep}.
+     * @return The number of bytes freed
+     */
+    long deleteExcept(UUID playerUuid, Set<String> keep) throws IOException {
+        long freed = 0;
+        for (Path file : files(playerUuid)) {
+            if (!keep.contains(file.getFileName().toString())) {
+                freed += Files.size(file);
+                Files.delete(file);
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * The player's archive files, oldest generation first.
+     */
+    private List<Path> files(UUID playerUuid) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, playerUuid + "-*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                if (generation(file) > 0) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort((a, b) -> Integer.compare(generation(a), generation(b)));
+        return files;
+    }
+
+    private Path resolve(Location location) throws IOException {
+        // The name comes from the database; never follow it outside the archive folder
+        Path file = directory.resolve(location.file()).normalize();
+        if (!directory.normalize().equals(file.getParent())) {
+            throw new IOException("Invalid archive file name " + location.file());
+        }
+        return file;
+    }
+
+    private static String fileName(UUID playerUuid, int generation) {
+        return playerUuid + "-" + generation + FILE_SUFFIX;
+    }
+
+    /**
+     * @return The generation in the file name, or 0 if it is not an archive file name
+     */
+    private static int generation(Path file) {
+        String name = file.getFileName().toString();
+        int start = name.lastIndexOf('-') + 1;
+        try {
+            return Integer.parseInt(name.substring(start, name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archive file ended early");
+            }
+        }
+    }
+
+    record Record(int payloadId, byte[] body) {}
+
+    record Location(String file, long offset) {}
+}
@@ -0,0 +1,168 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.model.BackupSummary;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A storage engine for backups, picked by {@link com.eliteinventorybackups.config.ModConfig.DatabaseType}.
+ * The {@link DatabaseManager} sits in front of it and adds the summary cache and the background lookups,
+ * so an engine only has to store and find backups. Implementations are called from several threads at once.
+ * <p>
+ * Summaries use the backup number as their id. Errors are logged by the engine and reported through the
+ * return values documented below; nothing here throws.
+ */
+public interface BackupStore {
+
+    /**
+     * Saves one backup in its own transaction.
+     * @return The backup number assigned to the entry, 0 if it was skipped as a duplicate, or -1 if it was not saved.
+     */
+    default int saveBackup(BackupEntry entry) {
+        return saveBackups(List.of(entry))[0];
+    }
+
+    /**
+     * Saves several backups together. Engines that have transactions commit the batch once.
+     * @return For each entry, in order, the same result {@link #saveBackup} would give
+     */
+    int[] saveBackups(List<BackupEntry> entries);
+
+    /**
+     * Gets all summaries of a player's backups, newest first.
+     * @return The summaries, or null if they could not be read
+     */
+    @Nullable
+    List<BackupSummary> getBackupSummaries(UUID playerUuid);
+
+    /**
+     * Whether a backup with exactly this player, timestamp and event type exists, or, for a death, whether it was
+     * folded into an earlier death backup.
+     */
+    boolean hasBackup(UUID playerUuid, long timestamp, String eventType);
+
+    int countBackups(UUID playerUuid);
+
+    /**
+     * Gets up to {@code limit} summaries numbered below {@code backupNumber}, newest first.
+     */
+    List<BackupSummary> getBackupsOlderThan(UUID playerUuid, int backupNumber, int limit);
+
+    /**
+     * Gets up to {@code limit} summaries numbered just above {@code backupNumber}, newest first.
+     */
+    List<BackupSummary> getBackupsNewerThan(UUID playerUuid, int backupNumber, int limit);
+
+    /**
+     * Gets a page of summaries by position, newest first.
+     */
+    List<BackupSummary> getBackupSummaryPage(UUID playerUuid, int offset, int limit);
+
+    /**
+     * @return The backup, or null if the player has no backup with that number
+     */
+    @Nullable
+    BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber);
+
+    /**
+     * Reads backups in order of player UUID (compared as text), then backup number, for exporting them.
+     * @param after Position to continue after, or null to start at the first backup
+     * @return Up to {@code limit} backups, empty once there are none left, or null if they could not be read
+     */
+    @Nullable
+    List<NumberedBackup> readBackupsAfter(@Nullable BackupPosition after, int limit);
+
+    /**
+     * Stores backups under the numbers they already have, for importing them from another store. A backup whose
+     * number its player already uses is left out, so importing the same backups twice stores them once.
+     * @return The number of backups stored, or -1 if the batch could not be stored
+     */
+    int importBackups(List<NumberedBackup> backups);
+
+    /**
+     * Sets how many deaths a backup stands for, for repeating a coalesced death on another store.
+     * Engines that don't coalesce deaths keep no count and ignore it.
+     * @return Whether the backup exists and now has that count
+     */
+    default boolean setDeathCount(UUID playerUuid, int backupNumber, int deathCount) {
+        return false;
+    }
+
+    /**
+     * Finds every player that currently has more backups than the given limit.
+     */
+    List<UUID> getPlayersOverBackupLimit(int maxBackups);
+
+    /**
+     * Deletes a player's oldest backups until at most {@code maxBackups} remain.
+     * @return The number of backups deleted
+     */
+    int trimBackupsForPlayer(UUID playerUuid, int maxBackups);
+
+    /**
+     * Deletes every backup of a player. Their numbering starts over at #1 afterwards.
+     * @return The number of backups deleted
+     */
+    int removeAllBackupsForPlayer(UUID playerUuid);
+
+    /**
+     * Moves the inventories of backups taken before {@code timestamp} to slower storage, leaving the backups themselves
+     * listed and readable. Engines without a slower tier do nothing.
+     * @param limit The most backups to move in this call
+     * @return The player of each backup moved, one element per backup
+     */
+    default List<UUID> archiveBackupsOlderThan(long timestamp, int limit) {
+        return List.of();
+    }
+
+    /**
+     * Frees storage that deleted backups no longer need, for engines that share it between backups.
+     * @return The number of shared blocks removed
+     */
+    default int removeUnusedSections() {
+        return 0;
+    }
+
+    default StorageStats getStorageStats() {
+        return new StorageStats(0, 0, 0);
+    }
+
+    /**
+     * False while the engine knows its storage is unreachable, so callers can skip it instead of waiting.
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * @return The breaker guarding the engine's connection, or null if it doesn't need one
+     */
+    @Nullable
+    default CircuitBreaker getCircuitBreaker() {
+        return null;
+    }
+
+    void shutdown();
+
+    record StorageStats(long skippedDuplicates, long referencedDuplicates, long coalescedDeaths) {}
+
+    record BackupPosition(UUID playerUuid, int backupNumber) {}
+
+    /**
+     * @param deathCount Deaths folded into the backup; 1 for anything but a coalesced death backup
+     * @param archived Whether the engine it came from keeps its inventories in slower storage; an engine importing
+     *                 it does the same if it has such storage
+     */
+    record NumberedBackup(int backupNumber, BackupEntry entry, int deathCount, boolean archived) {
+        public NumberedBackup(int backupNumber, BackupEntry entry) {
+            this(backupNumber, entry, 1, false);
+        }
+
+        public BackupPosition position() {
+            return new BackupPosition(entry.playerUuid(), backupNumber);
+        }
+    }
+}
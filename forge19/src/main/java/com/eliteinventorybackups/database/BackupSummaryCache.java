@@ -0,0 +1,75 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.model.BackupSummary;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded LRU cache of per-player backup summaries, used for tab-completion and listing.
+ * Entries are dropped whenever a player's backups change; the next lookup reloads them.
+ */
+class BackupSummaryCache {
+    private final Map<UUID, List<BackupSummary>> entries;
+    // Ticks on every invalidation; a load remembers the value it started at
+    private long generation = 0;
+    // When each recently changed player was last invalidated, so a save only throws away loads of its own player
+    private final Map<UUID, Long> invalidatedAt;
+    // Loads older than this are not cached: invalidateAll, or a player whose stamp was evicted
+    private long floor = 0;
+
+    BackupSummaryCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, List<BackupSummary>> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.invalidatedAt = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+                if (size() > capacity * 4) {
+                    floor = Math.max(floor, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return The cached summaries (newest first), or null if the player is not cached
+     */
+    synchronized List<BackupSummary> get(UUID playerUuid) {
+        return entries.get(playerUuid);
+    }
+
+    /**
+     * Call before querying the database; pass the result to {@link #put}.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Cache freshly loaded summaries unless the player's backups changed since the load started.
+     */
+    synchronized void put(UUID playerUuid, List<BackupSummary> summaries, long loadedAtGeneration) {
+        if (loadedAtGeneration >= floor && loadedAtGeneration >= invalidatedAt.getOrDefault(playerUuid, 0L)) {
+            entries.put(playerUuid, List.copyOf(summaries));
+        }
+    }
+
+    synchronized void invalidate(UUID playerUuid) {
+        invalidatedAt.put(playerUuid, ++generation);
+        entries.remove(playerUuid);
+    }
+
+    synchronized void invalidateAll() {
+        floor = ++generation;
+        invalidatedAt.clear();
+        entries.clear();
+    }
+}
@@ -0,0 +1,153 @@
+package com.eliteinventorybackups.database;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Stops sending work to a database that keeps failing to hand out connections. After {@code failureThreshold}
+ * consecutive failures the breaker opens and every request fails at once instead of waiting out the connection
+ * timeout. While open, a background probe checks the database every {@code probeIntervalSeconds}; the first
+ * successful probe closes the breaker again. Requests themselves never probe, so a command run on the server
+ * thread can't stall on a dead database.
+ */
+public class CircuitBreaker {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final int failureThreshold;
+    private final long probeIntervalSeconds;
+    private final BooleanSupplier probe;
+    private final ScheduledExecutorService executor;
+    private Runnable onRecovered = () -> {};
+
+    // Guarded by this
+    private int consecutiveFailures = 0;
+    private ScheduledFuture<?> probeTask;
+    private volatile boolean open = false;
+    private volatile long openedAt = 0;
+
+    // Metrics
+    private long trips = 0;
+
+    /**
+     * @param failureThreshold Consecutive failures that open the breaker; 0 disables it
+     * @param probe Checks whether the database is reachable again; runs on the breaker's own thread
+     */
+    public CircuitBreaker(int failureThreshold, long probeIntervalSeconds, BooleanSupplier probe) {
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalSeconds = probeIntervalSeconds;
+        this.probe = probe;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EIB-Probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Set what runs once the database is reachable again, e.g. forwarding what piled up meanwhile.
+     */
+    public void onRecovered(Runnable onRecovered) {
+        this.onRecovered = onRecovered;
+    }
+
+    /**
+     * Fail fast while the breaker is open.
+     * @throws OpenException if it is
+     */
+    public void check() throws OpenException {
+        if (open) {
+            throw new OpenException();
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (open || failureThreshold <= 0 || consecutiveFailures < failureThreshold || executor.isShutdown()) {
+            return;
+        }
+
+        open = true;
+        openedAt = System.currentTimeMillis();
+        trips++;
+        LOGGER.warn("Backup database failed {} time(s) in a row, pausing database access and probing every {} seconds. "
+            + "Backups are kept in the local journal meanwhile.", consecutiveFailures, probeIntervalSeconds);
+        probeTask = executor.scheduleWithFixedDelay(this::runProbe, probeIntervalSeconds, probeIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void runProbe() {
+        boolean reachable;
+        try {
+            reachable = probe.getAsBoolean();
+        } catch (Exception e) {
+            reachable = false;
+        }
+        if (!reachable) {
+            LOGGER.debug("Backup database is still unreachable");
+            return;
+        }
+
+        long downSeconds;
+        synchronized (this) {
+            open = false;
+            consecutiveFailures = 0;
+            probeTask.cancel(false);
+            downSeconds = (System.currentTimeMillis() - openedAt) / 1000;
+        }
+        LOGGER.info("Backup database is reachable again after {} seconds, resuming.", downSeconds);
+        try {
+            onRecovered.run();
+        } catch (Exception e) {
+            LOGGER.error("Error resuming after a database outage. Full error: ", e);
+        }
+    }
+
+    /**
+     * Whether a failed connection request means the database can't be reached, as opposed to the pool being busy.
+     * A pool that can't connect passes on its last connection error as the cause (and its SQLState); a pool whose
+     * connections are all in use just times out without one, and that shouldn't trip the breaker.
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        if (!(e instanceof SQLTransientConnectionException)) {
+            return true;
+        }
+        return e.getCause() != null || (e.getSQLState() != null && e.getSQLState().startsWith("08"));
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(open, open ? openedAt : 0, trips);
+    }
+
+    /**
+     * @param openSince When the breaker opened, or 0 while closed
+     */
+    public record Stats(boolean open, long openSince, long trips) {}
+
+    /**
+     * Thrown instead of trying the database while the breaker is open.
+     */
+    public static class OpenException extends SQLTransientConnectionException {
+        public OpenException() {
+            super("Backup database is unavailable, not trying it until the next probe succeeds", "08001");
+        }
+    }
+}
@@ -1,608 +1,349 @@
 package com.eliteinventorybackups.database;
 
-import com.eliteinventorybackups.EliteInventoryBackups;
 import com.eliteinventorybackups.config.ModConfig;
 import com.eliteinventorybackups.model.BackupEntry;
 import com.eliteinventorybackups.model.BackupSummary;
 import com.mojang.logging.LogUtils;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
-import java.io.File;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
-import java.time.LocalDateTime;
-import java.sql.Timestamp;
-import net.minecraft.world.entity.player.Player;
-import org.jetbrains.annotations.Nullable;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Entry point for everything that reads or writes backups. Picks the {@link BackupStore} engine configured by
+ * {@code databaseType} and puts the summary cache and the background lookups in front of it.
+ */
 public class DatabaseManager {
     private static final Logger LOGGER = LogUtils.getLogger();
-    private static final String H2_DB_SUBFOLDER = "eliteinventorybackups" + File.separator + "data";
-    private static final String H2_DB_NAME = "inventorybackups";
-    private String jdbcUrl;
-    private String username;
-    private String password;
-    private volatile boolean isShuttingDown = false;
+
+    // Replaced while the server runs by an online migration, see StoreMigrator
+    private volatile BackupStore store;
+    @Nullable
+    private volatile Runnable recoveryListener;
+    @Nullable
+    private StoreMigrator migrator;
+    private final BackupSummaryCache summaryCache = new BackupSummaryCache(ModConfig.SERVER.summaryCacheSize.get());
+    // Runs lookups requested from the server thread (tab-completion) so it never waits on the store
+    private final ExecutorService queryExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "EIB-Query");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public DatabaseManager() {
         ModConfig.DatabaseType dbType = ModConfig.SERVER.databaseType.get();
         LOGGER.info("Initializing DatabaseManager with type: {}", dbType);
-
-        if (dbType == ModConfig.DatabaseType.MYSQL) {
-            String host = ModConfig.SERVER.mysqlHost.get();
-            int port = ModConfig.SERVER.mysqlPort.get();
-            String database = ModConfig.SERVER.mysqlDatabase.get();
-            this.username = ModConfig.SERVER.mysqlUsername.get();
-            this.password = ModConfig.SERVER.mysqlPassword.get();
-            boolean useSSL = ModConfig.SERVER.mysqlUseSSL.get();
-            String extraParams = ModConfig.SERVER.mysqlExtraParams.get();
-
-            // Automatically create the database if it doesn't exist
-            createDatabaseIfNeeded(host, port, database, this.username, this.password, useSSL);
-
-            this.jdbcUrl = buildMysqlUrl(host, port, database, useSSL, extraParams);
-            LOGGER.info("Attempting to connect to MySQL with URL: {}", this.jdbcUrl);
-            try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-            } catch (ClassNotFoundException e) {
-                LOGGER.error("MySQL JDBC driver not found.", e);
-            }
-        } else {
-            try {
-                File dbDir = new File("." + File.separator + "config" + File.separator + H2_DB_SUBFOLDER);
-                if (!dbDir.exists()) {
-                    if (!dbDir.mkdirs()) {
-                        LOGGER.error("Could not create H2 database directory: {}", dbDir.getAbsolutePath());
-                        this.jdbcUrl = "jdbc:h2:mem:" + H2_DB_NAME + "_fallback";
-                    } else {
-                        this.jdbcUrl = "jdbc:h2:" + dbDir.getAbsolutePath() + File.separator + H2_DB_NAME + ";DB_CLOSE_DELAY=-1";
-                    }
-                } else {
-                    this.jdbcUrl = "jdbc:h2:" + dbDir.getAbsolutePath() + File.separator + H2_DB_NAME + ";DB_CLOSE_DELAY=-1";
-                }
-                LOGGER.info("Configured to use H2 database: {}", this.jdbcUrl);
-            } catch (Exception e) {
-                LOGGER.error("Failed to set up H2 database path an_error_occurred", e);
-                this.jdbcUrl = "jdbc:h2:mem:" + H2_DB_NAME + "_errorfallback";
-            }
-        }
-        initializeDatabase();
+        this.store = switch (dbType) {
+            case H2 -> new H2BackupStore();
+            case MYSQL -> new MySqlBackupStore();
+            case LOG -> openLogStore();
+            case MEMORY -> new MemoryBackupStore();
+        };
     }
 
-    private Connection getConnection() throws SQLException {
+    private static BackupStore openLogStore() {
+        Path directory = Paths.get("config", "eliteinventorybackups", "data", "log");
         try {
-            if (ModConfig.SERVER.databaseType.get() == ModConfig.DatabaseType.MYSQL) {
-                return DriverManager.getConnection(jdbcUrl, username, password);
-            } else {
-                return DriverManager.getConnection(jdbcUrl);
-            }
-        } catch (SQLException e) {
-            // Check for the specific timezone error and provide a user-friendly message.
-            Throwable cause = e.getCause();
-            while (cause != null) {
-                if (cause instanceof java.time.zone.ZoneRulesException) {
-                    LOGGER.error("############################################################");
-                    LOGGER.error("###           INVALID DATABASE TIMEZONE                  ###");
-                    LOGGER.error("############################################################");
-                    LOGGER.error("The 'mysqlExtraParams' in your config has an invalid timezone ID.");
-                    LOGGER.error("You have: '{}'", ModConfig.SERVER.mysqlExtraParams.get());
-                    LOGGER.error("Replace the timezone (e.g., 'PST') with a valid IANA ID like 'America/Los_Angeles', 'Europe/London', or simply 'UTC'.");
-                    LOGGER.error("The mod cannot connect to the database until this is fixed.");
-                    LOGGER.error("############################################################");
-                    break; // Exit the loop once the specific cause is found.
-                }
-                cause = cause.getCause();
-            }
-            // Re-throw the original exception to let the calling method handle it.
-            throw e;
+            return new LogBackupStore(directory, ModConfig.SERVER.logSegmentSizeMb.get() * 1024L * 1024L);
+        } catch (IOException e) {
+            // Same as H2 when its folder can't be used: keep the server up, but nothing survives a restart
+            LOGGER.error("Could not open the backup log in {}, falling back to keeping backups in memory. Full error: ", directory, e);
+            return new MemoryBackupStore();
         }
     }
 
-    private void initializeDatabase() {
-        ModConfig.DatabaseType dbType = ModConfig.SERVER.databaseType.get();
-        String createTableSql;
-        
-        if (dbType == ModConfig.DatabaseType.MYSQL) {
-            createTableSql = """
-            CREATE TABLE IF NOT EXISTS player_backups (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                player_uuid VARCHAR(36) NOT NULL,
-                player_name VARCHAR(255),
-                backup_number INT NOT NULL,
-                timestamp BIGINT NOT NULL,
-                event_type VARCHAR(50),
-                world VARCHAR(255),
-                pos_x DOUBLE,
-                pos_y DOUBLE,
-                pos_z DOUBLE,
-                experience_level INT,
-                experience_progress FLOAT,
-                inventory_main LONGTEXT,
-                inventory_armor LONGTEXT,
-                inventory_offhand LONGTEXT,
-                inventory_enderchest LONGTEXT,
-                cause_of_death TEXT,
-                inventory_curios LONGTEXT,
-                player_nbt LONGTEXT,
-                modded_inventories LONGTEXT,
-                INDEX idx_player_uuid (player_uuid),
-                INDEX idx_timestamp (timestamp),
-                INDEX idx_player_backup (player_uuid, backup_number),
-                UNIQUE KEY unique_player_backup (player_uuid, backup_number)
-            );
-            """;
-        } else {
-            // H2 Database syntax
-            createTableSql = """
-            CREATE TABLE IF NOT EXISTS player_backups (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                player_uuid VARCHAR(36) NOT NULL,
-                player_name VARCHAR(255),
-                backup_number INT NOT NULL,
-                timestamp BIGINT NOT NULL,
-                event_type VARCHAR(50),
-                world VARCHAR(255),
-                pos_x DOUBLE,
-                pos_y DOUBLE,
-                pos_z DOUBLE,
-                experience_level INT,
-                experience_progress FLOAT,
-                inventory_main TEXT,
-                inventory_armor TEXT,
-                inventory_offhand TEXT,
-                inventory_enderchest TEXT,
-                cause_of_death TEXT,
-                inventory_curios TEXT,
-                player_nbt TEXT,
-                modded_inventories TEXT
-            );
-            """;
-        }
-
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSql);
-            
-            // Handle migration for existing installations - add backup_number column if it doesn't exist
-            try {
-                if (dbType == ModConfig.DatabaseType.MYSQL) {
-                    stmt.execute("ALTER TABLE player_backups ADD COLUMN backup_number INT NOT NULL DEFAULT 0");
-                    LOGGER.info("Added backup_number column to existing MySQL table.");
-                } else {
-                    stmt.execute("ALTER TABLE player_backups ADD COLUMN backup_number INT NOT NULL DEFAULT 0");
-                    LOGGER.info("Added backup_number column to existing H2 table.");
-                }
-            } catch (SQLException e) {
-                // Column probably already exists, this is fine
-                LOGGER.debug("backup_number column already exists or migration not needed: {}", e.getMessage());
-            }
-            
-            // Create indexes separately for H2
-            if (dbType != ModConfig.DatabaseType.MYSQL) {
-                try {
-                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_player_uuid ON player_backups (player_uuid);");
-                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_timestamp ON player_backups (timestamp);");
-                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_player_backup ON player_backups (player_uuid, backup_number);");
-                    stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS unique_player_backup ON player_backups (player_uuid, backup_number);");
-                } catch (SQLException e) {
-                    LOGGER.debug("Index creation failed (may already exist): {}", e.getMessage());
-                }
-            }
-            
-            // Migrate existing data - set backup_number for records that have 0
-            migrateExistingBackupNumbers();
-            
-            LOGGER.info("Database table 'player_backups' initialized successfully.");
-        } catch (SQLException e) {
-            LOGGER.error("Could not initialize database table 'player_backups'. Full error: ", e);
-        }
+    public BackupStore getStore() {
+        return store;
     }
 
     /**
-     * Saves a pre-constructed backup entry to the database.
-     * This is the core save method.
-     * @param entry The BackupEntry to save.
+     * Starts moving every backup to the MySQL server configured in {@code [database.mysql]}, switching to it
+     * once they are all there and verified. Runs in the background; see {@link #getMigrator()}.
+     * @return Null if the migration started, otherwise why it didn't
      */
-    public void saveBackup(BackupEntry entry) {
-        if (isShuttingDown) {
-            LOGGER.warn("Database is shutting down, skipping backup save for player {}", entry.playerName());
-            return;
+    @Nullable
+    public synchronized String startMigration() {
+        if (migrator != null && migrator.isRunning()) {
+            return "A migration is already running.";
         }
-        
-        // Get the next backup number for this player
-        int backupNumber = getNextBackupNumber(entry.playerUuid());
-        
-        String insertSql = """
-        INSERT INTO player_backups (
-            player_uuid, player_name, backup_number, timestamp, event_type, world, 
-            pos_x, pos_y, pos_z, experience_level, experience_progress, 
-            inventory_main, inventory_armor, inventory_offhand, inventory_enderchest, 
-            cause_of_death, inventory_curios, player_nbt, modded_inventories
-        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
-        """;
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
-
-            pstmt.setString(1, entry.playerUuid().toString());
-            pstmt.setString(2, entry.playerName());
-            pstmt.setInt(3, backupNumber);
-            pstmt.setLong(4, entry.timestamp());
-            pstmt.setString(5, entry.eventType());
-            pstmt.setString(6, entry.world());
-            pstmt.setDouble(7, entry.posX());
-            pstmt.setDouble(8, entry.posY());
-            pstmt.setDouble(9, entry.posZ());
-            pstmt.setInt(10, entry.experienceLevel());
-            pstmt.setFloat(11, entry.experienceProgress());
-            pstmt.setString(12, entry.inventoryMain());
-            pstmt.setString(13, entry.inventoryArmor());
-            pstmt.setString(14, entry.inventoryOffhand());
-            pstmt.setString(15, entry.inventoryEnderChest());
-            pstmt.setString(16, entry.causeOfDeath());
-            pstmt.setString(17, entry.inventoryCurios());
-            pstmt.setString(18, entry.playerNbt());
-            pstmt.setString(19, entry.moddedInventories());
-
-            pstmt.executeUpdate();
-
-            // After saving, enforce the backup limit for the player.
-            enforceBackupLimit(entry.playerUuid().toString());
-
-            LOGGER.debug("Saved backup #{} for player {} ({}) at {}", backupNumber, entry.playerName(), entry.playerUuid(), entry.timestamp());
-        } catch (SQLException e) {
-            LOGGER.error("Could not save backup for player {}. Full error: ", entry.playerName(), e);
+        BackupStore current = store;
+        if (current instanceof MySqlBackupStore) {
+            return "Backups are already stored in MySQL.";
         }
+        if (current instanceof JdbcBackupStore jdbcStore && jdbcStore.isLegacyMigrationPending()) {
+            return "The legacy player_backups table is still being converted; try again once that has finished.";
+        }
+        if (!current.isAvailable()) {
+            return "The current database is unavailable.";
+        }
+        migrator = new StoreMigrator(this, current, MySqlBackupStore::new);
+        migrator.start();
+        return null;
     }
 
     /**
-     * Gets the next sequential backup number for a player.
-     * @param playerUuid The player's UUID
-     * @return The next backup number (1-based)
+     * @return The running migration, or the last one since the server started, or null if there hasn't been any
      */
-    private int getNextBackupNumber(UUID playerUuid) {
-        String sql = "SELECT COALESCE(MAX(backup_number), 0) + 1 FROM player_backups WHERE player_uuid = ?";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, playerUuid.toString());
-            try (var rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-        } catch (SQLException e) {
-            LOGGER.error("Could not get next backup number for player {}. Full error: ", playerUuid, e);
+    @Nullable
+    public synchronized StoreMigrator getMigrator() {
+        return migrator;
+    }
+
+    /**
+     * Swaps the engine every call from now on goes to. Calls already in progress finish on the old one.
+     */
+    void useStore(BackupStore newStore) {
+        store = newStore;
+        // Nothing changed in the backups themselves, but don't serve lists loaded from the old engine
+        summaryCache.invalidateAll();
+        Runnable listener = recoveryListener;
+        CircuitBreaker circuitBreaker = newStore.getCircuitBreaker();
+        if (listener != null && circuitBreaker != null) {
+            circuitBreaker.onRecovered(listener);
         }
-        
-        return 1; // Fallback to 1 if query fails
+        LOGGER.info("Backups now go to {}", newStore.getClass().getSimpleName());
     }
 
     /**
-     * Migrates existing backup data to assign sequential backup numbers.
+     * Runs {@code listener} whenever the database comes back after an outage, also after a migration has
+     * switched to another engine.
      */
-    private void migrateExistingBackupNumbers() {
-        String selectSql = "SELECT player_uuid FROM player_backups WHERE backup_number = 0 GROUP BY player_uuid";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
-            
-            try (var rs = selectStmt.executeQuery()) {
-                while (rs.next()) {
-                    String playerUuid = rs.getString("player_uuid");
-                    migrateSinglePlayerBackupNumbers(playerUuid);
-                }
-            }
-        } catch (SQLException e) {
-            LOGGER.error("Could not migrate existing backup numbers. Full error: ", e);
+    public void onStoreRecovered(Runnable listener) {
+        recoveryListener = listener;
+        CircuitBreaker circuitBreaker = store.getCircuitBreaker();
+        if (circuitBreaker != null) {
+            circuitBreaker.onRecovered(listener);
         }
     }
 
     /**
-     * Migrates backup numbers for a single player.
+     * Saves a pre-constructed backup entry in its own transaction.
+     * This is the core save method. It may be called from several writer threads at once.
+     * @param entry The BackupEntry to save.
+     * @return The backup number assigned to the entry, 0 if it was skipped as a duplicate, or -1 if it was not saved.
+     */
+    public int saveBackup(BackupEntry entry) {
+        return saveBackups(List.of(entry))[0];
+    }
+
+    /**
+     * Saves several backup entries in one transaction (group commit), so the whole batch costs a single commit.
+     * @return For each entry, in order, the same result {@link #saveBackup} would give
      */
-    private void migrateSinglePlayerBackupNumbers(String playerUuid) {
-        String selectPlayerBackupsSql = "SELECT id FROM player_backups WHERE player_uuid = ? AND backup_number = 0 ORDER BY timestamp ASC";
-        String updateSql = "UPDATE player_backups SET backup_number = ? WHERE id = ?";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement selectStmt = conn.prepareStatement(selectPlayerBackupsSql);
-             PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-            
-            selectStmt.setString(1, playerUuid);
-            try (var rs = selectStmt.executeQuery()) {
-                int backupNumber = 1;
-                while (rs.next()) {
-                    int backupId = rs.getInt("id");
-                    updateStmt.setInt(1, backupNumber);
-                    updateStmt.setInt(2, backupId);
-                    updateStmt.executeUpdate();
-                    backupNumber++;
-                }
+    public int[] saveBackups(List<BackupEntry> entries) {
+        try {
+            return store.saveBackups(entries);
+        } finally {
+            // After the commit, so a concurrent reload can't cache the list from before it
+            for (BackupEntry entry : entries) {
+                summaryCache.invalidate(entry.playerUuid());
             }
-            
-            LOGGER.info("Migrated backup numbers for player {}", playerUuid);
-        } catch (SQLException e) {
-            LOGGER.error("Could not migrate backup numbers for player {}. Full error: ", playerUuid, e);
         }
     }
-    
+
+    /**
+     * Gets all backup summaries for a player, newest first. Served from the summary cache when possible.
+     */
     public List<BackupSummary> getBackupsSummaryForPlayer(UUID playerUuid) {
-        List<BackupSummary> summaries = new ArrayList<>();
-        String querySql = "SELECT backup_number, timestamp, event_type, world FROM player_backups WHERE player_uuid = ? ORDER BY backup_number DESC";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
-            
-            pstmt.setString(1, playerUuid.toString());
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                summaries.add(new BackupSummary(
-                    rs.getInt("backup_number"),
-                    rs.getLong("timestamp"),
-                    rs.getString("event_type"),
-                    rs.getString("world")
-                ));
-            }
-        } catch (SQLException e) {
-            LOGGER.error("Could not retrieve backup summaries for player UUID {}: {}", playerUuid, e.getMessage(), e);
+        List<BackupSummary> cached = summaryCache.get(playerUuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = summaryCache.generation();
+        List<BackupSummary> summaries = store.getBackupSummaries(playerUuid);
+        if (summaries == null) {
+            return new ArrayList<>(); // Already logged; not cached so the next call tries again
         }
+        summaryCache.put(playerUuid, summaries, generation);
         return summaries;
     }
 
-    public BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber) {
-        String querySql = "SELECT * FROM player_backups WHERE player_uuid = ? AND backup_number = ?";
-        BackupEntry entry = null;
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
-            
-            pstmt.setString(1, playerUuid.toString());
-            pstmt.setInt(2, backupNumber);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                entry = new BackupEntry(
-                    rs.getInt("id"),
-                    UUID.fromString(rs.getString("player_uuid")),
-                    rs.getString("player_name"),
-                    rs.getLong("timestamp"),
-                    rs.getString("event_type"),
-                    rs.getString("world"),
-                    rs.getDouble("pos_x"),
-                    rs.getDouble("pos_y"),
-                    rs.getDouble("pos_z"),
-                    rs.getInt("experience_level"),
-                    rs.getFloat("experience_progress"),
-                    rs.getString("inventory_main"),
-                    rs.getString("inventory_armor"),
-                    rs.getString("inventory_offhand"),
-                    rs.getString("inventory_enderchest"),
-                    rs.getString("cause_of_death"),
-                    rs.getString("inventory_curios"),
-                    rs.getString("player_nbt"),
-                    rs.getString("modded_inventories")
-                );
-            }
-        } catch (SQLException e) {
-            LOGGER.error("Could not retrieve backup #{} for player {}: {}", backupNumber, playerUuid, e.getMessage(), e);
-        } catch (IllegalArgumentException e) {
-            LOGGER.error("Could not parse UUID for backup #{} for player {}: {}", backupNumber, playerUuid, e.getMessage(), e);
-        }
-        return entry;
+    /**
+     * Gets the cached backup summaries for a player without touching the database.
+     * @return The summaries, or null if they are not cached
+     */
+    @Nullable
+    public List<BackupSummary> getCachedBackupSummaries(UUID playerUuid) {
+        return summaryCache.get(playerUuid);
     }
 
-    // Keep the old method for backward compatibility but mark it as deprecated
-    @Deprecated
-    public BackupEntry getBackupById(int backupId) {
-        String querySql = "SELECT * FROM player_backups WHERE id = ?";
-        BackupEntry entry = null;
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
-            
-            pstmt.setInt(1, backupId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                entry = new BackupEntry(
-                    rs.getInt("id"),
-                    UUID.fromString(rs.getString("player_uuid")),
-                    rs.getString("player_name"),
-                    rs.getLong("timestamp"),
-                    rs.getString("event_type"),
-                    rs.getString("world"),
-                    rs.getDouble("pos_x"),
-                    rs.getDouble("pos_y"),
-                    rs.getDouble("pos_z"),
-                    rs.getInt("experience_level"),
-                    rs.getFloat("experience_progress"),
-                    rs.getString("inventory_main"),
-                    rs.getString("inventory_armor"),
-                    rs.getString("inventory_offhand"),
-                    rs.getString("inventory_enderchest"),
-                    rs.getString("cause_of_death"),
-                    rs.getString("inventory_curios"),
-                    rs.getString("player_nbt"),
-                    rs.getString("modded_inventories")
-                );
-            }
-        } catch (SQLException e) {
-            LOGGER.error("Could not retrieve backup with ID {}: {}", backupId, e.getMessage(), e);
-        } catch (IllegalArgumentException e) {
-            LOGGER.error("Could not parse UUID for backup ID {}: {}", backupId, e.getMessage(), e);
+    /**
+     * Same as {@link #getBackupsSummaryForPlayer}, but a cache miss is loaded on a background thread.
+     */
+    public CompletableFuture<List<BackupSummary>> getBackupsSummaryForPlayerAsync(UUID playerUuid) {
+        List<BackupSummary> cached = summaryCache.get(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
-        return entry;
+        return CompletableFuture.supplyAsync(() -> getBackupsSummaryForPlayer(playerUuid), queryExecutor);
     }
 
-    public void shutdown() {
-        LOGGER.info("DatabaseManager shutting down...");
-        isShuttingDown = true;
-        
-        try {
-            // For H2, explicitly run shutdown if it's an embedded database with a timeout
-            if (ModConfig.SERVER.databaseType.get() == ModConfig.DatabaseType.H2) {
-                try (Connection conn = getConnection()) {
-                    // Set a short timeout to prevent hanging
-                    conn.setNetworkTimeout(null, 2000); // 2 second timeout
-                    try (Statement stmt = conn.createStatement()) {
-                        stmt.setQueryTimeout(2); // 2 second query timeout
-                        stmt.execute("SHUTDOWN");
-                        LOGGER.info("H2 database shutdown command executed successfully.");
-                    }
-                } catch (SQLException e) {
-                    LOGGER.debug("H2 shutdown command failed (may already be closed): {}", e.getMessage());
-                }
-            }
-            
-            LOGGER.info("DatabaseManager shutdown completed successfully.");
-            
-        } catch (Exception e) {
-            LOGGER.error("Error during DatabaseManager shutdown", e);
+    /**
+     * Gets a player's most recent backup on a background thread.
+     * @return A future completing with the summary, or with null if the player has no backups
+     */
+    public CompletableFuture<BackupSummary> getLatestBackupSummaryAsync(UUID playerUuid) {
+        List<BackupSummary> cached = summaryCache.get(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.isEmpty() ? null : cached.get(0));
         }
-        
-        // For basic DriverManager usage, individual connections are closed via try-with-resources.
-        // If a connection pool (e.g., HikariCP) were implemented, this is where pool.close() would go.
+        return CompletableFuture.supplyAsync(() -> {
+            List<BackupSummary> latest = getBackupsOlderThan(playerUuid, Integer.MAX_VALUE, 1);
+            return latest.isEmpty() ? null : latest.get(0);
+        }, queryExecutor);
+    }
+
+    /**
+     * Whether a backup with exactly this player, timestamp and event type exists. Used to skip journal records
+     * that were saved before a crash.
+     */
+    public boolean hasBackup(UUID playerUuid, long timestamp, String eventType) {
+        return store.hasBackup(playerUuid, timestamp, eventType);
     }
 
-    // TODO: Method for serializing/deserializing inventory (ItemStack lists) to/from String (JSON or NBT string)
+    public int countBackups(UUID playerUuid) {
+        return store.countBackups(playerUuid);
+    }
 
     /**
-     * Connects to the MySQL server and creates the specified database if it doesn't already exist.
+     * Gets up to {@code limit} summaries numbered below {@code backupNumber}, newest first.
      */
-    private void createDatabaseIfNeeded(String host, int port, String dbName, String user, String pass, boolean useSSL) {
-        // JDBC URL without a specific database. We connect to the server itself.
-        String tempUrl = String.format("jdbc:mysql://%s:%d?allowPublicKeyRetrieval=true&useSSL=%b&connectTimeout=5000", host, port, useSSL);
-        
-        LOGGER.info("Verifying database '{}' exists...", dbName);
+    public List<BackupSummary> getBackupsOlderThan(UUID playerUuid, int backupNumber, int limit) {
+        return store.getBackupsOlderThan(playerUuid, backupNumber, limit);
+    }
 
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            LOGGER.error("MySQL JDBC driver not found, cannot create database.", e);
-            return; // Cannot proceed
-        }
+    /**
+     * Gets up to {@code limit} summaries numbered just above {@code backupNumber}, newest first.
+     */
+    public List<BackupSummary> getBackupsNewerThan(UUID playerUuid, int backupNumber, int limit) {
+        return store.getBackupsNewerThan(playerUuid, backupNumber, limit);
+    }
 
-        try (Connection conn = DriverManager.getConnection(tempUrl, user, pass);
-             Statement stmt = conn.createStatement()) {
-            
-            // Use backticks to safely handle db names that might be reserved words
-            String createDbSql = "CREATE DATABASE IF NOT EXISTS `" + dbName + "`";
-            stmt.executeUpdate(createDbSql);
-            LOGGER.info("Database '{}' is ready.", dbName);
-
-        } catch (SQLException e) {
-            LOGGER.error("Failed to automatically create MySQL database '{}'.", dbName, e);
-            LOGGER.error("Please check your MySQL connection settings and ensure the user '{}' has 'CREATE' privileges.", user);
-        }
+    /**
+     * Gets a page of summaries by position, newest first. Used when jumping straight to a page number;
+     * prefer {@link #getBackupsOlderThan} / {@link #getBackupsNewerThan} when paging from a known backup.
+     */
+    public List<BackupSummary> getBackupSummaryPage(UUID playerUuid, int offset, int limit) {
+        return store.getBackupSummaryPage(playerUuid, offset, limit);
+    }
+
+    @Nullable
+    public BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber) {
+        return store.getBackupByNumber(playerUuid, backupNumber);
     }
 
     /**
-     * Builds the MySQL JDBC URL with all necessary parameters.
-     * @return The full JDBC URL string.
+     * Finds every player that currently has more backups than the given limit.
+     * @param maxBackups The per-player backup limit.
+     * @return UUIDs of players over the limit.
      */
-    private String buildMysqlUrl(String host, int port, String database, boolean useSSL, String extraParams) {
-        StringBuilder urlBuilder = new StringBuilder();
-        urlBuilder.append("jdbc:mysql://").append(host).append(":").append(port).append("/").append(database);
-
-        // Build parameters
-        List<String> params = new ArrayList<>();
-        params.add("useSSL=" + useSSL);
-        params.add("allowPublicKeyRetrieval=true"); // Required for modern MySQL/MariaDB
-        params.add("connectTimeout=5000"); // 5-second connection timeout
-
-        if (extraParams != null && !extraParams.trim().isEmpty()) {
-            params.add(extraParams);
+    public List<UUID> getPlayersOverBackupLimit(int maxBackups) {
+        return store.getPlayersOverBackupLimit(maxBackups);
+    }
+
+    /**
+     * Deletes a player's oldest backups until at most {@code maxBackups} remain.
+     * @return The number of backups that were deleted.
+     */
+    public int trimBackupsForPlayer(UUID playerUuid, int maxBackups) {
+        int deleted = store.trimBackupsForPlayer(playerUuid, maxBackups);
+        if (deleted > 0) {
+            summaryCache.invalidate(playerUuid);
         }
+        return deleted;
+    }
 
-        urlBuilder.append("?").append(String.join("&", params));
-        return urlBuilder.toString();
+    /**
+     * Removes all backups for a specific player.
+     * @return The number of backups that were deleted.
+     */
+    public int removeAllBackupsForPlayer(UUID playerUuid) {
+        int deleted = store.removeAllBackupsForPlayer(playerUuid);
+        summaryCache.invalidate(playerUuid);
+        return deleted;
     }
 
     /**
-     * Checks if a player has more backups than the configured limit and deletes the oldest if necessary.
-     * @param playerUuid The UUID of the player to check.
+     * Moves backups taken before {@code timestamp} to the engine's archive tier, see {@link BackupStore#archiveBackupsOlderThan}.
+     * @return The number of backups archived
      */
-    private void enforceBackupLimit(String playerUuid) {
-        int maxBackups = ModConfig.SERVER.maxBackupsPerPlayer.get();
-        if (maxBackups <= 0) {
-            return; // 0 or less means unlimited, so we do nothing.
+    public int archiveBackupsOlderThan(long timestamp, int limit) {
+        List<UUID> players = store.archiveBackupsOlderThan(timestamp, limit);
+        // Their summaries now carry the archived marker
+        for (UUID playerUuid : new HashSet<>(players)) {
+            summaryCache.invalidate(playerUuid);
         }
+        return players.size();
+    }
 
-        String countSql = "SELECT COUNT(*) FROM player_backups WHERE player_uuid = ?";
-        String findOldestSql = "SELECT id FROM player_backups WHERE player_uuid = ? ORDER BY timestamp ASC LIMIT 1";
-        String deleteSql = "DELETE FROM player_backups WHERE id = ?";
-
-        try (Connection conn = getConnection()) {
-            int currentBackups = 0;
-            
-            // Step 1: Count current backups
-            try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
-                countStmt.setString(1, playerUuid);
-                try (var rs = countStmt.executeQuery()) {
-                    if (rs.next()) {
-                        currentBackups = rs.getInt(1);
-                    }
-                }
-            }
+    /**
+     * Reads the next page of backups across all players, see {@link BackupStore#readBackupsAfter}.
+     * @return The backups, or null if the read failed
+     */
+    @Nullable
+    public List<BackupStore.NumberedBackup> readBackupsAfter(@Nullable BackupStore.BackupPosition after, int limit) {
+        return store.readBackupsAfter(after, limit);
+    }
 
-            // Step 2: If over limit, find and delete the oldest backup
-            if (currentBackups > maxBackups) {
-                LOGGER.info("Player {} has {} backups, exceeding the limit of {}. Deleting oldest backup.", playerUuid, currentBackups, maxBackups);
-                
-                int oldestBackupId = -1;
-                try (PreparedStatement findStmt = conn.prepareStatement(findOldestSql)) {
-                    findStmt.setString(1, playerUuid);
-                    try (var rs = findStmt.executeQuery()) {
-                        if (rs.next()) {
-                            oldestBackupId = rs.getInt(1);
-                        }
-                    }
-                }
-                
-                if (oldestBackupId > 0) {
-                    try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                        deleteStmt.setInt(1, oldestBackupId);
-                        int rowsAffected = deleteStmt.executeUpdate();
-                        if (rowsAffected > 0) {
-                            LOGGER.info("Successfully deleted oldest backup (ID: {}) for player {}.", oldestBackupId, playerUuid);
-                        }
-                    }
-                }
+    /**
+     * Saves backups under their original numbers, see {@link BackupStore#importBackups}.
+     * @return The number of backups imported, or -1 if the batch failed
+     */
+    public int importBackups(List<BackupStore.NumberedBackup> backups) {
+        try {
+            return store.importBackups(backups);
+        } finally {
+            for (BackupStore.NumberedBackup backup : backups) {
+                summaryCache.invalidate(backup.entry().playerUuid());
             }
-        } catch (SQLException e) {
-            LOGGER.error("Could not enforce backup limit for player {}. Full error: ", playerUuid, e);
         }
     }
 
     /**
-     * Removes all backups for a specific player.
-     * @param playerUuid The UUID of the player whose backups should be removed.
-     * @return The number of backups that were deleted.
+     * Frees storage no backup uses anymore, see {@link BackupStore#removeUnusedSections()}.
      */
-    public int removeAllBackupsForPlayer(UUID playerUuid) {
-        String deleteSql = "DELETE FROM player_backups WHERE player_uuid = ?";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
-            
-            pstmt.setString(1, playerUuid.toString());
-            int deletedCount = pstmt.executeUpdate();
-            
-            LOGGER.info("Removed {} backup(s) for player {}", deletedCount, playerUuid);
-            return deletedCount;
-            
-        } catch (SQLException e) {
-            LOGGER.error("Could not remove backups for player {}. Full error: ", playerUuid, e);
-            return 0;
+    public int removeUnusedSections() {
+        return store.removeUnusedSections();
+    }
+
+    public BackupStore.StorageStats getStorageStats() {
+        return store.getStorageStats();
+    }
+
+    /**
+     * False while the store is known to be unreachable, i.e. its circuit breaker is open.
+     */
+    public boolean isAvailable() {
+        return store.isAvailable();
+    }
+
+    /**
+     * @return The store's circuit breaker, or null if the configured engine doesn't have one
+     */
+    @Nullable
+    public CircuitBreaker getCircuitBreaker() {
+        return store.getCircuitBreaker();
+    }
+
+    public void shutdown() {
+        LOGGER.info("DatabaseManager shutting down...");
+        queryExecutor.shutdownNow();
+        StoreMigrator runningMigrator = getMigrator();
+        if (runningMigrator != null) {
+            // Puts the old engine back unless the switch already happened
+            runningMigrator.cancelAndWait(30_000);
         }
+        store.shutdown();
+        LOGGER.info("DatabaseManager shutdown completed successfully.");
     }
-} 
\ No newline at end of file
+}
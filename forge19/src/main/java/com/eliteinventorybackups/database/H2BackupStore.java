@@ -0,0 +1,143 @@
+package com.eliteinventorybackups.database;
+
+import com.mojang.logging.LogUtils;
+import com.zaxxer.hikari.HikariConfig;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Embedded H2 database in the config folder. The default engine; needs no setup.
+ */
+public class H2BackupStore extends JdbcBackupStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String H2_DB_SUBFOLDER = "eliteinventorybackups" + File.separator + "data";
+    private static final String H2_DB_NAME = "inventorybackups";
+
+    public H2BackupStore() {
+        super(buildUrl());
+    }
+
+    private static String buildUrl() {
+        String jdbcUrl;
+        try {
+            File dbDir = new File("." + File.separator + "config" + File.separator + H2_DB_SUBFOLDER);
+            if (!dbDir.exists()) {
+                if (!dbDir.mkdirs()) {
+                    LOGGER.error("Could not create H2 database directory: {}", dbDir.getAbsolutePath());
+                    jdbcUrl = "jdbc:h2:mem:" + H2_DB_NAME + "_fallback";
+                } else {
+                    jdbcUrl = "jdbc:h2:" + dbDir.getAbsolutePath() + File.separator + H2_DB_NAME + ";DB_CLOSE_DELAY=-1";
+                }
+            } else {
+                jdbcUrl = "jdbc:h2:" + dbDir.getAbsolutePath() + File.separator + H2_DB_NAME + ";DB_CLOSE_DELAY=-1";
+            }
+            LOGGER.info("Configured to use H2 database: {}", jdbcUrl);
+        } catch (Exception e) {
+            LOGGER.error("Failed to set up H2 database path an_error_occurred", e);
+            jdbcUrl = "jdbc:h2:mem:" + H2_DB_NAME + "_errorfallback";
+        }
+        return jdbcUrl;
+    }
+
+    @Override
+    protected void configurePool(HikariConfig config) {
+        config.setDriverClassName("org.h2.Driver");
+    }
+
+    @Override
+    protected List<String> tableDdl() {
+        return List.of("""
+            CREATE TABLE IF NOT EXISTS backup_meta (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                player_uuid VARCHAR(36) NOT NULL,
+                player_name VARCHAR(255),
+                backup_number INT NOT NULL,
+                timestamp BIGINT NOT NULL,
+                event_type VARCHAR(50),
+                world VARCHAR(255),
+                pos_x DOUBLE,
+                pos_y DOUBLE,
+                pos_z DOUBLE,
+                experience_level INT,
+                experience_progress FLOAT,
+                cause_of_death TEXT,
+                content_hash VARCHAR(32),
+                payload_id INT,
+                death_count INT NOT NULL DEFAULT 1,
+                last_death BIGINT,
+                archived BOOLEAN NOT NULL DEFAULT FALSE
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_payload (
+                backup_id INT PRIMARY KEY,
+                payload_format INT NOT NULL,
+                payload VARBINARY,
+                archive_file VARCHAR(64),
+                archive_offset BIGINT
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_section (
+                section_hash VARCHAR(32) PRIMARY KEY,
+                payload VARBINARY NOT NULL,
+                base_hash VARCHAR(32),
+                chain_depth INT NOT NULL DEFAULT 0
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_section_ref (
+                backup_id INT NOT NULL,
+                section_name VARCHAR(16) NOT NULL,
+                section_hash VARCHAR(32) NOT NULL,
+                PRIMARY KEY (backup_id, section_name)
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_item (
+                item_hash VARCHAR(32) PRIMARY KEY,
+                item VARBINARY NOT NULL
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_item_ref (
+                section_hash VARCHAR(32) NOT NULL,
+                item_hash VARCHAR(32) NOT NULL,
+                PRIMARY KEY (section_hash, item_hash)
+            );
+            """);
+    }
+
+    // H2 has no inline index syntax, so they are created separately
+    @Override
+    protected List<String> indexDdl() {
+        return List.of(
+            "CREATE UNIQUE INDEX IF NOT EXISTS unique_meta_player_backup ON backup_meta (player_uuid, backup_number);",
+            "CREATE INDEX IF NOT EXISTS idx_meta_listing ON backup_meta (player_uuid, backup_number DESC, timestamp, event_type, world, death_count, archived);",
+            // Replaced by idx_meta_listing when the archived column was added
+            "DROP INDEX IF EXISTS idx_meta_summary;",
+            "CREATE INDEX IF NOT EXISTS idx_section_ref_hash ON backup_section_ref (section_hash);",
+            "CREATE INDEX IF NOT EXISTS idx_section_base ON backup_section (base_hash);",
+            "CREATE INDEX IF NOT EXISTS idx_item_ref_item ON backup_item_ref (item_hash);"
+        );
+    }
+
+    @Override
+    protected String blobType() {
+        return "VARBINARY";
+    }
+
+    /**
+     * Explicitly shut the embedded database down so it is closed cleanly with the server.
+     */
+    @Override
+    protected void beforePoolClose(Connection conn) throws SQLException {
+        // Set a short timeout to prevent hanging
+        conn.setNetworkTimeout(null, 2000); // 2 second timeout
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(2); // 2 second query timeout
+            stmt.execute("SHUTDOWN");
+            LOGGER.info("H2 database shutdown command executed successfully.");
+        }
+    }
+}
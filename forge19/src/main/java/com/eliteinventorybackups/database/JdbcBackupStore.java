@@ -0,0 +1,1973 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.EliteInventoryBackups;
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.integration.CuriosIntegration;
+import com.eliteinventorybackups.integration.GenericNbtIntegration;
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.eliteinventorybackups.util.ContentFingerprint;
+import com.eliteinventorybackups.util.InventorySerializer;
+import com.eliteinventorybackups.util.ItemRefs;
+import com.eliteinventorybackups.util.NbtPayloadCodec;
+import com.eliteinventorybackups.util.SectionDelta;
+import com.mojang.logging.LogUtils;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.time.LocalDateTime;
+import java.sql.Timestamp;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.entity.player.Player;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Backup storage on a relational database reached through JDBC. Everything here is plain SQL shared by the
+ * engines; the subclasses supply the connection, the table definitions and whatever else their dialect needs.
+ */
+public abstract class JdbcBackupStore implements BackupStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    protected static final String POOL_NAME = "EIB-Pool";
+    // payload_format values: 0 = legacy SNBT text columns, 1 = binary payload column, 2 = shared section blobs,
+    // 3 = moved to an archive file (archive_file, archive_offset)
+    private static final int PAYLOAD_FORMAT_BINARY = 1;
+    private static final int PAYLOAD_FORMAT_SECTIONS = 2;
+    private static final int PAYLOAD_FORMAT_ARCHIVED = 3;
+    // A player's archive files are rewritten once less than this share of them is still used
+    private static final int ARCHIVE_REWRITE_LIVE_PERCENT = 50;
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+    private final String jdbcUrl;
+    private final HikariDataSource dataSource;
+    private volatile boolean isShuttingDown = false;
+    // True while rows remain in the pre-split player_backups table
+    private volatile boolean legacyRowsPending = false;
+    private LegacyTableMigrator legacyMigrator;
+    // Fingerprint and payload id of each player's latest backup, for duplicate detection and as the delta base
+    private final Map<UUID, LatestContent> latestContents = new ConcurrentHashMap<>();
+    private final LongAdder skippedDuplicates = new LongAdder();
+    private final LongAdder referencedDuplicates = new LongAdder();
+    // Each player's latest backup if it is a death, for death-loop coalescing
+    private final Map<UUID, DeathRun> deathRuns = new ConcurrentHashMap<>();
+    private final LongAdder coalescedDeaths = new LongAdder();
+    // Held for reading while backups link to section blobs, for writing while unused blobs are removed
+    private final ReentrantReadWriteLock sectionLock = new ReentrantReadWriteLock();
+    // Set when backups are deleted, so the section cleanup knows there may be work
+    private volatile boolean sectionsReleased = true;
+    // Fails database access fast while the database is down, instead of every caller waiting out the connection timeout
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(ModConfig.SERVER.circuitBreakerFailureThreshold.get(),
+        ModConfig.SERVER.circuitBreakerProbeSeconds.get(), this::probeDatabase);
+    // Last backup number handed out per player, seeded lazily from the table. Guarded by itself.
+    private final Object2IntOpenHashMap<UUID> backupSequences = new Object2IntOpenHashMap<>();
+    // Payloads of old backups moved out of the database by archiveBackupsOlderThan
+    private final BackupArchive archive = new BackupArchive(Paths.get("config", "eliteinventorybackups", "data", "archive"));
+    // Held for reading while an archived payload is looked up and read, for writing while archive files change
+    private final ReentrantReadWriteLock archiveLock = new ReentrantReadWriteLock();
+    // Players who lost backups since their archive files were last cleaned up
+    private final Set<UUID> archivesReleased = ConcurrentHashMap.newKeySet();
+
+    protected JdbcBackupStore(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+        this.dataSource = createDataSource();
+        initializeDatabase();
+    }
+
+    /**
+     * Driver, credentials and driver-specific properties for the pool. Called from the constructor.
+     */
+    protected abstract void configurePool(HikariConfig config);
+
+    /**
+     * CREATE TABLE statements for backup_meta, backup_payload, backup_section, backup_section_ref, backup_item
+     * and backup_item_ref, in that order.
+     */
+    protected abstract List<String> tableDdl();
+
+    /**
+     * Indexes the dialect can't declare inside CREATE TABLE. Must be safe to run again.
+     */
+    protected List<String> indexDdl() {
+        return List.of();
+    }
+
+    /**
+     * Adds the base_hash index when the delta columns are added to an existing backup_section table, if the
+     * dialect doesn't get it from {@link #indexDdl()}.
+     */
+    @Nullable
+    protected String addSectionBaseIndexSql() {
+        return null;
+    }
+
+    /**
+     * Swaps the summary index for one that also covers the archived column when that column is added to an existing
+     * backup_meta table, if the dialect doesn't get it from {@link #indexDdl()}.
+     */
+    @Nullable
+    protected String replaceSummaryIndexSql() {
+        return null;
+    }
+
+    /**
+     * Column type for binary payloads.
+     */
+    protected abstract String blobType();
+
+    /**
+     * Last chance to talk to the database before the pool is closed.
+     */
+    protected void beforePoolClose(Connection conn) throws SQLException {
+    }
+
+    /**
+     * Builds the connection pool shared by all database operations.
+     */
+    private HikariDataSource createDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(POOL_NAME);
+        config.setJdbcUrl(jdbcUrl);
+        configurePool(config);
+
+        int maxSize = ModConfig.SERVER.poolMaxSize.get();
+        config.setMaximumPoolSize(maxSize);
+        config.setMinimumIdle(Math.min(ModConfig.SERVER.poolMinIdle.get(), maxSize));
+        config.setIdleTimeout(TimeUnit.SECONDS.toMillis(ModConfig.SERVER.poolIdleTimeoutSeconds.get()));
+        config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(ModConfig.SERVER.poolConnectionTimeoutSeconds.get()));
+        config.setLeakDetectionThreshold(TimeUnit.SECONDS.toMillis(ModConfig.SERVER.poolLeakDetectionSeconds.get()));
+
+        String validationQuery = ModConfig.SERVER.poolValidationQuery.get();
+        if (validationQuery != null && !validationQuery.isBlank()) {
+            config.setConnectionTestQuery(validationQuery);
+        }
+
+        // Don't fail server startup if the database is unreachable; connections are retried on demand
+        config.setInitializationFailTimeout(-1);
+
+        LOGGER.info("Creating connection pool '{}' (min idle {}, max size {})", POOL_NAME, config.getMinimumIdle(), maxSize);
+        return new HikariDataSource(config);
+    }
+
+    Connection getConnection() throws SQLException {
+        circuitBreaker.check();
+        try {
+            Connection conn = dataSource.getConnection();
+            circuitBreaker.recordSuccess();
+            return conn;
+        } catch (SQLException e) {
+            // Waiting out a busy pool says nothing about the database itself
+            if (CircuitBreaker.isConnectionFailure(e)) {
+                circuitBreaker.recordFailure();
+            }
+            // Check for the specific timezone error and provide a user-friendly message.
+            Throwable cause = e.getCause();
+            while (cause != null) {
+                if (cause instanceof java.time.zone.ZoneRulesException) {
+                    LOGGER.error("############################################################");
+                    LOGGER.error("###           INVALID DATABASE TIMEZONE                  ###");
+                    LOGGER.error("############################################################");
+                    LOGGER.error("The 'mysqlExtraParams' in your config has an invalid timezone ID.");
+                    LOGGER.error("You have: '{}'", ModConfig.SERVER.mysqlExtraParams.get());
+                    LOGGER.error("Replace the timezone (e.g., 'PST') with a valid IANA ID like 'America/Los_Angeles', 'Europe/London', or simply 'UTC'.");
+                    LOGGER.error("The mod cannot connect to the database until this is fixed.");
+                    LOGGER.error("############################################################");
+                    break; // Exit the loop once the specific cause is found.
+                }
+                cause = cause.getCause();
+            }
+            // Re-throw the original exception to let the calling method handle it.
+            throw e;
+        }
+    }
+
+    private boolean probeDatabase() {
+        try (Connection conn = dataSource.getConnection()) {
+            return conn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * False while the circuit breaker is open, i.e. the database was unreachable and has not come back yet.
+     */
+    @Override
+    public boolean isAvailable() {
+        return !circuitBreaker.isOpen();
+    }
+
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private void initializeDatabase() {
+        // backup_meta holds only the small per-backup columns so listing and tab-completion stay cheap.
+        // The serialized inventories live in backup_payload, keyed by backup_meta.id. Newer backups store
+        // each section once in backup_section, keyed by content hash, and link to it via backup_section_ref.
+        // Items in those sections are references into backup_item, shared by all players.
+        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
+            for (String ddl : tableDdl()) {
+                stmt.execute(ddl);
+            }
+
+            // Content fingerprint and shared-payload columns (added with duplicate snapshot detection)
+            try {
+                stmt.execute("ALTER TABLE backup_meta ADD COLUMN content_hash VARCHAR(32)");
+                stmt.execute("ALTER TABLE backup_meta ADD COLUMN payload_id INT");
+                LOGGER.info("Added content_hash and payload_id columns to backup_meta.");
+            } catch (SQLException e) {
+                LOGGER.debug("content_hash/payload_id columns already exist: {}", e.getMessage());
+            }
+
+            // Death-loop coalescing counter
+            try {
+                stmt.execute("ALTER TABLE backup_meta ADD COLUMN death_count INT NOT NULL DEFAULT 1");
+                LOGGER.info("Added death_count column to backup_meta.");
+            } catch (SQLException e) {
+                LOGGER.debug("death_count column already exists: {}", e.getMessage());
+            }
+            // Timestamp of the last death folded into a backup, so a replayed death can tell it was already counted
+            try {
+                stmt.execute("ALTER TABLE backup_meta ADD COLUMN last_death BIGINT");
+                LOGGER.info("Added last_death column to backup_meta.");
+            } catch (SQLException e) {
+                LOGGER.debug("last_death column already exists: {}", e.getMessage());
+            }
+
+            // Delta chain columns (added with delta-encoded sections)
+            try {
+                stmt.execute("ALTER TABLE backup_section ADD COLUMN base_hash VARCHAR(32)");
+                stmt.execute("ALTER TABLE backup_section ADD COLUMN chain_depth INT NOT NULL DEFAULT 0");
+                String baseIndexSql = addSectionBaseIndexSql();
+                if (baseIndexSql != null) {
+                    stmt.execute(baseIndexSql);
+                }
+                LOGGER.info("Added base_hash and chain_depth columns to backup_section.");
+            } catch (SQLException e) {
+                LOGGER.debug("base_hash/chain_depth columns already exist: {}", e.getMessage());
+            }
+
+            // Tiering columns (added with backup archiving)
+            try {
+                stmt.execute("ALTER TABLE backup_meta ADD COLUMN archived BOOLEAN NOT NULL DEFAULT FALSE");
+                String summaryIndexSql = replaceSummaryIndexSql();
+                if (summaryIndexSql != null) {
+                    stmt.execute(summaryIndexSql);
+                }
+                LOGGER.info("Added archived column to backup_meta.");
+            } catch (SQLException e) {
+                LOGGER.debug("archived column already exists: {}", e.getMessage());
+            }
+            try {
+                stmt.execute("ALTER TABLE backup_payload ADD COLUMN archive_file VARCHAR(64)");
+                stmt.execute("ALTER TABLE backup_payload ADD COLUMN archive_offset BIGINT");
+                LOGGER.info("Added archive_file and archive_offset columns to backup_payload.");
+            } catch (SQLException e) {
+                LOGGER.debug("archive_file/archive_offset columns already exist: {}", e.getMessage());
+            }
+
+            try {
+                for (String ddl : indexDdl()) {
+                    stmt.execute(ddl);
+                }
+            } catch (SQLException e) {
+                LOGGER.debug("Index creation failed (may already exist): {}", e.getMessage());
+            }
+
+            LOGGER.info("Database tables 'backup_meta', 'backup_payload', 'backup_section' and 'backup_item' initialized successfully.");
+        } catch (SQLException e) {
+            LOGGER.error("Could not initialize database tables. Full error: ", e);
+        }
+
+        prepareLegacyTable();
+    }
+
+    /**
+     * Older versions kept every backup in a single wide player_backups table. If that table still has rows,
+     * bring its columns up to date and start moving them into the new tables in the background.
+     * Until that finishes, reads and deletes also look at the legacy table.
+     */
+    private void prepareLegacyTable() {
+        long legacyRows;
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM player_backups")) {
+            legacyRows = rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            LOGGER.debug("No legacy player_backups table found: {}", e.getMessage());
+            return;
+        }
+        if (legacyRows == 0) {
+            return;
+        }
+
+        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
+            // Handle migration for existing installations - add backup_number column if it doesn't exist
+            try {
+                stmt.execute("ALTER TABLE player_backups ADD COLUMN backup_number INT NOT NULL DEFAULT 0");
+                LOGGER.info("Added backup_number column to existing player_backups table.");
+            } catch (SQLException e) {
+                // Column probably already exists, this is fine
+                LOGGER.debug("backup_number column already exists or migration not needed: {}", e.getMessage());
+            }
+
+            // Binary payload columns (added in the compressed storage format)
+            try {
+                stmt.execute("ALTER TABLE player_backups ADD COLUMN payload_format INT NOT NULL DEFAULT 0");
+                stmt.execute("ALTER TABLE player_backups ADD COLUMN payload " + blobType());
+                LOGGER.info("Added binary payload columns to existing player_backups table.");
+            } catch (SQLException e) {
+                LOGGER.debug("payload columns already exist or migration not needed: {}", e.getMessage());
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not update legacy player_backups table. Full error: ", e);
+            return;
+        }
+
+        // Migrate existing data - set backup_number for records that have 0
+        migrateExistingBackupNumbers();
+
+        LOGGER.info("Found {} backup(s) in the legacy player_backups table, moving them to the new tables in the background.", legacyRows);
+        legacyRowsPending = true;
+        legacyMigrator = new LegacyTableMigrator(this);
+    }
+
+    /**
+     * Called by the {@link LegacyTableMigrator} once every legacy row has been moved.
+     */
+    void onLegacyMigrationFinished() {
+        legacyRowsPending = false;
+        // Sequences may have been seeded from the legacy table; that is still correct, nothing to reset
+        LOGGER.info("Legacy player_backups table fully migrated.");
+    }
+
+    /**
+     * True until the legacy player_backups table has been moved to the current tables.
+     */
+    boolean isLegacyMigrationPending() {
+        return legacyRowsPending;
+    }
+
+    /**
+     * Source of (player_uuid, backup_number) pairs across every table that can still hold backups.
+     */
+    private String backupNumbersSource() {
+        return legacyRowsPending
+            ? "(SELECT player_uuid, backup_number FROM backup_meta UNION ALL SELECT player_uuid, backup_number FROM player_backups) all_backups"
+            : "backup_meta";
+    }
+
+    /**
+     * Like {@link #backupNumbersSource()}, with the columns needed for a {@link BackupSummary}.
+     */
+    private String summarySource() {
+        return legacyRowsPending
+            ? "(SELECT player_uuid, backup_number, timestamp, event_type, world, death_count, archived FROM backup_meta"
+                + " UNION ALL SELECT player_uuid, backup_number, timestamp, event_type, world, 1 AS death_count, FALSE AS archived FROM player_backups) all_backups"
+            : "backup_meta";
+    }
+
+    /**
+     * Saves several backup entries in one transaction (group commit), so the whole batch costs a single commit.
+     * An entry that fails is rolled back on its own; if the commit itself fails, none of the batch is saved.
+     * @return For each entry, in order, the same result {@link #saveBackup} would give
+     */
+    @Override
+    public int[] saveBackups(List<BackupEntry> entries) {
+        int[] results = new int[entries.size()];
+        Arrays.fill(results, -1);
+        if (isShuttingDown) {
+            LOGGER.warn("Database is shutting down, skipping {} backup save(s)", entries.size());
+            return results;
+        }
+
+        // Fingerprinting needs no connection, so it happens before one is taken from the pool
+        CompoundTag[] payloadTags = new CompoundTag[entries.size()];
+        ContentFingerprint[] fingerprints = new ContentFingerprint[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            BackupEntry entry = entries.get(i);
+            try {
+                payloadTags[i] = toPayloadTag(entry);
+                fingerprints[i] = ContentFingerprint.of(payloadTags[i]);
+            } catch (IOException e) {
+                LOGGER.error("Could not fingerprint backup for player {}. Full error: ", entry.playerName(), e);
+            }
+        }
+
+        // Keeps the section cleanup from removing a blob between checking for it and committing the link
+        sectionLock.readLock().lock();
+        // The numbers are assigned and inserted in one transaction; the pool restores auto-commit on close
+        PendingBatch batch = new PendingBatch();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < entries.size(); i++) {
+                if (fingerprints[i] != null) {
+                    results[i] = insertBackup(conn, batch, entries.get(i), payloadTags[i], fingerprints[i]);
+                }
+            }
+            conn.commit();
+            batch.publish();
+        } catch (SQLException e) {
+            if (e instanceof CircuitBreaker.OpenException) {
+                LOGGER.debug("Database unavailable, {} backup(s) not saved", entries.size());
+            } else {
+                LOGGER.error("Could not save {} backup(s). Full error: ", entries.size(), e);
+            }
+            // The batch was rolled back; nothing it learned was published, but the numbers it took are gone
+            for (BackupEntry entry : entries) {
+                resetBackupSequence(entry.playerUuid());
+            }
+            Arrays.fill(results, -1);
+            return results;
+        } finally {
+            sectionLock.readLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * Inserts one backup within the caller's transaction. A failure is rolled back to a savepoint so the rest
+     * of the batch is unaffected.
+     */
+    private int insertBackup(Connection conn, PendingBatch batch, BackupEntry entry, CompoundTag payloadTag, ContentFingerprint fingerprint) throws SQLException {
+        String contentHash = fingerprint.combined();
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+            if ("death".equals(entry.eventType())) {
+                int coalescedInto = coalesceDeath(conn, batch, entry, fingerprint);
+                if (coalescedInto > 0) {
+                    return coalescedInto;
+                }
+            }
+
+            // Nothing changed since the last backup: skip it or point at the existing payload
+            Integer sharedPayloadId = null;
+            LatestContent latest = batch.latestContents.get(entry.playerUuid());
+            if (latest == null) {
+                latest = latestContent(conn, entry.playerUuid());
+            }
+            if (latest != null && contentHash.equals(latest.contentHash())) {
+                ModConfig.DuplicateSnapshotPolicy policy = duplicatePolicyFor(entry.eventType());
+                if (policy == ModConfig.DuplicateSnapshotPolicy.SKIP) {
+                    skippedDuplicates.increment();
+                    LOGGER.debug("Skipping {} backup for player {}, nothing changed since the last backup", entry.eventType(), entry.playerName());
+                    return 0;
+                }
+                if (policy == ModConfig.DuplicateSnapshotPolicy.REFERENCE) {
+                    sharedPayloadId = latest.payloadId();
+                }
+            }
+
+            for (int attempt = 1; ; attempt++) {
+                int backupNumber = nextBackupNumber(conn, entry.playerUuid());
+
+                try {
+                    int backupId = insertBackupRow(conn, entry, backupNumber, payloadTag, fingerprint, sharedPayloadId, latest);
+                    batch.latestContents.put(entry.playerUuid(), new LatestContent(contentHash, sharedPayloadId != null ? sharedPayloadId : backupId, fingerprint, payloadTag));
+                    batch.deathRuns.put(entry.playerUuid(), "death".equals(entry.eventType())
+                        ? new DeathRun(backupId, backupNumber, fingerprint, entry.timestamp(), 1) : null);
+                } catch (SQLException e) {
+                    if (!isDuplicateKey(e) || attempt >= MAX_INSERT_ATTEMPTS) {
+                        throw e;
+                    }
+                    conn.rollback(savepoint);
+                    // Someone else (another server, a manual edit) took this number; reseed and try again
+                    LOGGER.debug("Backup #{} already exists for player {}, reseeding sequence (attempt {})", backupNumber, entry.playerName(), attempt);
+                    resetBackupSequence(entry.playerUuid());
+                    savepoint = conn.setSavepoint();
+                    continue;
+                }
+
+                if (sharedPayloadId != null) {
+                    referencedDuplicates.increment();
+                }
+                LOGGER.debug("Saved backup #{} for player {} ({}) at {}{}", backupNumber, entry.playerName(), entry.playerUuid(), entry.timestamp(),
+                    sharedPayloadId != null ? " (unchanged, sharing payload " + sharedPayloadId + ")" : "");
+                return backupNumber;
+            }
+        } catch (SQLException e) {
+            conn.rollback(savepoint);
+            // The number handed out for this backup was never used; reseed so it doesn't leave a hole
+            resetBackupSequence(entry.playerUuid());
+            LOGGER.error("Could not save backup for player {}. Full error: ", entry.playerName(), e);
+            return -1;
+        }
+    }
+
+    /**
+     * Folds a death into the player's previous backup when that is a recent death with the same inventories,
+     * by bumping its death_count instead of inserting a new backup. Does not commit.
+     * @return The backup number the death was folded into, or 0 if it needs a backup of its own
+     */
+    private int coalesceDeath(Connection conn, PendingBatch batch, BackupEntry entry, ContentFingerprint fingerprint) throws SQLException {
+        long windowMillis = ModConfig.SERVER.deathCoalesceWindowSeconds.get() * 1000L;
+        DeathRun run = batch.deathRuns.containsKey(entry.playerUuid()) ? batch.deathRuns.get(entry.playerUuid()) : deathRuns.get(entry.playerUuid());
+        if (windowMillis == 0 || run == null
+            || entry.timestamp() - run.lastDeath() > windowMillis
+            || run.deaths() >= ModConfig.SERVER.deathCoalesceMaxDeaths.get()
+            || !fingerprint.sameInventories(run.fingerprint())) {
+            return 0;
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE backup_meta SET death_count = death_count + 1, last_death = ? WHERE id = ?")) {
+            pstmt.setLong(1, entry.timestamp());
+            pstmt.setInt(2, run.backupId());
+            if (pstmt.executeUpdate() == 0) {
+                batch.deathRuns.put(entry.playerUuid(), null); // Deleted in the meantime
+                return 0;
+            }
+        }
+
+        batch.deathRuns.put(entry.playerUuid(), new DeathRun(run.backupId(), run.backupNumber(), run.fingerprint(), entry.timestamp(), run.deaths() + 1));
+        coalescedDeaths.increment();
+        LOGGER.debug("Folded death of player {} into death backup #{} ({} deaths)", entry.playerName(), run.backupNumber(), run.deaths() + 1);
+        return run.backupNumber();
+    }
+
+    /**
+     * Inserts the metadata and payload rows of a backup on the given connection without committing.
+     * Callers must hold the read lock of {@link #sectionLock()} until the transaction ends.
+     * @param payloadTag The sections to store, as built by {@link #toPayloadTag}
+     * @param fingerprint The fingerprint of payloadTag
+     * @param sharedPayloadId Id of an existing payload to reference instead of storing one, or null
+     * @return The generated backup id
+     */
+    int insertBackupRow(Connection conn, BackupEntry entry, int backupNumber, CompoundTag payloadTag,
+                        ContentFingerprint fingerprint, @Nullable Integer sharedPayloadId) throws SQLException {
+        return insertBackupRow(conn, entry, backupNumber, payloadTag, fingerprint, sharedPayloadId, null);
+    }
+
+    /**
+     * @param previous The player's previous backup; changed sections are stored as deltas against it when possible.
+     *                 Must be committed, or written earlier in this transaction, so a delta never outlives its base
+     */
+    private int insertBackupRow(Connection conn, BackupEntry entry, int backupNumber, CompoundTag payloadTag,
+                                ContentFingerprint fingerprint, @Nullable Integer sharedPayloadId,
+                                @Nullable LatestContent previous) throws SQLException {
+        String insertMetaSql = """
+        INSERT INTO backup_meta (
+            player_uuid, player_name, backup_number, timestamp, event_type, world, 
+            pos_x, pos_y, pos_z, experience_level, experience_progress, cause_of_death,
+            content_hash, payload_id
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+        """;
+        // The sections themselves live in backup_section; the payload row only records the format
+        String insertPayloadSql = "INSERT INTO backup_payload (backup_id, payload_format, payload) VALUES (?, ?, NULL)";
+
+        int backupId;
+        try (PreparedStatement pstmt = conn.prepareStatement(insertMetaSql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, entry.playerUuid().toString());
+            pstmt.setString(2, entry.playerName());
+            pstmt.setInt(3, backupNumber);
+            pstmt.setLong(4, entry.timestamp());
+            pstmt.setString(5, entry.eventType());
+            pstmt.setString(6, entry.world());
+            pstmt.setDouble(7, entry.posX());
+            pstmt.setDouble(8, entry.posY());
+            pstmt.setDouble(9, entry.posZ());
+            pstmt.setInt(10, entry.experienceLevel());
+            pstmt.setFloat(11, entry.experienceProgress());
+            pstmt.setString(12, entry.causeOfDeath());
+            pstmt.setString(13, fingerprint.combined());
+            if (sharedPayloadId != null) {
+                pstmt.setInt(14, sharedPayloadId);
+            } else {
+                pstmt.setNull(14, Types.INTEGER);
+            }
+            pstmt.executeUpdate();
+
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No id was generated for backup #" + backupNumber);
+                }
+                backupId = keys.getInt(1);
+            }
+        }
+
+        if (sharedPayloadId == null) {
+            try (PreparedStatement pstmt = conn.prepareStatement(insertPayloadSql)) {
+                pstmt.setInt(1, backupId);
+                pstmt.setInt(2, PAYLOAD_FORMAT_SECTIONS);
+                pstmt.executeUpdate();
+            }
+            writeSections(conn, backupId, payloadTag, fingerprint, previous);
+        }
+        return backupId;
+    }
+
+    /**
+     * Stores the section blobs that don't exist yet and links every section of the payload to the backup.
+     */
+    private void writeSections(Connection conn, int backupId, CompoundTag payloadTag, ContentFingerprint fingerprint,
+                               @Nullable LatestContent previous) throws SQLException {
+        Map<String, String> sectionHashes = new LinkedHashMap<>();
+        for (String key : ContentFingerprint.SECTION_KEYS) {
+            if (payloadTag.contains(key)) {
+                sectionHashes.put(key, fingerprint.section(key));
+            }
+        }
+        // The previous backup's version of each section is the delta base, if we still have it in memory.
+        // It is only used if the lookup below finds it stored, which this transaction can only see once it is committed
+        // (or written by itself); anything else gets a keyframe
+        Map<String, String> baseHashes = new HashMap<>();
+        if (previous != null && previous.fingerprint() != null && previous.payload() != null) {
+            for (String key : sectionHashes.keySet()) {
+                String baseHash = previous.fingerprint().section(key);
+                if (baseHash != null && previous.payload().contains(key)) {
+                    baseHashes.put(key, baseHash);
+                }
+            }
+        }
+
+        // One round-trip to find out which blobs are already stored (usually all but the main inventory)
+        // and how long the chains behind the delta bases are
+        Set<String> lookup = new HashSet<>(sectionHashes.values());
+        lookup.addAll(baseHashes.values());
+        Set<String> missing = new HashSet<>(sectionHashes.values());
+        Map<String, Integer> chainDepths = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(lookup.size(), "?"));
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT section_hash, chain_depth FROM backup_section WHERE section_hash IN (" + placeholders + ")")) {
+            int index = 1;
+            for (String hash : lookup) {
+                pstmt.setString(index++, hash);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    missing.remove(rs.getString(1));
+                    chainDepths.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+
+        // Swap the items of the new sections for references into the shared item store
+        Map<String, CompoundTag> internedSections = new LinkedHashMap<>();
+        Map<String, CompoundTag> items = new HashMap<>();
+        try {
+            for (Map.Entry<String, String> section : sectionHashes.entrySet()) {
+                // Sections already stored, or equal to another section of this backup (e.g. two empty inventories), are skipped
+                if (missing.remove(section.getValue())) {
+                    internedSections.put(section.getKey(), ItemRefs.intern(payloadTag.getCompound(section.getKey()), items));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not hash the items of backup ID " + backupId, e);
+        }
+        storeItems(conn, items);
+
+        int keyframeInterval = ModConfig.SERVER.deltaKeyframeInterval.get();
+        String insertSql = "INSERT INTO backup_section (section_hash, payload, base_hash, chain_depth) VALUES (?, ?, ?, ?)";
+        String insertItemRefSql = "INSERT INTO backup_item_ref (section_hash, item_hash) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSql);
+             PreparedStatement itemRefStmt = conn.prepareStatement(insertItemRefSql)) {
+            for (Map.Entry<String, CompoundTag> section : internedSections.entrySet()) {
+                String sectionHash = sectionHashes.get(section.getKey());
+                CompoundTag stored = section.getValue();
+                String baseHash = baseHashes.get(section.getKey());
+                Integer baseDepth = baseHash != null ? chainDepths.get(baseHash) : null;
+                int depth = 0;
+                try {
+                    // Store a delta unless the chain is due for a keyframe or the base is gone or not committed yet
+                    if (baseDepth != null && baseDepth + 1 < keyframeInterval) {
+                        CompoundTag base = ItemRefs.intern(previous.payload().getCompound(section.getKey()), new HashMap<>());
+                        CompoundTag delta = SectionDelta.diff(base, section.getValue());
+                        if (delta != null) {
+                            stored = delta;
+                            depth = baseDepth + 1;
+                        }
+                    }
+                    pstmt.setString(1, sectionHash);
+                    pstmt.setBytes(2, NbtPayloadCodec.encode(stored));
+                    pstmt.setString(3, depth > 0 ? baseHash : null);
+                    pstmt.setInt(4, depth);
+                    pstmt.executeUpdate();
+                } catch (IOException e) {
+                    throw new SQLException("Could not encode " + section.getKey() + " section of backup ID " + backupId, e);
+                } catch (SQLException e) {
+                    // Another writer stored the same section meanwhile; theirs has the same content and item links
+                    if (!isDuplicateKey(e)) {
+                        throw e;
+                    }
+                    continue;
+                }
+
+                // Every section links all items of its full content, so chains and rebasing never lose an item
+                Set<String> itemHashes = ItemRefs.refs(section.getValue());
+                for (String itemHash : itemHashes) {
+                    itemRefStmt.setString(1, sectionHash);
+                    itemRefStmt.setString(2, itemHash);
+                    itemRefStmt.addBatch();
+                }
+                if (!itemHashes.isEmpty()) {
+                    itemRefStmt.executeBatch();
+                }
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO backup_section_ref (backup_id, section_name, section_hash) VALUES (?, ?, ?)")) {
+            for (Map.Entry<String, String> section : sectionHashes.entrySet()) {
+                pstmt.setInt(1, backupId);
+                pstmt.setString(2, section.getKey());
+                pstmt.setString(3, section.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Stores the items that are not in the shared item store yet.
+     */
+    private void storeItems(Connection conn, Map<String, CompoundTag> items) throws SQLException {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        Set<String> missing = new HashSet<>(items.keySet());
+        String placeholders = String.join(", ", Collections.nCopies(missing.size(), "?"));
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT item_hash FROM backup_item WHERE item_hash IN (" + placeholders + ")")) {
+            int index = 1;
+            for (String hash : items.keySet()) {
+                pstmt.setString(index++, hash);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    missing.remove(rs.getString(1));
+                }
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO backup_item (item_hash, item) VALUES (?, ?)")) {
+            for (String hash : missing) {
+                try {
+                    pstmt.setString(1, hash);
+                    pstmt.setBytes(2, NbtPayloadCodec.encode(items.get(hash)));
+                    pstmt.executeUpdate();
+                } catch (IOException e) {
+                    throw new SQLException("Could not encode stored item " + hash, e);
+                } catch (SQLException e) {
+                    // Another writer stored the same item meanwhile
+                    if (!isDuplicateKey(e)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lock guarding the section blobs and stored items, for callers of {@link #insertBackupRow}.
+     */
+    ReentrantReadWriteLock sectionLock() {
+        return sectionLock;
+    }
+
+    /**
+     * Gets the fingerprint and payload of a player's most recent backup, loading it from the table on first use.
+     * @return The latest content, or null if the player has no fingerprinted backup
+     */
+    @Nullable
+    private LatestContent latestContent(Connection conn, UUID playerUuid) throws SQLException {
+        LatestContent latest = latestContents.get(playerUuid);
+        if (latest != null) {
+            return latest.contentHash() != null ? latest : null;
+        }
+
+        String sql = "SELECT content_hash, COALESCE(payload_id, id), archived FROM backup_meta WHERE player_uuid = ? ORDER BY backup_number DESC LIMIT 1";
+        latest = new LatestContent(null, 0, null, null); // Remembered so players without backups aren't looked up again
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // An archived payload is too slow to share with a new backup, so it is treated like no backup
+                if (rs.next() && !rs.getBoolean(3)) {
+                    latest = new LatestContent(rs.getString(1), rs.getInt(2), null, null);
+                }
+            }
+        }
+        latestContents.putIfAbsent(playerUuid, latest);
+        return latest.contentHash() != null ? latest : null;
+    }
+
+    private static ModConfig.DuplicateSnapshotPolicy duplicatePolicyFor(String eventType) {
+        ModConfig.DuplicateSnapshotPolicy policy = ModConfig.SERVER.duplicateSnapshotPolicy.get();
+        // Deaths and manual backups should always show up in the list
+        if (policy == ModConfig.DuplicateSnapshotPolicy.SKIP && ("death".equals(eventType) || "manual".equals(eventType))) {
+            return ModConfig.DuplicateSnapshotPolicy.REFERENCE;
+        }
+        return policy;
+    }
+
+    /**
+     * Hands out the next sequential backup number for a player from the in-memory sequence.
+     * The first call for a player seeds the sequence from the table using the caller's transaction.
+     * @param conn The connection the insert will run on
+     * @param playerUuid The player's UUID
+     * @return The next backup number (1-based)
+     */
+    private int nextBackupNumber(Connection conn, UUID playerUuid) throws SQLException {
+        synchronized (backupSequences) {
+            if (backupSequences.containsKey(playerUuid)) {
+                return backupSequences.addTo(playerUuid, 1) + 1;
+            }
+        }
+
+        int highest = 0;
+        String sql = "SELECT COALESCE(MAX(backup_number), 0) FROM " + backupNumbersSource() + " WHERE player_uuid = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            try (var rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    highest = rs.getInt(1);
+                }
+            }
+        }
+
+        synchronized (backupSequences) {
+            // Another writer may have seeded this player while we were querying
+            int next = Math.max(backupSequences.getInt(playerUuid), highest) + 1;
+            backupSequences.put(playerUuid, next);
+            return next;
+        }
+    }
+
+    /**
+     * Forgets the cached sequence for a player so the next save reseeds it from the table.
+     */
+    private void resetBackupSequence(UUID playerUuid) {
+        synchronized (backupSequences) {
+            backupSequences.removeInt(playerUuid);
+        }
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        // H2 reports the standard 23505 state, MySQL uses 23000 with error code 1062
+        return "23505".equals(e.getSQLState()) || e.getErrorCode() == 1062;
+    }
+
+    /**
+     * Migrates existing backup data to assign sequential backup numbers.
+     */
+    private void migrateExistingBackupNumbers() {
+        String selectSql = "SELECT player_uuid FROM player_backups WHERE backup_number = 0 GROUP BY player_uuid";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
+            
+            try (var rs = selectStmt.executeQuery()) {
+                while (rs.next()) {
+                    String playerUuid = rs.getString("player_uuid");
+                    migrateSinglePlayerBackupNumbers(playerUuid);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not migrate existing backup numbers. Full error: ", e);
+        }
+    }
+
+    /**
+     * Migrates backup numbers for a single player.
+     */
+    private void migrateSinglePlayerBackupNumbers(String playerUuid) {
+        String selectPlayerBackupsSql = "SELECT id FROM player_backups WHERE player_uuid = ? AND backup_number = 0 ORDER BY timestamp ASC";
+        String updateSql = "UPDATE player_backups SET backup_number = ? WHERE id = ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement selectStmt = conn.prepareStatement(selectPlayerBackupsSql);
+             PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+            
+            selectStmt.setString(1, playerUuid);
+            try (var rs = selectStmt.executeQuery()) {
+                int backupNumber = 1;
+                while (rs.next()) {
+                    int backupId = rs.getInt("id");
+                    updateStmt.setInt(1, backupNumber);
+                    updateStmt.setInt(2, backupId);
+                    updateStmt.executeUpdate();
+                    backupNumber++;
+                }
+            }
+            
+            LOGGER.info("Migrated backup numbers for player {}", playerUuid);
+        } catch (SQLException e) {
+            LOGGER.error("Could not migrate backup numbers for player {}. Full error: ", playerUuid, e);
+        }
+    }
+    
+    @Override
+    @Nullable
+    public List<BackupSummary> getBackupSummaries(UUID playerUuid) {
+        // Served entirely from the covering index on backup_meta
+        String metaSql = "SELECT backup_number, timestamp, event_type, world, death_count, archived FROM backup_meta WHERE player_uuid = ? ORDER BY backup_number DESC";
+        String legacySql = "SELECT backup_number, timestamp, event_type, world, 1 AS death_count, FALSE AS archived FROM player_backups WHERE player_uuid = ?";
+
+        try (Connection conn = getConnection()) {
+            if (!legacyRowsPending) {
+                List<BackupSummary> summaries = new ArrayList<>();
+                querySummaries(conn, metaSql, playerUuid, summaries);
+                return summaries;
+            }
+
+            // While migrating, read the legacy table first: a row moved in between then shows up in backup_meta
+            Map<Integer, BackupSummary> byNumber = new TreeMap<>(Comparator.reverseOrder());
+            List<BackupSummary> found = new ArrayList<>();
+            querySummaries(conn, legacySql, playerUuid, found);
+            querySummaries(conn, metaSql, playerUuid, found);
+            for (BackupSummary summary : found) {
+                byNumber.put(summary.id(), summary); // id holds the backup number
+            }
+            return new ArrayList<>(byNumber.values());
+        } catch (SQLException e) {
+            LOGGER.error("Could not retrieve backup summaries for player UUID {}: {}", playerUuid, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void querySummaries(Connection conn, String sql, UUID playerUuid, List<BackupSummary> summaries) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            readSummaries(pstmt, summaries);
+        }
+    }
+
+    private static void readSummaries(PreparedStatement pstmt, List<BackupSummary> summaries) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                summaries.add(new BackupSummary(
+                    rs.getInt("backup_number"),
+                    rs.getLong("timestamp"),
+                    rs.getString("event_type"),
+                    rs.getString("world"),
+                    rs.getInt("death_count"),
+                    rs.getBoolean("archived")
+                ));
+            }
+        }
+    }
+
+    /**
+     * Whether a backup with exactly this player, timestamp and event type exists. Used to skip journal records
+     * that were saved before a crash.
+     */
+    @Override
+    public boolean hasBackup(UUID playerUuid, long timestamp, String eventType) {
+        // A death folded into an earlier backup has no row of its own, but falls inside that backup's run of deaths
+        String sql = "SELECT 1 FROM backup_meta WHERE player_uuid = ? AND event_type = ?"
+            + " AND (timestamp = ? OR (timestamp < ? AND last_death >= ?)) LIMIT 1";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, eventType);
+            pstmt.setLong(3, timestamp);
+            pstmt.setLong(4, timestamp);
+            pstmt.setLong(5, timestamp);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not look up backup for player UUID {}: {}", playerUuid, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Counts a player's backups using only the metadata index.
+     */
+    @Override
+    public int countBackups(UUID playerUuid) {
+        String countSql = "SELECT COUNT(*) FROM " + backupNumbersSource() + " WHERE player_uuid = ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(countSql)) {
+
+            pstmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not count backups for player UUID {}: {}", playerUuid, e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Gets up to {@code limit} summaries numbered below {@code backupNumber}, newest first.
+     * Keyset pagination: the cost does not grow with how far back the page is.
+     */
+    @Override
+    public List<BackupSummary> getBackupsOlderThan(UUID playerUuid, int backupNumber, int limit) {
+        String querySql = "SELECT backup_number, timestamp, event_type, world, death_count, archived FROM " + summarySource()
+            + " WHERE player_uuid = ? AND backup_number < ? ORDER BY backup_number DESC LIMIT ?";
+        return queryPage(querySql, playerUuid, backupNumber, limit, false);
+    }
+
+    /**
+     * Gets up to {@code limit} summaries numbered just above {@code backupNumber}, newest first.
+     */
+    @Override
+    public List<BackupSummary> getBackupsNewerThan(UUID playerUuid, int backupNumber, int limit) {
+        String querySql = "SELECT backup_number, timestamp, event_type, world, death_count, archived FROM " + summarySource()
+            + " WHERE player_uuid = ? AND backup_number > ? ORDER BY backup_number ASC LIMIT ?";
+        return queryPage(querySql, playerUuid, backupNumber, limit, true);
+    }
+
+    /**
+     * Gets a page of summaries by position, newest first. Used when jumping straight to a page number;
+     * prefer {@link #getBackupsOlderThan} / {@link #getBackupsNewerThan} when paging from a known backup.
+     */
+    @Override
+    public List<BackupSummary> getBackupSummaryPage(UUID playerUuid, int offset, int limit) {
+        String querySql = "SELECT backup_number, timestamp, event_type, world, death_count, archived FROM " + summarySource()
+            + " WHERE player_uuid = ? ORDER BY backup_number DESC LIMIT ? OFFSET ?";
+        List<BackupSummary> summaries = new ArrayList<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
+
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setInt(2, limit);
+            pstmt.setInt(3, offset);
+            readSummaries(pstmt, summaries);
+        } catch (SQLException e) {
+            LOGGER.error("Could not retrieve backup page for player UUID {}: {}", playerUuid, e.getMessage(), e);
+        }
+        return summaries;
+    }
+
+    private List<BackupSummary> queryPage(String sql, UUID playerUuid, int backupNumber, int limit, boolean reverse) {
+        List<BackupSummary> summaries = new ArrayList<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setInt(2, backupNumber);
+            pstmt.setInt(3, limit);
+            readSummaries(pstmt, summaries);
+        } catch (SQLException e) {
+            LOGGER.error("Could not retrieve backup page for player UUID {}: {}", playerUuid, e.getMessage(), e);
+        }
+        if (reverse) {
+            Collections.reverse(summaries);
+        }
+        return summaries;
+    }
+
+    @Override
+    @Nullable
+    public BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber) {
+        String querySql = """
+        SELECT m.*, p.backup_id AS payload_owner, p.payload_format, p.payload FROM backup_meta m
+        JOIN backup_payload p ON p.backup_id = COALESCE(m.payload_id, m.id)
+        WHERE m.player_uuid = ? AND m.backup_number = ?
+        """;
+        String legacySql = "SELECT * FROM player_backups WHERE player_uuid = ? AND backup_number = ?";
+        BackupEntry entry = null;
+
+        try (Connection conn = getConnection()) {
+            // Legacy table first, for the same reason as in getBackupSummaries
+            for (String sql : legacyRowsPending ? List.of(legacySql, querySql) : List.of(querySql)) {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, playerUuid.toString());
+                    pstmt.setInt(2, backupNumber);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            entry = readEntry(conn, rs);
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not retrieve backup #{} for player {}: {}", backupNumber, playerUuid, e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Could not parse UUID for backup #{} for player {}: {}", backupNumber, playerUuid, e.getMessage(), e);
+        }
+        return entry;
+    }
+
+    @Override
+    @Nullable
+    public List<NumberedBackup> readBackupsAfter(@Nullable BackupPosition after, int limit) {
+        // The leading >= lets the (player_uuid, backup_number) index serve this as a range scan
+        String querySql = """
+        SELECT m.*, p.backup_id AS payload_owner, p.payload_format, p.payload FROM backup_meta m
+        JOIN backup_payload p ON p.backup_id = COALESCE(m.payload_id, m.id)
+        WHERE m.player_uuid >= ? AND (m.player_uuid > ? OR m.backup_number > ?)
+        ORDER BY m.player_uuid, m.backup_number LIMIT ?
+        """;
+        if (after == null && legacyRowsPending) {
+            LOGGER.warn("Exporting while the legacy player_backups table is still being migrated; backups not moved yet are left out.");
+        }
+        List<NumberedBackup> page = new ArrayList<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
+
+            String fromPlayer = after == null ? "" : after.playerUuid().toString();
+            pstmt.setString(1, fromPlayer);
+            pstmt.setString(2, fromPlayer);
+            pstmt.setInt(3, after == null ? 0 : after.backupNumber());
+            pstmt.setInt(4, limit);
+            pstmt.setFetchSize(limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new NumberedBackup(rs.getInt("backup_number"), readEntry(conn, rs), rs.getInt("death_count"), rs.getBoolean("archived")));
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            LOGGER.error("Could not read backups for export. Full error: ", e);
+            return null;
+        }
+        return page;
+    }
+
+    /**
+     * Stores the batch in one transaction. Backups are stored whole, without duplicate detection or death coalescing,
+     * since they already went through that where they came from, and keep the death count they had there; their sections
+     * are still shared as usual. Backups that were archived there are moved to the archive once the batch is committed.
+     */
+    @Override
+    public int importBackups(List<NumberedBackup> backups) {
+        if (isShuttingDown) {
+            return -1;
+        }
+
+        CompoundTag[] payloadTags = new CompoundTag[backups.size()];
+        ContentFingerprint[] fingerprints = new ContentFingerprint[backups.size()];
+        for (int i = 0; i < backups.size(); i++) {
+            try {
+                payloadTags[i] = toPayloadTag(backups.get(i).entry());
+                fingerprints[i] = ContentFingerprint.of(payloadTags[i]);
+            } catch (IOException e) {
+                LOGGER.error("Could not fingerprint imported backup #{} for player {}. Full error: ", backups.get(i).backupNumber(),
+                    backups.get(i).entry().playerName(), e);
+                return -1;
+            }
+        }
+
+        int imported = 0;
+        Map<UUID, List<BackupArchive.Record>> toArchive = new LinkedHashMap<>();
+        Map<Integer, Integer> formats = new HashMap<>();
+        sectionLock.readLock().lock();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < backups.size(); i++) {
+                NumberedBackup backup = backups.get(i);
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    int backupId = insertBackupRow(conn, backup.entry(), backup.backupNumber(), payloadTags[i], fingerprints[i], null);
+                    if (backup.archived()) {
+                        toArchive.computeIfAbsent(backup.entry().playerUuid(), uuid -> new ArrayList<>())
+                            .add(new BackupArchive.Record(backupId, NbtPayloadCodec.encode(payloadTags[i])));
+                        formats.put(backupId, PAYLOAD_FORMAT_SECTIONS);
+                    }
+                    if (backup.deathCount() != 1) {
+                        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE backup_meta SET death_count = ? WHERE id = ?")) {
+                            pstmt.setInt(1, backup.deathCount());
+                            pstmt.setInt(2, backupId);
+                            pstmt.executeUpdate();
+                        }
+                    }
+                    imported++;
+                } catch (SQLException e) {
+                    conn.rollback(savepoint);
+                    if (!isDuplicateKey(e)) {
+                        throw e;
+                    }
+                    // The player already has a backup with this number
+                } catch (IOException e) {
+                    throw new SQLException("Could not encode imported backup #" + backup.backupNumber() + " for archiving", e);
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            LOGGER.error("Could not import {} backup(s). Full error: ", backups.size(), e);
+            return -1;
+        } finally {
+            sectionLock.readLock().unlock();
+            // Numbers and latest backups may have changed underneath what is remembered about these players
+            for (NumberedBackup backup : backups) {
+                UUID playerUuid = backup.entry().playerUuid();
+                resetBackupSequence(playerUuid);
+                latestContents.remove(playerUuid);
+                deathRuns.remove(playerUuid);
+            }
+        }
+
+        // Backups that were archived where they came from are archived here too. If that fails they just stay in the
+        // database until the archiving sweep gets to them
+        if (!toArchive.isEmpty()) {
+            try (Connection conn = getConnection()) {
+                for (Map.Entry<UUID, List<BackupArchive.Record>> player : toArchive.entrySet()) {
+                    archivePayloads(conn, player.getKey(), player.getValue(), formats);
+                }
+            } catch (SQLException e) {
+                LOGGER.error("Could not archive {} imported backup(s). Full error: ", formats.size(), e);
+            }
+        }
+        return imported;
+    }
+
+    @Override
+    public boolean setDeathCount(UUID playerUuid, int backupNumber, int deathCount) {
+        String sql = "UPDATE backup_meta SET death_count = ? WHERE player_uuid = ? AND backup_number = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, deathCount);
+            pstmt.setString(2, playerUuid.toString());
+            pstmt.setInt(3, backupNumber);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            LOGGER.error("Could not update death count of backup #{} for player {}: {}", backupNumber, playerUuid, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    // Keep the old method for backward compatibility but mark it as deprecated.
+    // Only finds backups in the current tables; ids from the legacy table are not preserved by the migration.
+    @Deprecated
+    public BackupEntry getBackupById(int backupId) {
+        String querySql = """
+        SELECT m.*, p.backup_id AS payload_owner, p.payload_format, p.payload FROM backup_meta m
+        JOIN backup_payload p ON p.backup_id = COALESCE(m.payload_id, m.id)
+        WHERE m.id = ?
+        """;
+        BackupEntry entry = null;
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
+            
+            pstmt.setInt(1, backupId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    entry = readEntry(conn, rs);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not retrieve backup with ID {}: {}", backupId, e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Could not parse UUID for backup ID {}: {}", backupId, e.getMessage(), e);
+        }
+        return entry;
+    }
+
+    /**
+     * Build a BackupEntry from the current row, reading the section blobs, the binary payload, the archive file or the legacy text columns.
+     * Legacy text columns only exist on rows of the old player_backups table.
+     */
+    BackupEntry readEntry(Connection conn, ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        CompoundTag main;
+        CompoundTag armor;
+        CompoundTag offhand;
+        CompoundTag enderChest;
+        CompoundTag curios;
+        CompoundTag playerNbt;
+        CompoundTag moddedInventories;
+
+        int payloadFormat = rs.getInt("payload_format");
+        if (payloadFormat == PAYLOAD_FORMAT_SECTIONS || payloadFormat == PAYLOAD_FORMAT_BINARY || payloadFormat == PAYLOAD_FORMAT_ARCHIVED) {
+            CompoundTag payload;
+            try {
+                payload = switch (payloadFormat) {
+                    case PAYLOAD_FORMAT_SECTIONS -> loadSections(conn, rs.getInt("payload_owner"));
+                    case PAYLOAD_FORMAT_ARCHIVED -> loadArchived(conn, rs.getInt("payload_owner"));
+                    default -> NbtPayloadCodec.decode(rs.getBytes("payload"));
+                };
+            } catch (IOException e) {
+                throw new SQLException("Could not decode payload of backup ID " + id, e);
+            }
+            main = payload.getCompound("main");
+            armor = payload.getCompound("armor");
+            offhand = payload.getCompound("offhand");
+            enderChest = payload.getCompound("ender");
+            curios = payload.contains("curios") ? payload.getCompound("curios") : null;
+            playerNbt = payload.contains("nbt") ? payload.getCompound("nbt") : null;
+            moddedInventories = payload.contains("modded") ? payload.getCompound("modded") : null;
+        } else {
+            // Rows written before the binary format still hold SNBT text
+            main = InventorySerializer.parseLegacyItemList(rs.getString("inventory_main"));
+            armor = InventorySerializer.parseLegacyItemList(rs.getString("inventory_armor"));
+            offhand = InventorySerializer.parseLegacyItemList(rs.getString("inventory_offhand"));
+            enderChest = InventorySerializer.parseLegacyItemList(rs.getString("inventory_enderchest"));
+            curios = CuriosIntegration.parseLegacyCurios(rs.getString("inventory_curios"));
+            playerNbt = GenericNbtIntegration.parseLegacyNbt(rs.getString("player_nbt"));
+            moddedInventories = GenericNbtIntegration.parseLegacyNbt(rs.getString("modded_inventories"));
+        }
+
+        return new BackupEntry(
+            id,
+            UUID.fromString(rs.getString("player_uuid")),
+            rs.getString("player_name"),
+            rs.getLong("timestamp"),
+            rs.getString("event_type"),
+            rs.getString("world"),
+            rs.getDouble("pos_x"),
+            rs.getDouble("pos_y"),
+            rs.getDouble("pos_z"),
+            rs.getInt("experience_level"),
+            rs.getFloat("experience_progress"),
+            main,
+            armor,
+            offhand,
+            enderChest,
+            rs.getString("cause_of_death"),
+            curios,
+            playerNbt,
+            moddedInventories
+        );
+    }
+
+    /**
+     * Reassemble a sectioned payload from the section blobs its backup links to.
+     */
+    private CompoundTag loadSections(Connection conn, int backupId) throws SQLException, IOException {
+        String sql = "SELECT r.section_name, s.payload, s.base_hash FROM backup_section_ref r JOIN backup_section s ON s.section_hash = r.section_hash WHERE r.backup_id = ?";
+        CompoundTag payload = new CompoundTag();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, backupId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    CompoundTag stored = NbtPayloadCodec.decode(rs.getBytes(2));
+                    String baseHash = rs.getString(3);
+                    payload.put(rs.getString(1), baseHash != null ? SectionDelta.apply(loadSection(conn, baseHash), stored) : stored);
+                }
+            }
+        }
+
+        // Fetch every referenced item in one query, then put them back into their sections
+        Set<String> itemHashes = new HashSet<>();
+        for (String key : payload.getAllKeys()) {
+            itemHashes.addAll(ItemRefs.refs(payload.getCompound(key)));
+        }
+        Map<String, CompoundTag> items = loadItems(conn, itemHashes);
+        for (String key : payload.getAllKeys()) {
+            ItemRefs.resolve(payload.getCompound(key), items);
+        }
+        return payload;
+    }
+
+    private Map<String, CompoundTag> loadItems(Connection conn, Set<String> itemHashes) throws SQLException, IOException {
+        Map<String, CompoundTag> items = new HashMap<>();
+        if (itemHashes.isEmpty()) {
+            return items;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(itemHashes.size(), "?"));
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT item_hash, item FROM backup_item WHERE item_hash IN (" + placeholders + ")")) {
+            int index = 1;
+            for (String hash : itemHashes) {
+                pstmt.setString(index++, hash);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    items.put(rs.getString(1), NbtPayloadCodec.decode(rs.getBytes(2)));
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Read an archived payload back from its archive file.
+     */
+    private CompoundTag loadArchived(Connection conn, int backupId) throws SQLException, IOException {
+        // Looked up again under the lock: a rewrite of the archive files may have moved it since the row was read
+        archiveLock.readLock().lock();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT archive_file, archive_offset FROM backup_payload WHERE backup_id = ?")) {
+            pstmt.setInt(1, backupId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getString(1) == null) {
+                    throw new SQLException("Archived payload of backup ID " + backupId + " is missing");
+                }
+                return NbtPayloadCodec.decode(archive.read(new BackupArchive.Location(rs.getString(1), rs.getLong(2)), backupId));
+            }
+        } finally {
+            archiveLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild one section by walking back to its keyframe and replaying the deltas after it.
+     */
+    private CompoundTag loadSection(Connection conn, String sectionHash) throws SQLException, IOException {
+        Deque<byte[]> deltas = new ArrayDeque<>();
+        byte[] keyframe = null;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT payload, base_hash FROM backup_section WHERE section_hash = ?")) {
+            String hash = sectionHash;
+            while (keyframe == null) {
+                // Chains are kept shorter than deltaKeyframeInterval, this only guards against a broken table
+                if (deltas.size() > 1000) {
+                    throw new SQLException("Delta chain of section " + sectionHash + " does not end in a keyframe");
+                }
+                pstmt.setString(1, hash);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Backup section " + hash + " is missing");
+                    }
+                    hash = rs.getString(2);
+                    if (hash == null) {
+                        keyframe = rs.getBytes(1);
+                    } else {
+                        deltas.push(rs.getBytes(1));
+                    }
+                }
+            }
+        }
+
+        CompoundTag section = NbtPayloadCodec.decode(keyframe);
+        while (!deltas.isEmpty()) {
+            section = SectionDelta.apply(section, NbtPayloadCodec.decode(deltas.pop()));
+        }
+        return section;
+    }
+
+    /**
+     * Pack all inventory sections of an entry into the single compound stored in the payload column.
+     */
+    static CompoundTag toPayloadTag(BackupEntry entry) {
+        CompoundTag payload = new CompoundTag();
+        payload.put("main", entry.inventoryMain());
+        payload.put("armor", entry.inventoryArmor());
+        payload.put("offhand", entry.inventoryOffhand());
+        payload.put("ender", entry.inventoryEnderChest());
+        if (entry.inventoryCurios() != null) {
+            payload.put("curios", entry.inventoryCurios());
+        }
+        if (entry.playerNbt() != null) {
+            payload.put("nbt", entry.playerNbt());
+        }
+        if (entry.moddedInventories() != null) {
+            payload.put("modded", entry.moddedInventories());
+        }
+        return payload;
+    }
+
+    @Override
+    public void shutdown() {
+        LOGGER.info("Backup store shutting down...");
+        isShuttingDown = true;
+        circuitBreaker.shutdown();
+        
+        if (legacyMigrator != null) {
+            legacyMigrator.shutdown();
+        }
+        
+        try (Connection conn = getConnection()) {
+            beforePoolClose(conn);
+        } catch (SQLException e) {
+            LOGGER.debug("Final database statements failed (may already be closed): {}", e.getMessage());
+        }
+        
+        // Close the pool last so the statements above can still borrow a connection
+        try {
+            if (dataSource != null && !dataSource.isClosed()) {
+                dataSource.close();
+                LOGGER.info("Connection pool '{}' closed.", POOL_NAME);
+            }
+            LOGGER.info("Backup store shutdown completed successfully.");
+        } catch (Exception e) {
+            LOGGER.error("Error closing connection pool '{}'", POOL_NAME, e);
+        }
+    }
+
+    /**
+     * Finds every player that currently has more backups than the given limit.
+     * @param maxBackups The per-player backup limit.
+     * @return UUIDs of players over the limit.
+     */
+    @Override
+    public List<UUID> getPlayersOverBackupLimit(int maxBackups) {
+        List<UUID> players = new ArrayList<>();
+        String querySql = "SELECT player_uuid FROM " + backupNumbersSource() + " GROUP BY player_uuid HAVING COUNT(*) > ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(querySql)) {
+
+            pstmt.setInt(1, maxBackups);
+            try (var rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        players.add(UUID.fromString(rs.getString(1)));
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.warn("Skipping backups with invalid player UUID '{}' during retention scan", rs.getString(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not find players over the backup limit. Full error: ", e);
+        }
+        return players;
+    }
+
+    /**
+     * Deletes all but the newest backups of a player with one set-based delete per table.
+     * @param playerUuid The UUID of the player to trim.
+     * @param maxBackups The number of backups to keep.
+     * @return The number of backups that were deleted.
+     */
+    @Override
+    public int trimBackupsForPlayer(UUID playerUuid, int maxBackups) {
+        // The newest backup that falls outside the limit; everything at or below it goes
+        String cutoffSql = "SELECT backup_number FROM " + backupNumbersSource() + " WHERE player_uuid = ? ORDER BY backup_number DESC LIMIT 1 OFFSET ?";
+
+        try (Connection conn = getConnection()) {
+            int cutoff = -1;
+            try (PreparedStatement cutoffStmt = conn.prepareStatement(cutoffSql)) {
+                cutoffStmt.setString(1, playerUuid.toString());
+                cutoffStmt.setInt(2, maxBackups);
+                try (var rs = cutoffStmt.executeQuery()) {
+                    if (rs.next()) {
+                        cutoff = rs.getInt(1);
+                    }
+                }
+            }
+
+            if (cutoff < 0) {
+                return 0; // Within the limit
+            }
+            return deleteBackups(conn, playerUuid, cutoff);
+        } catch (SQLException e) {
+            LOGGER.error("Could not enforce backup limit for player {}. Full error: ", playerUuid, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Removes all backups for a specific player.
+     * @param playerUuid The UUID of the player whose backups should be removed.
+     * @return The number of backups that were deleted.
+     */
+    @Override
+    public int removeAllBackupsForPlayer(UUID playerUuid) {
+        try (Connection conn = getConnection()) {
+            int deletedCount = deleteBackups(conn, playerUuid, Integer.MAX_VALUE);
+            // Numbering starts over at #1 once a player has no backups left
+            resetBackupSequence(playerUuid);
+            latestContents.remove(playerUuid);
+            deathRuns.remove(playerUuid);
+            
+            LOGGER.info("Removed {} backup(s) for player {}", deletedCount, playerUuid);
+            return deletedCount;
+            
+        } catch (SQLException e) {
+            LOGGER.error("Could not remove backups for player {}. Full error: ", playerUuid, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Deletes section blobs that no backup links to anymore, first turning any delta that still depends on one
+     * into a keyframe, and then the stored items only those sections used. Does nothing unless backups were
+     * deleted since the last run.
+     * @return The number of section blobs deleted.
+     */
+    @Override
+    public int removeUnusedSections() {
+        pruneArchives();
+        if (!sectionsReleased) {
+            return 0;
+        }
+
+        String unused = "NOT EXISTS (SELECT 1 FROM backup_section_ref r WHERE r.section_hash = %s.section_hash)";
+        // Sections still in use whose delta base is not: they become keyframes so the base can go
+        String rebaseSql = "SELECT d.section_hash FROM backup_section d JOIN backup_section b ON b.section_hash = d.base_hash"
+            + " WHERE NOT " + unused.formatted("d") + " AND " + unused.formatted("b");
+        // Unused sections that are not the base of anything (MySQL can't delete with a subquery on the same table)
+        String leavesSql = "SELECT s.section_hash FROM backup_section s WHERE " + unused.formatted("s")
+            + " AND NOT EXISTS (SELECT 1 FROM backup_section d WHERE d.base_hash = s.section_hash)";
+        String keyframeSql = "UPDATE backup_section SET payload = ?, base_hash = NULL, chain_depth = 0 WHERE section_hash = ?";
+        String deleteSql = "DELETE FROM backup_section WHERE section_hash = ?";
+        String deleteItemRefsSql = "DELETE FROM backup_item_ref WHERE section_hash = ?";
+        String deleteItemsSql = "DELETE FROM backup_item WHERE NOT EXISTS (SELECT 1 FROM backup_item_ref r WHERE r.item_hash = backup_item.item_hash)";
+
+        // Exclusive, so a save can't link to a blob in between this finding it unused and deleting it
+        sectionLock.writeLock().lock();
+        try (Connection conn = getConnection()) {
+            sectionsReleased = false;
+            conn.setAutoCommit(false);
+            try {
+                // Sections further down a rebased chain keep their old chain_depth; that only makes their next keyframe come early
+                List<String> rebase = selectHashes(conn, rebaseSql);
+                try (PreparedStatement pstmt = conn.prepareStatement(keyframeSql)) {
+                    for (String hash : rebase) {
+                        pstmt.setBytes(1, NbtPayloadCodec.encode(loadSection(conn, hash)));
+                        pstmt.setString(2, hash);
+                        pstmt.executeUpdate();
+                    }
+                }
+                if (!rebase.isEmpty()) {
+                    LOGGER.debug("Rewrote {} backup section(s) as keyframes before removing their unused bases", rebase.size());
+                }
+
+                // Peel unused chains from their newest end; each pass exposes the bases of the previous one
+                int deleted = 0;
+                List<String> leaves;
+                while (!(leaves = selectHashes(conn, leavesSql)).isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(deleteSql);
+                         PreparedStatement itemRefStmt = conn.prepareStatement(deleteItemRefsSql)) {
+                        for (String hash : leaves) {
+                            pstmt.setString(1, hash);
+                            pstmt.addBatch();
+                            itemRefStmt.setString(1, hash);
+                            itemRefStmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                        itemRefStmt.executeBatch();
+                    }
+                    deleted += leaves.size();
+                }
+
+                // Items no remaining section links to
+                if (deleted > 0) {
+                    try (Statement stmt = conn.createStatement()) {
+                        int deletedItems = stmt.executeUpdate(deleteItemsSql);
+                        if (deletedItems > 0) {
+                            LOGGER.debug("Removed {} stored item(s) no backup uses anymore", deletedItems);
+                        }
+                    }
+                }
+                conn.commit();
+                return deleted;
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException | IOException e) {
+            sectionsReleased = true;
+            LOGGER.error("Could not remove unused backup sections. Full error: ", e);
+            return 0;
+        } finally {
+            sectionLock.writeLock().unlock();
+        }
+    }
+
+    private static List<String> selectHashes(Connection conn, String sql) throws SQLException {
+        List<String> hashes = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                hashes.add(rs.getString(1));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Deletes every backup of a player numbered at or below the cutoff, payloads included, in one transaction.
+     * Section blobs are left for {@link #removeUnusedSections()}.
+     * @return The number of backups deleted.
+     */
+    private int deleteBackups(Connection conn, UUID playerUuid, int maxBackupNumber) throws SQLException {
+        // Payloads of the deleted backups, except ones still shared by a newer backup that is kept
+        String releasedPayloads = """
+            IN (SELECT COALESCE(payload_id, id) FROM backup_meta WHERE player_uuid = ? AND backup_number <= ?)
+            AND backup_id NOT IN (SELECT payload_id FROM backup_meta WHERE player_uuid = ? AND backup_number > ? AND payload_id IS NOT NULL)
+            """;
+        String deleteMetaSql = "DELETE FROM backup_meta WHERE player_uuid = ? AND backup_number <= ?";
+        String deleteLegacySql = "DELETE FROM player_backups WHERE player_uuid = ? AND backup_number <= ?";
+
+        conn.setAutoCommit(false);
+        try {
+            // Section links first, then the payload rows they belong to
+            for (String table : List.of("backup_section_ref", "backup_payload")) {
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + table + " WHERE backup_id " + releasedPayloads)) {
+                    pstmt.setString(1, playerUuid.toString());
+                    pstmt.setInt(2, maxBackupNumber);
+                    pstmt.setString(3, playerUuid.toString());
+                    pstmt.setInt(4, maxBackupNumber);
+                    pstmt.executeUpdate();
+                }
+            }
+            int deleted = executeDelete(conn, deleteMetaSql, playerUuid, maxBackupNumber);
+            if (legacyRowsPending) {
+                deleted += executeDelete(conn, deleteLegacySql, playerUuid, maxBackupNumber);
+            }
+            conn.commit();
+            if (deleted > 0) {
+                sectionsReleased = true;
+                archivesReleased.add(playerUuid);
+            }
+            return deleted;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private static int executeDelete(Connection conn, String sql, UUID playerUuid, int maxBackupNumber) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setInt(2, maxBackupNumber);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Moves the payloads of backups taken before {@code timestamp} into the players' archive files. The backup rows stay,
+     * marked archived, and read their payload from the file from then on; the section links are dropped so
+     * {@link #removeUnusedSections()} can free what only those backups used. A payload still shared by a newer
+     * backup is left alone.
+     */
+    @Override
+    public List<UUID> archiveBackupsOlderThan(long timestamp, int limit) {
+        String candidatesSql = """
+            SELECT p.backup_id, p.payload_format, p.payload, m.player_uuid FROM backup_payload p
+            JOIN backup_meta m ON m.id = p.backup_id
+            WHERE p.payload_format IN (?, ?) AND m.timestamp < ?
+            AND NOT EXISTS (SELECT 1 FROM backup_meta n WHERE n.player_uuid = m.player_uuid AND n.payload_id = p.backup_id AND n.timestamp >= ?)
+            ORDER BY m.player_uuid LIMIT ?
+            """;
+        List<UUID> archived = new ArrayList<>();
+        if (isShuttingDown) {
+            return archived;
+        }
+
+        try (Connection conn = getConnection()) {
+            // Encoded per player, since each player's payloads go to their own file
+            Map<UUID, List<BackupArchive.Record>> byPlayer = new LinkedHashMap<>();
+            Map<Integer, Integer> formats = new HashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(candidatesSql)) {
+                pstmt.setInt(1, PAYLOAD_FORMAT_BINARY);
+                pstmt.setInt(2, PAYLOAD_FORMAT_SECTIONS);
+                pstmt.setLong(3, timestamp);
+                pstmt.setLong(4, timestamp);
+                pstmt.setInt(5, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int backupId = rs.getInt("backup_id");
+                        int format = rs.getInt("payload_format");
+                        try {
+                            CompoundTag payload = format == PAYLOAD_FORMAT_SECTIONS ? loadSections(conn, backupId) : NbtPayloadCodec.decode(rs.getBytes("payload"));
+                            byPlayer.computeIfAbsent(UUID.fromString(rs.getString("player_uuid")), uuid -> new ArrayList<>())
+                                .add(new BackupArchive.Record(backupId, NbtPayloadCodec.encode(payload)));
+                            formats.put(backupId, format);
+                        } catch (IOException | SQLException | IllegalArgumentException e) {
+                            LOGGER.error("Could not read backup ID {} for archiving, leaving it in the database. Full error: ", backupId, e);
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<UUID, List<BackupArchive.Record>> player : byPlayer.entrySet()) {
+                int moved = archivePayloads(conn, player.getKey(), player.getValue(), formats);
+                archived.addAll(Collections.nCopies(moved, player.getKey()));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not archive old backups. Full error: ", e);
+        }
+        return archived;
+    }
+
+    /**
+     * Writes one player's payloads to their archive file, then points the rows at it in one transaction.
+     * If that fails the records written are simply never used, and go at the next rewrite of the file.
+     * @return The number of payloads archived
+     */
+    private int archivePayloads(Connection conn, UUID playerUuid, List<BackupArchive.Record> records, Map<Integer, Integer> formats) {
+        // The format check skips payloads deleted or archived by someone else since they were read
+        String updatePayloadSql = "UPDATE backup_payload SET payload_format = ?, payload = NULL, archive_file = ?, archive_offset = ? WHERE backup_id = ? AND payload_format = ?";
+        String deleteRefsSql = "DELETE FROM backup_section_ref WHERE backup_id = ?";
+        String markMetaSql = "UPDATE backup_meta SET archived = TRUE WHERE player_uuid = ? AND COALESCE(payload_id, id) = ?";
+
+        archiveLock.writeLock().lock();
+        try {
+            List<BackupArchive.Location> locations = archive.append(playerUuid, records);
+            int moved = 0;
+            conn.setAutoCommit(false);
+            try (PreparedStatement updatePayload = conn.prepareStatement(updatePayloadSql);
+                 PreparedStatement deleteRefs = conn.prepareStatement(deleteRefsSql);
+                 PreparedStatement markMeta = conn.prepareStatement(markMetaSql)) {
+                for (int i = 0; i < records.size(); i++) {
+                    int backupId = records.get(i).payloadId();
+                    updatePayload.setInt(1, PAYLOAD_FORMAT_ARCHIVED);
+                    updatePayload.setString(2, locations.get(i).file());
+                    updatePayload.setLong(3, locations.get(i).offset());
+                    updatePayload.setInt(4, backupId);
+                    updatePayload.setInt(5, formats.get(backupId));
+                    if (updatePayload.executeUpdate() == 0) {
+                        continue;
+                    }
+                    deleteRefs.setInt(1, backupId);
+                    deleteRefs.executeUpdate();
+                    markMeta.setString(1, playerUuid.toString());
+                    markMeta.setInt(2, backupId);
+                    markMeta.executeUpdate();
+                    moved++;
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            if (moved > 0) {
+                sectionsReleased = true;
+                // Its latest backup may be among them; reload it rather than share or diff against an archived payload
+                latestContents.remove(playerUuid);
+            }
+            return moved;
+        } catch (IOException | SQLException e) {
+            LOGGER.error("Could not archive {} backup(s) of player {}. Full error: ", records.size(), playerUuid, e);
+            return 0;
+        } finally {
+            archiveLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cleans up the archive files of players who lost backups: files nothing points into are deleted, and files that
+     * are mostly dead records are rewritten with just the live ones.
+     */
+    private void pruneArchives() {
+        Iterator<UUID> iterator = archivesReleased.iterator();
+        while (iterator.hasNext()) {
+            UUID playerUuid = iterator.next();
+            iterator.remove();
+            try {
+                pruneArchive(playerUuid);
+            } catch (SQLException | IOException e) {
+                LOGGER.error("Could not clean up the backup archive of player {}. Full error: ", playerUuid, e);
+            }
+        }
+    }
+
+    private void pruneArchive(UUID playerUuid) throws SQLException, IOException {
+        // Through the backups rather than the payload rows' own backup, which is gone if a kept backup shares the payload
+        String liveSql = """
+            SELECT DISTINCT p.backup_id, p.archive_file, p.archive_offset FROM backup_meta m
+            JOIN backup_payload p ON p.backup_id = COALESCE(m.payload_id, m.id)
+            WHERE m.player_uuid = ? AND p.payload_format = ?
+            """;
+        String moveSql = "UPDATE backup_payload SET archive_file = ?, archive_offset = ? WHERE backup_id = ?";
+
+        archiveLock.writeLock().lock();
+        try {
+            if (!archive.hasFiles(playerUuid)) {
+                return;
+            }
+
+            try (Connection conn = getConnection()) {
+                Map<Integer, BackupArchive.Location> live = new LinkedHashMap<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(liveSql)) {
+                    pstmt.setString(1, playerUuid.toString());
+                    pstmt.setInt(2, PAYLOAD_FORMAT_ARCHIVED);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            live.put(rs.getInt(1), new BackupArchive.Location(rs.getString(2), rs.getLong(3)));
+                        }
+                    }
+                }
+
+                Set<String> keep = new HashSet<>();
+                long liveBytes = 0;
+                for (BackupArchive.Location location : live.values()) {
+                    keep.add(location.file());
+                    liveBytes += archive.recordSize(location);
+                }
+
+                if (!live.isEmpty() && liveBytes * 100 < archive.size(playerUuid) * ARCHIVE_REWRITE_LIVE_PERCENT) {
+                    List<BackupArchive.Record> records = new ArrayList<>();
+                    for (Map.Entry<Integer, BackupArchive.Location> payload : live.entrySet()) {
+                        records.add(new BackupArchive.Record(payload.getKey(), archive.read(payload.getValue(), payload.getKey())));
+                    }
+                    List<BackupArchive.Location> moved = archive.rewrite(playerUuid, records);
+
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement pstmt = conn.prepareStatement(moveSql)) {
+                        for (int i = 0; i < records.size(); i++) {
+                            pstmt.setString(1, moved.get(i).file());
+                            pstmt.setLong(2, moved.get(i).offset());
+                            pstmt.setInt(3, records.get(i).payloadId());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                    keep = Set.of(moved.get(0).file());
+                }
+
+                long freed = archive.deleteExcept(playerUuid, keep);
+                if (freed > 0) {
+                    LOGGER.debug("Freed {} KB of archive files of player {}", freed / 1024, playerUuid);
+                }
+            }
+        } finally {
+            archiveLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public StorageStats getStorageStats() {
+        return new StorageStats(skippedDuplicates.sum(), referencedDuplicates.sum(), coalescedDeaths.sum());
+    }
+
+    /**
+     * @param fingerprint Section hashes, only known for backups saved since startup
+     * @param payload The sections themselves, kept as the delta base for the next backup; null when loaded from the table
+     */
+    private record LatestContent(@Nullable String contentHash, int payloadId,
+                                 @Nullable ContentFingerprint fingerprint, @Nullable CompoundTag payload) {}
+
+    /**
+     * What a batch learned about its players' latest backups. Other writers only see it once the batch has committed,
+     * so they never share a payload, build a delta on, or fold a death into a row that may still be rolled back.
+     * Later entries of the same batch do use it: they are on the same connection and commit or roll back with it.
+     */
+    private final class PendingBatch {
+        private final Map<UUID, LatestContent> latestContents = new HashMap<>();
+        // A null run means the player's run ended in this batch
+        private final Map<UUID, DeathRun> deathRuns = new HashMap<>();
+
+        private void publish() {
+            JdbcBackupStore.this.latestContents.putAll(latestContents);
+            deathRuns.forEach((playerUuid, run) -> {
+                if (run != null) {
+                    JdbcBackupStore.this.deathRuns.put(playerUuid, run);
+                } else {
+                    JdbcBackupStore.this.deathRuns.remove(playerUuid);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param lastDeath Timestamp of the most recent death folded into the backup
+     */
+    private record DeathRun(int backupId, int backupNumber, ContentFingerprint fingerprint, long lastDeath, int deaths) {}
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.util.ContentFingerprint;
+import com.mojang.logging.LogUtils;
+import net.minecraft.nbt.CompoundTag;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Moves rows from the old single-table player_backups layout into backup_meta/backup_payload
+ * while the server keeps running. Rows are moved one transaction at a time in small batches,
+ * so reads and new saves are never blocked for long.
+ */
+class LegacyTableMigrator {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int BATCH_SIZE = 200;
+    private static final long BATCH_PAUSE_MILLIS = 50;
+    private static final long RETRY_PAUSE_MILLIS = 5000;
+
+    private final JdbcBackupStore store;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private int lastLegacyId = 0;
+    private long moved = 0;
+    private long failed = 0;
+
+    LegacyTableMigrator(JdbcBackupStore store) {
+        this.store = store;
+        this.thread = new Thread(this::run, "EIB-Migrator");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                int examined = migrateBatch();
+                if (examined == 0) {
+                    finish();
+                    return;
+                }
+                Thread.sleep(BATCH_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException e) {
+                LOGGER.error("Legacy backup migration batch failed, retrying in {} seconds. Full error: ", RETRY_PAUSE_MILLIS / 1000, e);
+                try {
+                    Thread.sleep(RETRY_PAUSE_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the next batch of legacy rows, walking the table by id so rows that fail are not retried forever.
+     * @return The number of legacy rows looked at
+     */
+    private int migrateBatch() throws SQLException {
+        String selectSql = "SELECT * FROM player_backups WHERE id > ? ORDER BY id LIMIT ?";
+        String deleteSql = "DELETE FROM player_backups WHERE id = ?";
+
+        int examined = 0;
+        store.sectionLock().readLock().lock();
+        try (Connection conn = store.getConnection();
+             PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+
+            conn.setAutoCommit(false);
+            select.setInt(1, lastLegacyId);
+            select.setInt(2, BATCH_SIZE);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next() && running) {
+                    examined++;
+                    int legacyId = rs.getInt("id");
+                    lastLegacyId = legacyId;
+                    try {
+                        BackupEntry entry = store.readEntry(conn, rs);
+                        CompoundTag payloadTag = JdbcBackupStore.toPayloadTag(entry);
+                        ContentFingerprint fingerprint = ContentFingerprint.of(payloadTag);
+
+                        // Claim the row first; if retention or /eib removeall deleted it meanwhile there is nothing to move
+                        delete.setInt(1, legacyId);
+                        if (delete.executeUpdate() == 0) {
+                            conn.rollback();
+                            continue;
+                        }
+                        store.insertBackupRow(conn, entry, rs.getInt("backup_number"), payloadTag, fingerprint, null);
+                        conn.commit();
+                        moved++;
+                    } catch (Exception e) {
+                        conn.rollback();
+                        failed++;
+                        LOGGER.warn("Could not migrate legacy backup ID {}, leaving it in player_backups: {}", legacyId, e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            store.sectionLock().readLock().unlock();
+        }
+        return examined;
+    }
+
+    private void finish() {
+        if (failed == 0) {
+            LOGGER.info("Moved {} backup(s) out of the legacy player_backups table.", moved);
+            store.onLegacyMigrationFinished();
+        } else {
+            // Keep reading the legacy table so the rows that could not be moved stay visible
+            LOGGER.warn("Moved {} backup(s) out of the legacy player_backups table; {} could not be moved and remain there.", moved, failed);
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            LOGGER.warn("Legacy backup migration did not stop in time; it will resume on next startup.");
+        }
+    }
+}
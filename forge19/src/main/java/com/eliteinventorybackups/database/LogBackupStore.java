@@ -0,0 +1,894 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.eliteinventorybackups.util.BackupEntryTags;
+import com.eliteinventorybackups.util.NbtPayloadCodec;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.CompoundTag;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded engine for single servers: backups are appended to a log of compressed records split into segment files,
+ * and a memory-mapped {@link LogIndex} finds any backup by player and number without searching.
+ * <p>
+ * Nothing in a segment is ever rewritten. Deleting backups writes a tombstone and empties their index slots;
+ * the space comes back when the retention sweep compacts a sealed segment whose live data has dropped below
+ * {@code logCompactionThresholdPercent}, copying what is still live to the end of the log and deleting the file.
+ * <p>
+ * Segment layout: {@code [int magic][int version][long lowest record seq, written when sealed]} followed by records
+ * {@code [int body length][int CRC32 of the rest][byte type][long seq][long uuid msb][long uuid lsb][int backup number][body]}.
+ * Every record gets the next sequence number. A tombstone deletes the player's backups numbered up to its backup
+ * number that have a lower sequence number, which keeps it correct wherever compaction moves records.
+ */
+public class LogBackupStore implements BackupStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int SEGMENT_MAGIC = 0x4549424C; // "EIBL"
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 37;
+    // A length above this can only come from a torn or corrupt header
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final byte TYPE_BACKUP = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    // Held for writing by anything that appends or changes the index, for reading by lookups
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // By id; the active segment is always the last. Guarded by lock
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final LogIndex index;
+    private Segment active;
+    private long nextSeq;
+    private volatile boolean isShuttingDown = false;
+
+    // Metrics
+    private final LongAdder compactedSegments = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    public LogBackupStore(Path directory, long segmentMaxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(LogBackupStore::isSegmentFile).sorted(Comparator.comparingInt(LogBackupStore::segmentId)).toList()) {
+                Segment segment = openSegment(path);
+                if (segment != null) {
+                    segments.put(segment.id, segment);
+                }
+            }
+        }
+
+        index = new LogIndex(directory.resolve("index.dat"));
+        long maxSeq = index.indexedSeq();
+        if (!segments.isEmpty() && index.isNew()) {
+            maxSeq = rebuildIndex();
+        } else if (!segments.isEmpty()) {
+            maxSeq = Math.max(maxSeq, recover(segments.lastEntry().getValue()));
+        }
+        nextSeq = maxSeq + 1;
+
+        for (Segment segment : segments.values()) {
+            if (segment.minSeq == Long.MAX_VALUE && segment != segments.lastEntry().getValue()) {
+                // Sealed by a crash rather than a rotation; the header never got its lowest seq
+                scan(segment, record -> segment.minSeq = Math.min(segment.minSeq, record.seq()));
+                writeMinSeq(segment);
+            }
+        }
+        index.forEachSlot(slot -> {
+            Segment segment = segments.get(slot.segment());
+            if (segment != null) {
+                segment.liveBytes += slot.length();
+            }
+        });
+
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = last != null && last.size < segmentMaxBytes ? last : newSegment();
+        LOGGER.info("Opened backup log in {} ({} segment(s), {} player(s))", directory, segments.size(), index.players().size());
+    }
+
+    @Override
+    public int[] saveBackups(List<BackupEntry> entries) {
+        int[] results = new int[entries.size()];
+        Arrays.fill(results, -1);
+        if (isShuttingDown) {
+            LOGGER.warn("Log store is shutting down, skipping {} backup save(s)", entries.size());
+            return results;
+        }
+
+        // Encoding needs no lock, so it happens before taking it
+        byte[][] bodies = new byte[entries.size()][];
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                bodies[i] = NbtPayloadCodec.encode(BackupEntryTags.toTag(entries.get(i)));
+            } catch (IOException e) {
+                LOGGER.error("Could not encode backup for player {}. Full error: ", entries.get(i).playerName(), e);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            saveLocked(entries, bodies, null, results);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * @param fixedNumbers The number to store each entry under, or null to give them the players' next numbers
+     */
+    private void saveLocked(List<BackupEntry> entries, byte[][] bodies, @Nullable int[] fixedNumbers, int[] results) {
+        Segment segment = rotateIfFull();
+        long sizeBefore = segment.size;
+        try {
+            // Numbers go into the index only once the batch is on disk
+            Object2IntOpenHashMap<UUID> numbers = new Object2IntOpenHashMap<>();
+            LogIndex.Slot[] slots = new LogIndex.Slot[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                if (bodies[i] == null) {
+                    continue;
+                }
+                BackupEntry entry = entries.get(i);
+                UUID playerUuid = entry.playerUuid();
+                int number;
+                if (fixedNumbers != null) {
+                    number = fixedNumbers[i];
+                } else {
+                    number = numbers.containsKey(playerUuid) ? numbers.getInt(playerUuid) + 1 : index.highest(playerUuid) + 1;
+                    numbers.put(playerUuid, number);
+                }
+
+                long seq = nextSeq++;
+                byte[] record = record(TYPE_BACKUP, seq, playerUuid, number, bodies[i]);
+                long offset = append(segment, record, seq);
+                slots[i] = new LogIndex.Slot(segment.id, offset, record.length, seq, entry.timestamp(), entry.eventType(), entry.world());
+                results[i] = number;
+            }
+            segment.channel.force(false);
+
+            for (int i = 0; i < entries.size(); i++) {
+                if (slots[i] != null) {
+                    index.put(entries.get(i).playerUuid(), results[i], slots[i]);
+                    segment.liveBytes += slots[i].length();
+                }
+            }
+            index.setIndexedSeq(nextSeq - 1);
+        } catch (IOException e) {
+            LOGGER.error("Could not save {} backup(s) to the log. Full error: ", entries.size(), e);
+            // Nothing of the batch is indexed; drop the partial write so a restart doesn't pick it up either
+            truncate(segment, sizeBefore);
+            Arrays.fill(results, -1);
+        }
+    }
+
+    @Override
+    public List<BackupSummary> getBackupSummaries(UUID playerUuid) {
+        return getBackupsOlderThan(playerUuid, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean hasBackup(UUID playerUuid, long timestamp, String eventType) {
+        lock.readLock().lock();
+        try {
+            for (int number = index.highest(playerUuid); number >= index.lowest(playerUuid); number--) {
+                LogIndex.Slot slot = index.get(playerUuid, number);
+                if (slot != null && slot.timestamp() == timestamp && eventType.equals(slot.eventType())) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countBackups(UUID playerUuid) {
+        lock.readLock().lock();
+        try {
+            return index.count(playerUuid);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BackupSummary> getBackupsOlderThan(UUID playerUuid, int backupNumber, int limit) {
+        List<BackupSummary> summaries = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int lowest = index.lowest(playerUuid);
+            for (int number = Math.min(backupNumber - 1, index.highest(playerUuid)); number >= lowest && summaries.size() < limit; number--) {
+                addSummary(summaries, playerUuid, number);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return summaries;
+    }
+
+    @Override
+    public List<BackupSummary> getBackupsNewerThan(UUID playerUuid, int backupNumber, int limit) {
+        List<BackupSummary> summaries = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int highest = index.highest(playerUuid);
+            for (int number = Math.max(backupNumber + 1, index.lowest(playerUuid)); number <= highest && summaries.size() < limit; number++) {
+                addSummary(summaries, playerUuid, number);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Collected oldest first; callers want newest first
+        Collections.reverse(summaries);
+        return summaries;
+    }
+
+    @Override
+    public List<BackupSummary> getBackupSummaryPage(UUID playerUuid, int offset, int limit) {
+        List<BackupSummary> summaries = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Imports can leave gaps in the numbering, so the live slots are counted off rather than the numbers
+            if (offset < index.count(playerUuid)) {
+                int skipped = 0;
+                int lowest = index.lowest(playerUuid);
+                for (int number = index.highest(playerUuid); number >= lowest && summaries.size() < limit; number--) {
+                    if (index.get(playerUuid, number) == null) {
+                        continue;
+                    }
+                    if (skipped < offset) {
+                        skipped++;
+                    } else {
+                        addSummary(summaries, playerUuid, number);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return summaries;
+    }
+
+    private void addSummary(List<BackupSummary> summaries, UUID playerUuid, int number) {
+        LogIndex.Slot slot = index.get(playerUuid, number);
+        if (slot != null) {
+            summaries.add(new BackupSummary(number, slot.timestamp(), slot.eventType(), slot.world(), 1, false));
+        }
+    }
+
+    @Override
+    @Nullable
+    public BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber) {
+        lock.readLock().lock();
+        try {
+            LogIndex.Slot slot = index.get(playerUuid, backupNumber);
+            if (slot == null) {
+                return null;
+            }
+            return readEntry(slot);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not read backup #{} for player {}: {}", backupNumber, playerUuid, e.getMessage(), e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    @Nullable
+    public List<NumberedBackup> readBackupsAfter(@Nullable BackupPosition after, int limit) {
+        List<NumberedBackup> page = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<UUID> players = new ArrayList<>(index.players());
+            players.sort(Comparator.comparing(UUID::toString));
+            for (UUID playerUuid : players) {
+                int order = after == null ? 1 : playerUuid.toString().compareTo(after.playerUuid().toString());
+                if (order < 0) {
+                    continue;
+                }
+                int highest = index.highest(playerUuid);
+                int number = order == 0 ? Math.max(after.backupNumber() + 1, index.lowest(playerUuid)) : index.lowest(playerUuid);
+                for (; number <= highest; number++) {
+                    if (page.size() >= limit) {
+                        return page;
+                    }
+                    LogIndex.Slot slot = index.get(playerUuid, number);
+                    if (slot != null) {
+                        page.add(new NumberedBackup(number, readEntry(slot)));
+                    }
+                }
+            }
+            return page;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not read backups from the log for export. Full error: ", e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int importBackups(List<NumberedBackup> backups) {
+        if (isShuttingDown) {
+            return -1;
+        }
+        byte[][] bodies = new byte[backups.size()][];
+        for (int i = 0; i < backups.size(); i++) {
+            try {
+                bodies[i] = NbtPayloadCodec.encode(BackupEntryTags.toTag(backups.get(i).entry()));
+            } catch (IOException e) {
+                LOGGER.error("Could not encode imported backup #{} for player {}. Full error: ", backups.get(i).backupNumber(),
+                    backups.get(i).entry().playerName(), e);
+                return -1;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Leave out numbers the players already have
+            List<BackupEntry> entries = new ArrayList<>();
+            List<byte[]> kept = new ArrayList<>();
+            List<Integer> numbers = new ArrayList<>();
+            Set<BackupPosition> seen = new HashSet<>();
+            for (int i = 0; i < backups.size(); i++) {
+                NumberedBackup backup = backups.get(i);
+                if (backup.backupNumber() > 0 && seen.add(backup.position())
+                    && index.get(backup.entry().playerUuid(), backup.backupNumber()) == null) {
+                    entries.add(backup.entry());
+                    kept.add(bodies[i]);
+                    numbers.add(backup.backupNumber());
+                }
+            }
+            if (entries.isEmpty()) {
+                return 0;
+            }
+
+            int[] results = new int[entries.size()];
+            saveLocked(entries, kept.toArray(new byte[0][]), numbers.stream().mapToInt(Integer::intValue).toArray(), results);
+            return results[0] < 0 ? -1 : entries.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<UUID> getPlayersOverBackupLimit(int maxBackups) {
+        lock.readLock().lock();
+        try {
+            return index.players().stream().filter(playerUuid -> index.count(playerUuid) > maxBackups).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int trimBackupsForPlayer(UUID playerUuid, int maxBackups) {
+        lock.writeLock().lock();
+        try {
+            if (index.count(playerUuid) <= maxBackups) {
+                return 0; // Within the limit
+            }
+            // Imports can leave gaps in the numbering, so the limit is counted off the live slots: everything below
+            // the oldest backup kept goes
+            int kept = 0;
+            int number = index.highest(playerUuid);
+            for (; kept < maxBackups; number--) {
+                if (index.get(playerUuid, number) != null) {
+                    kept++;
+                }
+            }
+            return delete(playerUuid, number);
+        } catch (IOException e) {
+            LOGGER.error("Could not enforce backup limit for player {}. Full error: ", playerUuid, e);
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeAllBackupsForPlayer(UUID playerUuid) {
+        lock.writeLock().lock();
+        try {
+            int deletedCount = delete(playerUuid, Integer.MAX_VALUE);
+            // Numbering starts over at #1 once a player has no backups left
+            index.removePlayer(playerUuid);
+            LOGGER.info("Removed {} backup(s) for player {}", deletedCount, playerUuid);
+            return deletedCount;
+        } catch (IOException e) {
+            LOGGER.error("Could not remove backups for player {}. Full error: ", playerUuid, e);
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write a tombstone for the player's backups numbered up to {@code maxBackupNumber} and empty their slots.
+     */
+    private int delete(UUID playerUuid, int maxBackupNumber) throws IOException {
+        Segment segment = rotateIfFull();
+        long seq = nextSeq++;
+        append(segment, record(TYPE_TOMBSTONE, seq, playerUuid, maxBackupNumber, new byte[0]), seq);
+        segment.channel.force(false);
+
+        int deleted = 0;
+        int highest = Math.min(maxBackupNumber, index.highest(playerUuid));
+        for (int number = index.lowest(playerUuid); number <= highest; number++) {
+            LogIndex.Slot slot = index.remove(playerUuid, number);
+            if (slot != null) {
+                release(slot);
+                deleted++;
+            }
+        }
+        index.setIndexedSeq(seq);
+        return deleted;
+    }
+
+    /**
+     * Compacts the sealed segments that are mostly dead: live records are copied to the end of the log and the
+     * file is deleted. Runs after each retention sweep.
+     * @return The number of segments compacted
+     */
+    @Override
+    public int removeUnusedSections() {
+        int threshold = ModConfig.SERVER.logCompactionThresholdPercent.get();
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && (segment.liveBytes == 0
+                    || segment.liveBytes * 100 < (segment.size - SEGMENT_HEADER_SIZE) * threshold)) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int compacted = 0;
+        for (Segment segment : candidates) {
+            // One segment at a time, so saves only ever wait for a single segment's copy
+            lock.writeLock().lock();
+            try {
+                if (!isShuttingDown && segments.containsKey(segment.id)) {
+                    compact(segment);
+                    compacted++;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Could not compact backup log segment {}. Full error: ", segment.path.getFileName(), e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return compacted;
+    }
+
+    private void compact(Segment segment) throws IOException {
+        // A tombstone only matters while some other segment may still hold a record older than it
+        long oldestElsewhere = segments.values().stream()
+            .filter(other -> other != segment)
+            .mapToLong(other -> other.minSeq)
+            .min().orElse(Long.MAX_VALUE);
+
+        List<Relocation> moved = new ArrayList<>();
+        List<Segment> written = new ArrayList<>();
+        scan(segment, record -> {
+            if (record.type() == TYPE_BACKUP) {
+                LogIndex.Slot slot = index.get(record.playerUuid(), record.backupNumber());
+                if (slot == null || slot.segment() != segment.id || slot.offset() != record.offset()) {
+                    return; // Deleted, or superseded by a copy from an earlier compaction
+                }
+            } else if (record.seq() <= oldestElsewhere) {
+                return;
+            }
+            Segment target = rotateIfFull();
+            long offset = append(target, record.bytes(), record.seq());
+            if (!written.contains(target)) {
+                written.add(target);
+            }
+            if (record.type() == TYPE_BACKUP) {
+                moved.add(new Relocation(record.playerUuid(), record.backupNumber(), target, offset, record.bytes().length));
+            }
+        });
+        for (Segment target : written) {
+            target.channel.force(false);
+        }
+
+        // Only once the copies are on disk may the index point at them and the original go
+        for (Relocation relocation : moved) {
+            index.relocate(relocation.playerUuid(), relocation.backupNumber(), relocation.target().id, relocation.offset());
+            relocation.target().liveBytes += relocation.length();
+        }
+        index.force();
+
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        compactedSegments.increment();
+        reclaimedBytes.add(segment.size - segment.liveBytes);
+        LOGGER.debug("Compacted backup log segment {}, moved {} live backup(s)", segment.path.getFileName(), moved.size());
+    }
+
+    /**
+     * Replace a missing index by reading every segment: first the tombstones, then every backup they don't cover.
+     * @return The highest sequence number found
+     */
+    private long rebuildIndex() throws IOException {
+        LOGGER.warn("Backup log index is missing, rebuilding it from {} segment(s). This may take a while.", segments.size());
+        Map<UUID, List<long[]>> tombstones = new HashMap<>();
+        for (Segment segment : segments.values()) {
+            segment.minSeq = Long.MAX_VALUE;
+            scan(segment, record -> {
+                segment.minSeq = Math.min(segment.minSeq, record.seq());
+                if (record.type() == TYPE_TOMBSTONE) {
+                    tombstones.computeIfAbsent(record.playerUuid(), uuid -> new ArrayList<>()).add(new long[] {record.seq(), record.backupNumber()});
+                }
+            });
+        }
+
+        long[] maxSeq = {0};
+        for (Segment segment : segments.values()) {
+            scan(segment, record -> {
+                maxSeq[0] = Math.max(maxSeq[0], record.seq());
+                if (record.type() != TYPE_BACKUP || isDeleted(tombstones.get(record.playerUuid()), record)) {
+                    return;
+                }
+                LogIndex.Slot existing = index.get(record.playerUuid(), record.backupNumber());
+                if (existing != null && existing.seq() >= record.seq()) {
+                    return; // A compaction copy of one already indexed
+                }
+                indexRecord(segment, record);
+            });
+        }
+        index.setIndexedSeq(maxSeq[0]);
+        index.force();
+        LOGGER.info("Rebuilt backup log index for {} player(s)", index.players().size());
+        return maxSeq[0];
+    }
+
+    private static boolean isDeleted(@Nullable List<long[]> tombstones, LogRecord record) {
+        if (tombstones != null) {
+            for (long[] tombstone : tombstones) {
+                if (tombstone[0] > record.seq() && tombstone[1] >= record.backupNumber()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index what the newest segment got after the index was last forced, i.e. whatever a crash may have kept off the
+     * index file, and cut off a torn record at its end. Re-indexing a record that did make it is harmless.
+     * @return The highest sequence number found
+     */
+    private long recover(Segment segment) throws IOException {
+        long indexedSeq = index.indexedSeq();
+        long[] maxSeq = {indexedSeq};
+        int[] recovered = {0};
+        segment.minSeq = Long.MAX_VALUE;
+        long end = scan(segment, record -> {
+            segment.minSeq = Math.min(segment.minSeq, record.seq());
+            maxSeq[0] = Math.max(maxSeq[0], record.seq());
+            if (record.seq() <= indexedSeq) {
+                return;
+            }
+            recovered[0]++;
+            if (record.type() == TYPE_BACKUP) {
+                indexRecord(segment, record);
+                return;
+            }
+            for (int number = index.lowest(record.playerUuid()); number <= Math.min(record.backupNumber(), index.highest(record.playerUuid())); number++) {
+                LogIndex.Slot slot = index.get(record.playerUuid(), number);
+                if (slot != null && slot.seq() < record.seq()) {
+                    index.remove(record.playerUuid(), number);
+                }
+            }
+            if (record.backupNumber() == Integer.MAX_VALUE) {
+                index.removePlayer(record.playerUuid());
+            }
+        });
+        if (end < segment.size) {
+            truncate(segment, end);
+        }
+        index.setIndexedSeq(maxSeq[0]);
+        if (recovered[0] > 0) {
+            index.force();
+            LOGGER.info("Recovered {} backup log record(s) written just before the last shutdown", recovered[0]);
+        }
+        return maxSeq[0];
+    }
+
+    private void indexRecord(Segment segment, LogRecord record) throws IOException {
+        CompoundTag tag = NbtPayloadCodec.decode(record.body());
+        BackupEntry entry = BackupEntryTags.fromTag(tag);
+        index.put(record.playerUuid(), record.backupNumber(), new LogIndex.Slot(segment.id, record.offset(), record.bytes().length,
+            record.seq(), entry.timestamp(), entry.eventType(), entry.world()));
+    }
+
+    private void release(LogIndex.Slot slot) {
+        Segment segment = segments.get(slot.segment());
+        if (segment != null) {
+            segment.liveBytes -= slot.length();
+        }
+    }
+
+    /**
+     * Seal the active segment and start a new one if it is full. Callers hold the write lock.
+     * @return The segment to append to
+     */
+    private Segment rotateIfFull() {
+        if (active.size >= segmentMaxBytes) {
+            try {
+                writeMinSeq(active);
+                // From here on a crash can only leave unindexed records in the new segment
+                index.force();
+                active = newSegment();
+            } catch (IOException e) {
+                LOGGER.error("Could not start a new backup log segment, appending to {} instead. Full error: ", active.path.getFileName(), e);
+            }
+        }
+        return active;
+    }
+
+    private static long append(Segment segment, byte[] record, long seq) throws IOException {
+        long offset = segment.size;
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            segment.channel.write(buffer, offset + buffer.position());
+        }
+        segment.size += record.length;
+        segment.minSeq = Math.min(segment.minSeq, seq);
+        return offset;
+    }
+
+    private static void truncate(Segment segment, long size) {
+        try {
+            segment.channel.truncate(size);
+            segment.size = size;
+        } catch (IOException e) {
+            LOGGER.error("Could not truncate backup log segment {}. Full error: ", segment.path.getFileName(), e);
+        }
+    }
+
+    private BackupEntry readEntry(LogIndex.Slot slot) throws IOException {
+        Segment segment = segments.get(slot.segment());
+        if (segment == null) {
+            throw new IOException("Index points at missing log segment " + slot.segment());
+        }
+        byte[] record = read(segment, slot.offset(), slot.length());
+        return BackupEntryTags.fromTag(NbtPayloadCodec.decode(Arrays.copyOfRange(record, RECORD_HEADER_SIZE, record.length)));
+    }
+
+    private static byte[] read(Segment segment, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (segment.channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Backup log record runs past the end of " + segment.path.getFileName());
+            }
+        }
+        byte[] record = buffer.array();
+        if (checksum(record) != buffer.getInt(4)) {
+            throw new IOException("Corrupt backup log record at offset " + offset + " of " + segment.path.getFileName());
+        }
+        return record;
+    }
+
+    /**
+     * Read every intact record of a segment in order. Reading stops at the first torn or corrupt record.
+     * @return The offset just past the last intact record
+     */
+    private static long scan(Segment segment, RecordVisitor visitor) throws IOException {
+        long offset = SEGMENT_HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+            in.skipNBytes(SEGMENT_HEADER_SIZE);
+            while (offset + RECORD_HEADER_SIZE <= segment.size) {
+                byte[] header = new byte[RECORD_HEADER_SIZE];
+                in.readFully(header);
+                int length = ByteBuffer.wrap(header).getInt(0);
+                if (length < 0 || length > MAX_RECORD_SIZE || offset + RECORD_HEADER_SIZE + length > segment.size) {
+                    LOGGER.warn("Backup log {} ends in a torn record at offset {}, ignoring the rest", segment.path.getFileName(), offset);
+                    break;
+                }
+                byte[] record = Arrays.copyOf(header, RECORD_HEADER_SIZE + length);
+                in.readFully(record, RECORD_HEADER_SIZE, length);
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                if (checksum(record) != buffer.getInt(4)) {
+                    LOGGER.warn("Backup log {} has a corrupt record at offset {}, ignoring the rest", segment.path.getFileName(), offset);
+                    break;
+                }
+
+                visitor.visit(new LogRecord(offset, buffer.get(8), buffer.getLong(9), new UUID(buffer.getLong(17), buffer.getLong(25)),
+                    buffer.getInt(33), record));
+                offset += record.length;
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Backup log {} ended early", segment.path.getFileName());
+        }
+        return offset;
+    }
+
+    private static byte[] record(byte type, long seq, UUID playerUuid, int backupNumber, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        buffer.putInt(body.length).putInt(0).put(type).putLong(seq)
+            .putLong(playerUuid.getMostSignificantBits()).putLong(playerUuid.getLeastSignificantBits())
+            .putInt(backupNumber).put(body);
+        byte[] record = buffer.array();
+        buffer.putInt(4, checksum(record));
+        return record;
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 8, record.length - 8);
+        return (int) crc.getValue();
+    }
+
+    @Nullable
+    private static Segment openSegment(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < SEGMENT_HEADER_SIZE) {
+            // Created just before a crash, nothing in it
+            channel.close();
+            Files.deleteIfExists(path);
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading
+        }
+        if (header.getInt(0) != SEGMENT_MAGIC || header.getInt(4) > SEGMENT_VERSION) {
+            channel.close();
+            throw new IOException("Not a backup log segment: " + path.getFileName());
+        }
+        Segment segment = new Segment(segmentId(path), path, channel);
+        segment.size = channel.size();
+        segment.minSeq = header.getLong(8);
+        return segment;
+    }
+
+    private Segment newSegment() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).putLong(Long.MAX_VALUE).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        Segment segment = new Segment(id, path, channel);
+        segment.size = SEGMENT_HEADER_SIZE;
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static void writeMinSeq(Segment segment) throws IOException {
+        ByteBuffer minSeq = ByteBuffer.allocate(Long.BYTES).putLong(segment.minSeq).flip();
+        while (minSeq.hasRemaining()) {
+            segment.channel.write(minSeq, 8 + minSeq.position());
+        }
+        segment.channel.force(false);
+    }
+
+    private static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && segmentId(path) > 0;
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        LOGGER.info("Backup log shutting down...");
+        isShuttingDown = true;
+        lock.writeLock().lock();
+        try {
+            writeMinSeq(active);
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            index.close();
+            LOGGER.info("Backup log closed ({} segment(s) compacted this session).", compactedSegments.sum());
+        } catch (IOException e) {
+            LOGGER.error("Error closing the backup log. Full error: ", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            long liveBytes = 0;
+            for (Segment segment : segments.values()) {
+                bytes += segment.size;
+                liveBytes += segment.liveBytes;
+            }
+            return new Stats(segments.size(), bytes, liveBytes, compactedSegments.sum(), reclaimedBytes.sum());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Stats(int segments, long bytes, long liveBytes, long compactedSegments, long reclaimedBytes) {}
+
+    /**
+     * One segment file. Fields are guarded by the store's lock.
+     */
+    private static class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        // Bytes of records the index still points at
+        long liveBytes;
+        // Lowest record seq in the file, Long.MAX_VALUE while unknown or empty
+        long minSeq = Long.MAX_VALUE;
+
+        Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * A record read back from a segment.
+     * @param bytes The whole record, header included
+     */
+    private record LogRecord(long offset, byte type, long seq, UUID playerUuid, int backupNumber, byte[] bytes) {
+        byte[] body() {
+            return Arrays.copyOfRange(bytes, RECORD_HEADER_SIZE, bytes.length);
+        }
+    }
+
+    private record Relocation(UUID playerUuid, int backupNumber, Segment target, long offset, int length) {}
+
+    private interface RecordVisitor {
+        void visit(LogRecord record) throws IOException;
+    }
+}
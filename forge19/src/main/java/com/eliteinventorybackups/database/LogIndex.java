@@ -0,0 +1,406 @@
+package com.eliteinventorybackups.database;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Memory-mapped index of the {@link LogBackupStore}: where each backup's record is, by player and backup number,
+ * plus the few columns a summary needs so listing never reads the log.
+ * <p>
+ * The file is a header page followed by fixed-size pages. Every page belongs to one player and holds
+ * {@link #SLOTS_PER_PAGE} consecutive backup numbers, so a lookup is an array index into the player's page table
+ * and then into the page. Page owners are written in the page itself, which is how the tables are rebuilt on startup.
+ * <p>
+ * The operating system writes mapped pages back in any order, so the header's indexed sequence number is only written
+ * by {@link #force()}, after every slot page is on disk. After a crash it can lag behind the slots, never run ahead of them.
+ * Not thread-safe; the store guards it.
+ */
+class LogIndex {
+    private static final int MAGIC = 0x45494249; // "EIBI"
+    private static final int VERSION = 1;
+    private static final int PAGE_SIZE = 8192;
+    // [long owner msb][long owner lsb][int page ordinal], rest reserved; an all-zero owner marks a free page
+    private static final int PAGE_HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 128;
+    static final int SLOTS_PER_PAGE = (PAGE_SIZE - PAGE_HEADER_SIZE) / SLOT_SIZE;
+    // Mapped a window at a time, so the file can outgrow a single 2 GiB mapping
+    private static final int PAGES_PER_WINDOW = 1024;
+
+    // Slot layout. The segment is written last and 0 means empty.
+    private static final int SLOT_SEGMENT = 0;
+    private static final int SLOT_LENGTH = 4;
+    private static final int SLOT_OFFSET = 8;
+    private static final int SLOT_SEQ = 16;
+    private static final int SLOT_TIMESTAMP = 24;
+    private static final int SLOT_EVENT = 32;
+    private static final int SLOT_WORLD = 64;
+    // One length byte in front of each string; longer values are cut, the record itself keeps them whole
+    private static final int MAX_EVENT_BYTES = SLOT_WORLD - SLOT_EVENT - 1;
+    private static final int MAX_WORLD_BYTES = SLOT_SIZE - SLOT_WORLD - 1;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> windows = new ArrayList<>();
+    private final Deque<Integer> freePages = new ArrayDeque<>();
+    private final Map<UUID, PlayerPages> players = new HashMap<>();
+    private final boolean created;
+    // Reaches the header only in force()
+    private long indexedSeq;
+
+    LogIndex(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.created = channel.size() == 0;
+        long windowCount = Math.max(1, (channel.size() + windowBytes() - 1) / windowBytes());
+        for (int i = 0; i < windowCount; i++) {
+            mapWindow();
+        }
+
+        MappedByteBuffer header = windows.get(0);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(8, 0);
+            header.force(0, PAGE_SIZE);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) > VERSION) {
+            throw new IOException("Not a backup log index: " + path.getFileName());
+        }
+        indexedSeq = header.getLong(8);
+
+        // Page 0 is the header; every other page is free or owned
+        for (int page = 1; page < windows.size() * PAGES_PER_WINDOW; page++) {
+            MappedByteBuffer window = window(page);
+            int base = pageBase(page);
+            long msb = window.getLong(base);
+            long lsb = window.getLong(base + 8);
+            if (msb == 0 && lsb == 0) {
+                freePages.add(page);
+                continue;
+            }
+            UUID owner = new UUID(msb, lsb);
+            players.computeIfAbsent(owner, uuid -> new PlayerPages()).setPage(window.getInt(base + 16), page);
+        }
+        for (PlayerPages pages : players.values()) {
+            recount(pages);
+        }
+    }
+
+    /**
+     * True if the file did not exist, i.e. the index has to be rebuilt from the log.
+     */
+    boolean isNew() {
+        return created;
+    }
+
+    /**
+     * The highest record sequence number whose effect is in the index.
+     */
+    long indexedSeq() {
+        return indexedSeq;
+    }
+
+    /**
+     * Takes effect in memory right away; on disk with the next {@link #force()}, together with the slots it covers.
+     */
+    void setIndexedSeq(long seq) {
+        indexedSeq = seq;
+    }
+
+    @Nullable
+    Slot get(UUID playerUuid, int backupNumber) {
+        int page = page(playerUuid, backupNumber);
+        if (page == 0) {
+            return null;
+        }
+        MappedByteBuffer window = window(page);
+        int base = slotBase(page, backupNumber);
+        int segment = window.getInt(base + SLOT_SEGMENT);
+        if (segment == 0) {
+            return null;
+        }
+        return new Slot(segment, window.getLong(base + SLOT_OFFSET), window.getInt(base + SLOT_LENGTH),
+            window.getLong(base + SLOT_SEQ), window.getLong(base + SLOT_TIMESTAMP),
+            readString(window, base + SLOT_EVENT), readString(window, base + SLOT_WORLD));
+    }
+
+    void put(UUID playerUuid, int backupNumber, Slot slot) throws IOException {
+        PlayerPages pages = players.computeIfAbsent(playerUuid, uuid -> new PlayerPages());
+        int ordinal = (backupNumber - 1) / SLOTS_PER_PAGE;
+        int page = pages.page(ordinal);
+        if (page == 0) {
+            page = allocatePage(playerUuid, ordinal);
+            pages.setPage(ordinal, page);
+        }
+
+        MappedByteBuffer window = window(page);
+        int base = slotBase(page, backupNumber);
+        boolean wasEmpty = window.getInt(base + SLOT_SEGMENT) == 0;
+        window.putInt(base + SLOT_LENGTH, slot.length());
+        window.putLong(base + SLOT_OFFSET, slot.offset());
+        window.putLong(base + SLOT_SEQ, slot.seq());
+        window.putLong(base + SLOT_TIMESTAMP, slot.timestamp());
+        writeString(window, base + SLOT_EVENT, slot.eventType(), MAX_EVENT_BYTES);
+        writeString(window, base + SLOT_WORLD, slot.world(), MAX_WORLD_BYTES);
+        window.putInt(base + SLOT_SEGMENT, slot.segment());
+
+        if (wasEmpty) {
+            pages.count++;
+            pages.lowest = Math.min(pages.lowest, backupNumber);
+            pages.highest = Math.max(pages.highest, backupNumber);
+        }
+    }
+
+    /**
+     * Point an existing slot at a copy of its record, after compaction moved it.
+     */
+    void relocate(UUID playerUuid, int backupNumber, int segment, long offset) {
+        int page = page(playerUuid, backupNumber);
+        if (page == 0) {
+            return;
+        }
+        MappedByteBuffer window = window(page);
+        int base = slotBase(page, backupNumber);
+        window.putLong(base + SLOT_OFFSET, offset);
+        window.putInt(base + SLOT_SEGMENT, segment);
+    }
+
+    /**
+     * Empty a slot. A page left with no backups is freed.
+     * @return What the slot held, or null if it was already empty
+     */
+    @Nullable
+    Slot remove(UUID playerUuid, int backupNumber) {
+        Slot slot = get(playerUuid, backupNumber);
+        if (slot == null) {
+            return null;
+        }
+        PlayerPages pages = players.get(playerUuid);
+        int ordinal = (backupNumber - 1) / SLOTS_PER_PAGE;
+        int page = pages.page(ordinal);
+        window(page).putInt(slotBase(page, backupNumber) + SLOT_SEGMENT, 0);
+
+        pages.count--;
+        if (pageIsEmpty(page)) {
+            freePage(page);
+            pages.setPage(ordinal, 0);
+        }
+        if (pages.count == 0) {
+            // Keep the highest number, so numbering carries on where it left off
+            pages.lowest = Integer.MAX_VALUE;
+        } else if (backupNumber == pages.lowest) {
+            while (get(playerUuid, pages.lowest) == null) {
+                pages.lowest++;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Forget a player entirely; their numbering starts over at #1.
+     */
+    void removePlayer(UUID playerUuid) {
+        PlayerPages pages = players.remove(playerUuid);
+        if (pages == null) {
+            return;
+        }
+        for (int page : pages.pages) {
+            if (page != 0) {
+                freePage(page);
+            }
+        }
+    }
+
+    int highest(UUID playerUuid) {
+        PlayerPages pages = players.get(playerUuid);
+        return pages == null ? 0 : pages.highest;
+    }
+
+    /**
+     * @return The player's oldest backup number, or {@link Integer#MAX_VALUE} if they have none
+     */
+    int lowest(UUID playerUuid) {
+        PlayerPages pages = players.get(playerUuid);
+        return pages == null ? Integer.MAX_VALUE : pages.lowest;
+    }
+
+    int count(UUID playerUuid) {
+        PlayerPages pages = players.get(playerUuid);
+        return pages == null ? 0 : pages.count;
+    }
+
+    Set<UUID> players() {
+        return players.keySet();
+    }
+
+    void forEachSlot(Consumer<Slot> action) {
+        for (Map.Entry<UUID, PlayerPages> player : players.entrySet()) {
+            PlayerPages pages = player.getValue();
+            for (int number = pages.lowest; number <= pages.highest; number++) {
+                Slot slot = get(player.getKey(), number);
+                if (slot != null) {
+                    action.accept(slot);
+                }
+            }
+        }
+    }
+
+    void force() {
+        for (MappedByteBuffer window : windows) {
+            window.force();
+        }
+        // Only now may the header claim these slots; written any earlier, it could reach the disk before them
+        MappedByteBuffer header = windows.get(0);
+        header.putLong(8, indexedSeq);
+        header.force(0, PAGE_SIZE);
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private int page(UUID playerUuid, int backupNumber) {
+        PlayerPages pages = players.get(playerUuid);
+        return backupNumber <= 0 || pages == null ? 0 : pages.page((backupNumber - 1) / SLOTS_PER_PAGE);
+    }
+
+    private int allocatePage(UUID owner, int ordinal) throws IOException {
+        if (freePages.isEmpty()) {
+            int first = windows.size() * PAGES_PER_WINDOW;
+            mapWindow();
+            for (int page = first; page < first + PAGES_PER_WINDOW; page++) {
+                freePages.add(page);
+            }
+        }
+        int page = freePages.poll();
+        MappedByteBuffer window = window(page);
+        int base = pageBase(page);
+        window.putInt(base + 16, ordinal);
+        window.putLong(base + 8, owner.getLeastSignificantBits());
+        window.putLong(base, owner.getMostSignificantBits());
+        return page;
+    }
+
+    private void freePage(int page) {
+        MappedByteBuffer window = window(page);
+        int base = pageBase(page);
+        for (int i = 0; i < PAGE_SIZE; i += Long.BYTES) {
+            window.putLong(base + i, 0);
+        }
+        freePages.push(page);
+    }
+
+    private boolean pageIsEmpty(int page) {
+        MappedByteBuffer window = window(page);
+        int base = pageBase(page) + PAGE_HEADER_SIZE;
+        for (int i = 0; i < SLOTS_PER_PAGE; i++) {
+            if (window.getInt(base + i * SLOT_SIZE + SLOT_SEGMENT) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recount(PlayerPages pages) {
+        for (int ordinal = 0; ordinal < pages.pages.length; ordinal++) {
+            int page = pages.pages[ordinal];
+            if (page == 0) {
+                continue;
+            }
+            MappedByteBuffer window = window(page);
+            int base = pageBase(page) + PAGE_HEADER_SIZE;
+            for (int i = 0; i < SLOTS_PER_PAGE; i++) {
+                if (window.getInt(base + i * SLOT_SIZE + SLOT_SEGMENT) != 0) {
+                    int number = ordinal * SLOTS_PER_PAGE + i + 1;
+                    pages.count++;
+                    pages.lowest = Math.min(pages.lowest, number);
+                    pages.highest = Math.max(pages.highest, number);
+                }
+            }
+        }
+    }
+
+    private void mapWindow() throws IOException {
+        // Mapping past the end grows the file
+        windows.add(channel.map(FileChannel.MapMode.READ_WRITE, windows.size() * windowBytes(), windowBytes()));
+    }
+
+    private MappedByteBuffer window(int page) {
+        return windows.get(page / PAGES_PER_WINDOW);
+    }
+
+    private static long windowBytes() {
+        return (long) PAGES_PER_WINDOW * PAGE_SIZE;
+    }
+
+    private static int pageBase(int page) {
+        return (page % PAGES_PER_WINDOW) * PAGE_SIZE;
+    }
+
+    private static int slotBase(int page, int backupNumber) {
+        return pageBase(page) + PAGE_HEADER_SIZE + ((backupNumber - 1) % SLOTS_PER_PAGE) * SLOT_SIZE;
+    }
+
+    private static void writeString(MappedByteBuffer window, int index, @Nullable String value, int maxBytes) {
+        if (value == null) {
+            window.put(index, (byte) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, maxBytes);
+        window.put(index, (byte) length);
+        window.put(index + 1, bytes, 0, length);
+    }
+
+    @Nullable
+    private static String readString(MappedByteBuffer window, int index) {
+        int length = window.get(index);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        window.get(index + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Where a backup's record is in the log, and what its summary shows.
+     * @param length Length of the whole record, header included
+     */
+    record Slot(int segment, long offset, int length, long seq, long timestamp, String eventType, @Nullable String world) {}
+
+    /**
+     * A player's page table, by page ordinal (0 = no page), and what their slots hold.
+     */
+    private static class PlayerPages {
+        int[] pages = new int[0];
+        int lowest = Integer.MAX_VALUE;
+        int highest = 0;
+        int count = 0;
+
+        int page(int ordinal) {
+            return ordinal < pages.length ? pages[ordinal] : 0;
+        }
+
+        void setPage(int ordinal, int page) {
+            if (ordinal >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(ordinal + 1, pages.length * 2));
+            }
+            pages[ordinal] = page;
+        }
+    }
+}
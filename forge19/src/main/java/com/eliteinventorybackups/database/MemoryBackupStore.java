@@ -0,0 +1,187 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Reference engine that keeps every backup in memory and loses them on restart. It has none of the
+ * storage tricks of the database engines (no duplicate detection, death coalescing or shared sections),
+ * which makes it a baseline for benchmarks and a quick way to exercise the rest of the mod.
+ * Entries are kept as given, not copied.
+ */
+public class MemoryBackupStore implements BackupStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    // Guarded by this
+    private final Map<UUID, NavigableMap<Integer, BackupEntry>> backups = new HashMap<>();
+    // Last backup number handed out per player; kept when backups are trimmed, dropped when all are removed
+    private final Object2IntOpenHashMap<UUID> sequences = new Object2IntOpenHashMap<>();
+
+    public MemoryBackupStore() {
+        LOGGER.warn("Using the in-memory backup store, backups will be lost when the server stops.");
+    }
+
+    @Override
+    public synchronized int[] saveBackups(List<BackupEntry> entries) {
+        int[] results = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            BackupEntry entry = entries.get(i);
+            int backupNumber = sequences.getInt(entry.playerUuid()) + 1;
+            sequences.put(entry.playerUuid(), backupNumber);
+            backups.computeIfAbsent(entry.playerUuid(), uuid -> new TreeMap<>()).put(backupNumber, entry);
+            results[i] = backupNumber;
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<BackupSummary> getBackupSummaries(UUID playerUuid) {
+        return summaries(playerBackups(playerUuid).descendingMap(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized boolean hasBackup(UUID playerUuid, long timestamp, String eventType) {
+        for (BackupEntry entry : playerBackups(playerUuid).values()) {
+            if (entry.timestamp() == timestamp && entry.eventType().equals(eventType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized int countBackups(UUID playerUuid) {
+        return playerBackups(playerUuid).size();
+    }
+
+    @Override
+    public synchronized List<BackupSummary> getBackupsOlderThan(UUID playerUuid, int backupNumber, int limit) {
+        return summaries(playerBackups(playerUuid).headMap(backupNumber, false).descendingMap(), limit);
+    }
+
+    @Override
+    public synchronized List<BackupSummary> getBackupsNewerThan(UUID playerUuid, int backupNumber, int limit) {
+        // The ones just above, so take them oldest first and flip the result
+        List<BackupSummary> summaries = summaries(playerBackups(playerUuid).tailMap(backupNumber, false), limit);
+        Collections.reverse(summaries);
+        return summaries;
+    }
+
+    @Override
+    public synchronized List<BackupSummary> getBackupSummaryPage(UUID playerUuid, int offset, int limit) {
+        List<BackupSummary> all = getBackupSummaries(playerUuid);
+        if (offset >= all.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(all.subList(offset, Math.min(offset + limit, all.size())));
+    }
+
+    @Override
+    @Nullable
+    public synchronized BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber) {
+        return playerBackups(playerUuid).get(backupNumber);
+    }
+
+    @Override
+    public synchronized List<NumberedBackup> readBackupsAfter(@Nullable BackupPosition after, int limit) {
+        List<NumberedBackup> page = new ArrayList<>();
+        List<UUID> players = new ArrayList<>(backups.keySet());
+        players.sort(Comparator.comparing(UUID::toString));
+        for (UUID playerUuid : players) {
+            int order = after == null ? 1 : playerUuid.toString().compareTo(after.playerUuid().toString());
+            if (order < 0) {
+                continue;
+            }
+            NavigableMap<Integer, BackupEntry> playerBackups = backups.get(playerUuid);
+            for (Map.Entry<Integer, BackupEntry> backup : (order == 0 ? playerBackups.tailMap(after.backupNumber(), false) : playerBackups).entrySet()) {
+                if (page.size() >= limit) {
+                    return page;
+                }
+                page.add(new NumberedBackup(backup.getKey(), backup.getValue()));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized int importBackups(List<NumberedBackup> imported) {
+        int stored = 0;
+        for (NumberedBackup backup : imported) {
+            UUID playerUuid = backup.entry().playerUuid();
+            if (backups.computeIfAbsent(playerUuid, uuid -> new TreeMap<>()).putIfAbsent(backup.backupNumber(), backup.entry()) == null) {
+                sequences.put(playerUuid, Math.max(sequences.getInt(playerUuid), backup.backupNumber()));
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    @Override
+    public synchronized List<UUID> getPlayersOverBackupLimit(int maxBackups) {
+        List<UUID> players = new ArrayList<>();
+        backups.forEach((playerUuid, playerBackups) -> {
+            if (playerBackups.size() > maxBackups) {
+                players.add(playerUuid);
+            }
+        });
+        return players;
+    }
+
+    @Override
+    public synchronized int trimBackupsForPlayer(UUID playerUuid, int maxBackups) {
+        NavigableMap<Integer, BackupEntry> playerBackups = playerBackups(playerUuid);
+        int deleted = 0;
+        while (playerBackups.size() > maxBackups) {
+            playerBackups.pollFirstEntry();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized int removeAllBackupsForPlayer(UUID playerUuid) {
+        NavigableMap<Integer, BackupEntry> removed = backups.remove(playerUuid);
+        // Numbering starts over at #1 once a player has no backups left
+        sequences.removeInt(playerUuid);
+        int deletedCount = removed == null ? 0 : removed.size();
+        LOGGER.info("Removed {} backup(s) for player {}", deletedCount, playerUuid);
+        return deletedCount;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        LOGGER.info("In-memory backup store shutting down, dropping {} player(s) worth of backups.", backups.size());
+        backups.clear();
+        sequences.clear();
+    }
+
+    private NavigableMap<Integer, BackupEntry> playerBackups(UUID playerUuid) {
+        return backups.getOrDefault(playerUuid, new TreeMap<>());
+    }
+
+    private static List<BackupSummary> summaries(NavigableMap<Integer, BackupEntry> source, int limit) {
+        List<BackupSummary> summaries = new ArrayList<>();
+        for (Map.Entry<Integer, BackupEntry> backup : source.entrySet()) {
+            if (summaries.size() >= limit) {
+                break;
+            }
+            BackupEntry entry = backup.getValue();
+            summaries.add(new BackupSummary(backup.getKey(), entry.timestamp(), entry.eventType(), entry.world(), 1, false));
+        }
+        return summaries;
+    }
+}
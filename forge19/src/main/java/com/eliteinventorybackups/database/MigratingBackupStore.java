@@ -0,0 +1,313 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.mojang.logging.LogUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stands in for the current engine while {@link StoreMigrator} copies it to another one. Everything is read from
+ * the source; every change is made on the source and then repeated on the target, saves under the number the
+ * source gave them, so the target never hands out numbers of its own.
+ * <p>
+ * Deletes can still race with the bulk copy (a backup read for copying just before it was deleted reaches the
+ * target just after), so players changed by a delete, or by a write the target missed, are remembered as dirty
+ * for the migrator to fix up.
+ */
+class MigratingBackupStore implements BackupStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final BackupStore source;
+    private final BackupStore target;
+    // Shared by saves, exclusive for deletes and for the cutover, so a save never lands half on each side of either
+    private final ReentrantReadWriteLock writeLock = new ReentrantReadWriteLock(true);
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    // Set at cutover; writes that were waiting for it go to the target alone
+    private volatile boolean switched = false;
+
+    private final LongAdder dualWrites = new LongAdder();
+    private final LongAdder missedWrites = new LongAdder();
+
+    MigratingBackupStore(BackupStore source, BackupStore target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    BackupStore source() {
+        return source;
+    }
+
+    BackupStore target() {
+        return target;
+    }
+
+    /**
+     * Blocks every change until {@link #unfreeze()}, so the two sides can be compared at rest.
+     */
+    void freeze() {
+        writeLock.writeLock().lock();
+    }
+
+    /**
+     * @param switchedToTarget Whether changes from now on belong to the target alone
+     */
+    void unfreeze(boolean switchedToTarget) {
+        switched = switchedToTarget;
+        writeLock.writeLock().unlock();
+    }
+
+    /**
+     * Takes the players that may differ between the two sides.
+     */
+    List<UUID> drainDirtyPlayers() {
+        List<UUID> players = new ArrayList<>(dirtyPlayers);
+        dirtyPlayers.removeAll(players);
+        return players;
+    }
+
+    void markDirty(UUID playerUuid) {
+        dirtyPlayers.add(playerUuid);
+    }
+
+    int dirtyPlayerCount() {
+        return dirtyPlayers.size();
+    }
+
+    long dualWrites() {
+        return dualWrites.sum();
+    }
+
+    long missedWrites() {
+        return missedWrites.sum();
+    }
+
+    @Override
+    public int[] saveBackups(List<BackupEntry> entries) {
+        writeLock.readLock().lock();
+        try {
+            if (switched) {
+                return target.saveBackups(entries);
+            }
+            int[] results = source.saveBackups(entries);
+            List<NumberedBackup> saved = new ArrayList<>();
+            Set<BackupPosition> deaths = new LinkedHashSet<>();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] > 0) {
+                    // A coalesced death comes back under the number it was folded into; the target skips it as
+                    // already there, so its count is copied over below
+                    saved.add(new NumberedBackup(results[i], entries.get(i)));
+                    if ("death".equals(entries.get(i).eventType())) {
+                        deaths.add(new BackupPosition(entries.get(i).playerUuid(), results[i]));
+                    }
+                }
+            }
+            copyToTarget(saved);
+            for (BackupPosition death : deaths) {
+                copyDeathCount(death);
+            }
+            return results;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int importBackups(List<NumberedBackup> backups) {
+        writeLock.readLock().lock();
+        try {
+            if (switched) {
+                return target.importBackups(backups);
+            }
+            int imported = source.importBackups(backups);
+            if (imported > 0) {
+                // Numbers the source already had are left out there too; the target skips them the same way
+                copyToTarget(backups);
+            }
+            return imported;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    private void copyToTarget(List<NumberedBackup> backups) {
+        if (backups.isEmpty()) {
+            return;
+        }
+        if (target.importBackups(backups) < 0) {
+            missedWrites.add(backups.size());
+            for (NumberedBackup backup : backups) {
+                dirtyPlayers.add(backup.entry().playerUuid());
+            }
+        } else {
+            dualWrites.add(backups.size());
+        }
+    }
+
+    private void copyDeathCount(BackupPosition death) {
+        List<BackupSummary> summary = source.getBackupsNewerThan(death.playerUuid(), death.backupNumber() - 1, 1);
+        if (summary.isEmpty() || summary.get(0).id() != death.backupNumber() || summary.get(0).deathCount() <= 1) {
+            return;
+        }
+        if (!target.setDeathCount(death.playerUuid(), death.backupNumber(), summary.get(0).deathCount())) {
+            missedWrites.increment();
+            dirtyPlayers.add(death.playerUuid());
+        }
+    }
+
+    @Override
+    public boolean setDeathCount(UUID playerUuid, int backupNumber, int deathCount) {
+        writeLock.readLock().lock();
+        try {
+            if (switched) {
+                return target.setDeathCount(playerUuid, backupNumber, deathCount);
+            }
+            boolean updated = source.setDeathCount(playerUuid, backupNumber, deathCount);
+            if (updated && !target.setDeathCount(playerUuid, backupNumber, deathCount)) {
+                missedWrites.increment();
+                dirtyPlayers.add(playerUuid);
+            }
+            return updated;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int trimBackupsForPlayer(UUID playerUuid, int maxBackups) {
+        writeLock.writeLock().lock();
+        try {
+            if (switched) {
+                return target.trimBackupsForPlayer(playerUuid, maxBackups);
+            }
+            int deleted = source.trimBackupsForPlayer(playerUuid, maxBackups);
+            if (deleted > 0) {
+                target.trimBackupsForPlayer(playerUuid, maxBackups);
+                dirtyPlayers.add(playerUuid);
+            }
+            return deleted;
+        } finally {
+            writeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeAllBackupsForPlayer(UUID playerUuid) {
+        writeLock.writeLock().lock();
+        try {
+            if (switched) {
+                return target.removeAllBackupsForPlayer(playerUuid);
+            }
+            int deleted = source.removeAllBackupsForPlayer(playerUuid);
+            target.removeAllBackupsForPlayer(playerUuid);
+            dirtyPlayers.add(playerUuid);
+            return deleted;
+        } finally {
+            writeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The rest only reads, so it stays with whichever side is current.
+     */
+    private BackupStore current() {
+        return switched ? target : source;
+    }
+
+    @Override
+    @Nullable
+    public List<BackupSummary> getBackupSummaries(UUID playerUuid) {
+        return current().getBackupSummaries(playerUuid);
+    }
+
+    @Override
+    public boolean hasBackup(UUID playerUuid, long timestamp, String eventType) {
+        return current().hasBackup(playerUuid, timestamp, eventType);
+    }
+
+    @Override
+    public int countBackups(UUID playerUuid) {
+        return current().countBackups(playerUuid);
+    }
+
+    @Override
+    public List<BackupSummary> getBackupsOlderThan(UUID playerUuid, int backupNumber, int limit) {
+        return current().getBackupsOlderThan(playerUuid, backupNumber, limit);
+    }
+
+    @Override
+    public List<BackupSummary> getBackupsNewerThan(UUID playerUuid, int backupNumber, int limit) {
+        return current().getBackupsNewerThan(playerUuid, backupNumber, limit);
+    }
+
+    @Override
+    public List<BackupSummary> getBackupSummaryPage(UUID playerUuid, int offset, int limit) {
+        return current().getBackupSummaryPage(playerUuid, offset, limit);
+    }
+
+    @Override
+    @Nullable
+    public BackupEntry getBackupByNumber(UUID playerUuid, int backupNumber) {
+        return current().getBackupByNumber(playerUuid, backupNumber);
+    }
+
+    @Override
+    @Nullable
+    public List<NumberedBackup> readBackupsAfter(@Nullable BackupPosition after, int limit) {
+        return current().readBackupsAfter(after, limit);
+    }
+
+    @Override
+    public List<UUID> getPlayersOverBackupLimit(int maxBackups) {
+        return current().getPlayersOverBackupLimit(maxBackups);
+    }
+
+    /**
+     * Paused until the cutover: archiving on the source alone would leave the copy behind, and both engines keep
+     * their archive files in the same folder, so the source's cleanup could rewrite files the target points into.
+     */
+    @Override
+    public List<UUID> archiveBackupsOlderThan(long timestamp, int limit) {
+        return switched ? target.archiveBackupsOlderThan(timestamp, limit) : List.of();
+    }
+
+    @Override
+    public int removeUnusedSections() {
+        return switched ? target.removeUnusedSections() : 0;
+    }
+
+    @Override
+    public StorageStats getStorageStats() {
+        return current().getStorageStats();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return current().isAvailable();
+    }
+
+    @Override
+    @Nullable
+    public CircuitBreaker getCircuitBreaker() {
+        return current().getCircuitBreaker();
+    }
+
+    /**
+     * Only reached when the server stops mid-migration; the migrator has already given up by then.
+     */
+    @Override
+    public void shutdown() {
+        LOGGER.info("Shutting down both stores of the interrupted migration");
+        target.shutdown();
+        source.shutdown();
+    }
+}
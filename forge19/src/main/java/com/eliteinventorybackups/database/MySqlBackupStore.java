@@ -0,0 +1,187 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.mojang.logging.LogUtils;
+import com.zaxxer.hikari.HikariConfig;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * External MySQL/MariaDB server, configured in the {@code [database.mysql]} section.
+ */
+public class MySqlBackupStore extends JdbcBackupStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public MySqlBackupStore() {
+        super(prepareDatabase());
+    }
+
+    private static String prepareDatabase() {
+        String host = ModConfig.SERVER.mysqlHost.get();
+        int port = ModConfig.SERVER.mysqlPort.get();
+        String database = ModConfig.SERVER.mysqlDatabase.get();
+        boolean useSSL = ModConfig.SERVER.mysqlUseSSL.get();
+        String extraParams = ModConfig.SERVER.mysqlExtraParams.get();
+
+        // Automatically create the database if it doesn't exist
+        createDatabaseIfNeeded(host, port, database, ModConfig.SERVER.mysqlUsername.get(), ModConfig.SERVER.mysqlPassword.get(), useSSL);
+
+        String jdbcUrl = buildMysqlUrl(host, port, database, useSSL, extraParams);
+        LOGGER.info("Attempting to connect to MySQL with URL: {}", jdbcUrl);
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            LOGGER.error("MySQL JDBC driver not found.", e);
+        }
+        return jdbcUrl;
+    }
+
+    @Override
+    protected void configurePool(HikariConfig config) {
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setUsername(ModConfig.SERVER.mysqlUsername.get());
+        config.setPassword(ModConfig.SERVER.mysqlPassword.get());
+        // Let the driver reuse parsed statements across pooled connections
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+    }
+
+    @Override
+    protected List<String> tableDdl() {
+        return List.of("""
+            CREATE TABLE IF NOT EXISTS backup_meta (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                player_uuid VARCHAR(36) NOT NULL,
+                player_name VARCHAR(255),
+                backup_number INT NOT NULL,
+                timestamp BIGINT NOT NULL,
+                event_type VARCHAR(50),
+                world VARCHAR(255),
+                pos_x DOUBLE,
+                pos_y DOUBLE,
+                pos_z DOUBLE,
+                experience_level INT,
+                experience_progress FLOAT,
+                cause_of_death TEXT,
+                content_hash VARCHAR(32),
+                payload_id INT,
+                death_count INT NOT NULL DEFAULT 1,
+                last_death BIGINT,
+                archived BOOLEAN NOT NULL DEFAULT FALSE,
+                UNIQUE KEY unique_meta_player_backup (player_uuid, backup_number),
+                INDEX idx_meta_listing (player_uuid, backup_number DESC, timestamp, event_type, world, death_count, archived)
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_payload (
+                backup_id INT PRIMARY KEY,
+                payload_format INT NOT NULL,
+                payload LONGBLOB,
+                archive_file VARCHAR(64),
+                archive_offset BIGINT
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_section (
+                section_hash VARCHAR(32) PRIMARY KEY,
+                payload LONGBLOB NOT NULL,
+                base_hash VARCHAR(32),
+                chain_depth INT NOT NULL DEFAULT 0,
+                INDEX idx_section_base (base_hash)
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_section_ref (
+                backup_id INT NOT NULL,
+                section_name VARCHAR(16) NOT NULL,
+                section_hash VARCHAR(32) NOT NULL,
+                PRIMARY KEY (backup_id, section_name),
+                INDEX idx_section_ref_hash (section_hash)
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_item (
+                item_hash VARCHAR(32) PRIMARY KEY,
+                item MEDIUMBLOB NOT NULL
+            );
+            """, """
+            CREATE TABLE IF NOT EXISTS backup_item_ref (
+                section_hash VARCHAR(32) NOT NULL,
+                item_hash VARCHAR(32) NOT NULL,
+                PRIMARY KEY (section_hash, item_hash),
+                INDEX idx_item_ref_item (item_hash)
+            );
+            """);
+    }
+
+    @Override
+    protected String addSectionBaseIndexSql() {
+        return "ALTER TABLE backup_section ADD INDEX idx_section_base (base_hash)";
+    }
+
+    @Override
+    protected String replaceSummaryIndexSql() {
+        return "ALTER TABLE backup_meta DROP INDEX idx_meta_summary,"
+            + " ADD INDEX idx_meta_listing (player_uuid, backup_number DESC, timestamp, event_type, world, death_count, archived)";
+    }
+
+    @Override
+    protected String blobType() {
+        return "LONGBLOB";
+    }
+
+    /**
+     * Connects to the MySQL server and creates the specified database if it doesn't already exist.
+     */
+    private static void createDatabaseIfNeeded(String host, int port, String dbName, String user, String pass, boolean useSSL) {
+        // JDBC URL without a specific database. We connect to the server itself.
+        String tempUrl = String.format("jdbc:mysql://%s:%d?allowPublicKeyRetrieval=true&useSSL=%b&connectTimeout=5000", host, port, useSSL);
+
+        LOGGER.info("Verifying database '{}' exists...", dbName);
+
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            LOGGER.error("MySQL JDBC driver not found, cannot create database.", e);
+            return; // Cannot proceed
+        }
+
+        try (Connection conn = DriverManager.getConnection(tempUrl, user, pass);
+             Statement stmt = conn.createStatement()) {
+
+            // Use backticks to safely handle db names that might be reserved words
+            String createDbSql = "CREATE DATABASE IF NOT EXISTS `" + dbName + "`";
+            stmt.executeUpdate(createDbSql);
+            LOGGER.info("Database '{}' is ready.", dbName);
+
+        } catch (SQLException e) {
+            LOGGER.error("Failed to automatically create MySQL database '{}'.", dbName, e);
+            LOGGER.error("Please check your MySQL connection settings and ensure the user '{}' has 'CREATE' privileges.", user);
+        }
+    }
+
+    /**
+     * Builds the MySQL JDBC URL with all necessary parameters.
+     * @return The full JDBC URL string.
+     */
+    private static String buildMysqlUrl(String host, int port, String database, boolean useSSL, String extraParams) {
+        StringBuilder urlBuilder = new StringBuilder();
+        urlBuilder.append("jdbc:mysql://").append(host).append(":").append(port).append("/").append(database);
+
+        // Build parameters
+        List<String> params = new ArrayList<>();
+        params.add("useSSL=" + useSSL);
+        params.add("allowPublicKeyRetrieval=true"); // Required for modern MySQL/MariaDB
+        params.add("connectTimeout=5000"); // 5-second connection timeout
+
+        if (extraParams != null && !extraParams.trim().isEmpty()) {
+            params.add(extraParams);
+        }
+
+        urlBuilder.append("?").append(String.join("&", params));
+        return urlBuilder.toString();
+    }
+}
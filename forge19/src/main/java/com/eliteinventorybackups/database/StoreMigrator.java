@@ -0,0 +1,575 @@
+package com.eliteinventorybackups.database;
+
+import com.eliteinventorybackups.config.ModConfig;
+import com.eliteinventorybackups.database.BackupStore.BackupPosition;
+import com.eliteinventorybackups.database.BackupStore.NumberedBackup;
+import com.eliteinventorybackups.model.BackupEntry;
+import com.eliteinventorybackups.model.BackupSummary;
+import com.eliteinventorybackups.util.BackupEntryTags;
+import com.eliteinventorybackups.util.NbtPayloadCodec;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.mojang.logging.LogUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Moves every backup from the running engine to MySQL while the server keeps going ({@code /eib migrate}).
+ * <ol>
+ *     <li>Changes start going to both engines through a {@link MigratingBackupStore}.</li>
+ *     <li>The existing backups are copied in 16 ranges of player UUIDs (by first hex digit), several at a time,
+ *     a page per transaction. Backup numbers are kept and numbers already on the target are skipped, so anything
+ *     copied twice is stored once.</li>
+ *     <li>Every range is read back from both engines and compared per player, by backup count and a checksum of
+ *     the backups' contents. Players that differ, or that were changed by a delete meanwhile, are fixed up and
+ *     compared again.</li>
+ *     <li>Changes are paused for the final check of the players changed since, then the {@link DatabaseManager}
+ *     switches to MySQL and the old engine is closed.</li>
+ * </ol>
+ * A failure or cancel at any point leaves the server on the old engine; a new migration can start over on the
+ * same target since nothing is copied twice.
+ */
+public class StoreMigrator {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int RANGES = 16;
+    private static final int MAX_FIX_PASSES = 5;
+    private static final int IMPORT_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    // Reads that picked up the old engine just before the switch get this long to finish before it closes
+    private static final long CLOSE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    public enum Phase { CONNECTING, COPYING, VERIFYING, FIXING, SWITCHING, DONE, FAILED, CANCELLED }
+
+    private final DatabaseManager databaseManager;
+    private final BackupStore source;
+    private final Supplier<BackupStore> targetFactory;
+    private final int chunkSize;
+    private final ExecutorService controller;
+    private final ExecutorService workers;
+    @Nullable
+    private volatile MigratingBackupStore migratingStore;
+
+    private volatile Phase phase = Phase.CONNECTING;
+    private volatile boolean cancelled = false;
+    // Set when one worker fails, so the others stop at their next page
+    private volatile boolean failing = false;
+    @Nullable
+    private volatile String result;
+    private final long startedAt = System.currentTimeMillis();
+    private volatile long finishedAt;
+    private volatile long frozenMillis;
+    private volatile long lastLogged = startedAt;
+
+    // Progress
+    private final LongAdder copied = new LongAdder();
+    private final LongAdder alreadyCopied = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder fixedPlayers = new LongAdder();
+    private final AtomicInteger rangesDone = new AtomicInteger();
+    // Per range, the high bits of the last player copied; how far through the range the copy is
+    private final AtomicLongArray rangePosition = new AtomicLongArray(RANGES);
+    private final AtomicIntegerArray rangeCopied = new AtomicIntegerArray(RANGES);
+
+    StoreMigrator(DatabaseManager databaseManager, BackupStore source, Supplier<BackupStore> targetFactory) {
+        this.databaseManager = databaseManager;
+        this.source = source;
+        this.targetFactory = targetFactory;
+        this.chunkSize = ModConfig.SERVER.migrationChunkSize.get();
+        this.controller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EIB-Migration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = Executors.newFixedThreadPool(ModConfig.SERVER.migrationThreads.get(), runnable -> {
+            Thread thread = new Thread(runnable, "EIB-Migration-Copy");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        controller.execute(this::run);
+    }
+
+    private void run() {
+        BackupStore target = null;
+        try {
+            LOGGER.info("Starting migration of all backups to MySQL");
+            target = targetFactory.get();
+            if (target.readBackupsAfter(null, 1) == null) {
+                throw new MigrationException("could not reach the MySQL database; check the [database.mysql] settings");
+            }
+            if (cancelled) {
+                throw new InterruptedException("Migration cancelled");
+            }
+
+            MigratingBackupStore store = new MigratingBackupStore(source, target);
+            migratingStore = store;
+            databaseManager.useStore(store);
+
+            phase = Phase.COPYING;
+            forEachRange(this::copyRange);
+            LOGGER.info("Migration copied {} backup(s) ({} were already there), verifying", copied.sum(), alreadyCopied.sum());
+
+            phase = Phase.VERIFYING;
+            forEachRange(range -> verifyRange(store, range));
+
+            for (int attempt = 1; ; attempt++) {
+                phase = Phase.FIXING;
+                fixDirtyPlayers(store);
+                phase = Phase.SWITCHING;
+                if (cutover(store, target)) {
+                    break;
+                }
+                if (attempt == MAX_FIX_PASSES) {
+                    throw new MigrationException(store.dirtyPlayerCount() + " player(s) still differ after " + attempt + " attempts to switch");
+                }
+            }
+            phase = Phase.DONE;
+            finish("Migration to MySQL finished: " + copied.sum() + " backup(s) copied, " + verified.sum() + " verified, "
+                + fixedPlayers.sum() + " player(s) fixed up, changes paused for " + frozenMillis + " ms.");
+
+            // The next start picks MySQL without anyone editing the config
+            try {
+                ModConfig.SERVER.databaseType.set(ModConfig.DatabaseType.MYSQL);
+                ModConfig.SERVER.databaseType.save();
+            } catch (Exception e) {
+                LOGGER.error("Could not save databaseType = MYSQL to the config; set it by hand before the next restart. Full error: ", e);
+            }
+            Thread.sleep(CLOSE_DELAY_MILLIS);
+            source.shutdown();
+        } catch (Exception e) {
+            if (phase == Phase.DONE) {
+                LOGGER.error("Could not close the old backup store after migrating. Full error: ", e);
+                return;
+            }
+            if (cancelled || e instanceof InterruptedException) {
+                phase = Phase.CANCELLED;
+                finish("Migration to MySQL cancelled; staying on " + ModConfig.SERVER.databaseType.get() + ".");
+            } else {
+                LOGGER.error("Migration to MySQL failed. Full error: ", e);
+                phase = Phase.FAILED;
+                finish("Migration to MySQL failed: " + e.getMessage() + ". Staying on " + ModConfig.SERVER.databaseType.get() + ".");
+            }
+            abort(target);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Fixes up the players that may differ until none are left. Changes keep coming in meanwhile, so this
+     * only gets the list short; {@link #cutover} deals with the rest.
+     */
+    private void fixDirtyPlayers(MigratingBackupStore store) throws Exception {
+        for (int pass = 1; pass <= MAX_FIX_PASSES; pass++) {
+            List<UUID> players = store.drainDirtyPlayers();
+            if (players.isEmpty()) {
+                return;
+            }
+            List<UUID> failed = fixPlayers(players);
+            failed.forEach(store::markDirty);
+            if (!failed.isEmpty()) {
+                LOGGER.warn("{} player(s) still differ between the old database and MySQL after fixing them up, e.g. {}", failed.size(), failed.get(0));
+            }
+        }
+    }
+
+    /**
+     * Checks the players changed since they were verified with changes paused, then switches engines.
+     * @return False if some still differ; they are marked dirty again and the server stays on the old engine
+     */
+    private boolean cutover(MigratingBackupStore store, BackupStore target) throws Exception {
+        long frozenAt = System.currentTimeMillis();
+        store.freeze();
+        boolean switched = false;
+        try {
+            List<UUID> failed = fixPlayers(store.drainDirtyPlayers());
+            if (!failed.isEmpty()) {
+                failed.forEach(store::markDirty);
+                LOGGER.warn("{} player(s) differ at the switch, trying again", failed.size());
+                return false;
+            }
+            databaseManager.useStore(target);
+            switched = true;
+        } finally {
+            store.unfreeze(switched);
+            frozenMillis = System.currentTimeMillis() - frozenAt;
+        }
+        LOGGER.info("Switched to MySQL after pausing changes for {} ms", frozenMillis);
+        return true;
+    }
+
+    /**
+     * Puts the old engine back and closes the target, waiting for changes in flight so none is lost in between.
+     */
+    private void abort(@Nullable BackupStore target) {
+        MigratingBackupStore store = migratingStore;
+        if (store != null) {
+            store.freeze();
+            try {
+                databaseManager.useStore(source);
+            } finally {
+                store.unfreeze(false);
+            }
+        }
+        if (target != null) {
+            // Writes that got hold of the wrapper before the swap now fail on the target and only reach the source
+            target.shutdown();
+        }
+    }
+
+    private void finish(String message) {
+        result = message;
+        finishedAt = System.currentTimeMillis();
+        LOGGER.info(message);
+    }
+
+    /**
+     * Runs the task for every range on the worker threads and waits for all of them.
+     */
+    private void forEachRange(RangeTask task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int range = 0; range < RANGES; range++) {
+            int current = range;
+            futures.add(workers.submit(() -> {
+                task.run(current);
+                return null;
+            }));
+        }
+        waitFor(futures);
+    }
+
+    private void copyRange(int range) throws Exception {
+        scanRange(source, range, page -> {
+            int imported = importWithRetry(page);
+            copied.add(imported);
+            alreadyCopied.add(page.size() - imported);
+            rangePosition.set(range, page.get(page.size() - 1).entry().playerUuid().getMostSignificantBits());
+            logProgress();
+        });
+        rangeCopied.set(range, 1);
+        rangesDone.incrementAndGet();
+    }
+
+    /**
+     * Compares one range per player; players that differ are left for the fix-up.
+     */
+    private void verifyRange(MigratingBackupStore store, int range) throws Exception {
+        Map<UUID, Digest> sourceDigests = new HashMap<>();
+        Map<UUID, Digest> targetDigests = new HashMap<>();
+        scanRange(source, range, page -> {
+            addToDigests(sourceDigests, page);
+            verified.add(page.size());
+            logProgress();
+        });
+        scanRange(store.target(), range, page -> addToDigests(targetDigests, page));
+
+        Set<UUID> players = new HashSet<>(sourceDigests.keySet());
+        players.addAll(targetDigests.keySet());
+        for (UUID playerUuid : players) {
+            if (!Objects.equals(sourceDigests.get(playerUuid), targetDigests.get(playerUuid))) {
+                store.markDirty(playerUuid);
+            }
+        }
+    }
+
+    /**
+     * Makes each player's backups on the target match the source, in parallel.
+     * @return The players that still differ
+     */
+    private List<UUID> fixPlayers(List<UUID> players) throws Exception {
+        if (players.isEmpty()) {
+            return List.of();
+        }
+        Set<UUID> failed = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (UUID playerUuid : players) {
+            futures.add(workers.submit(() -> {
+                if (!fixPlayer(playerUuid)) {
+                    failed.add(playerUuid);
+                }
+                return null;
+            }));
+        }
+        waitFor(futures);
+        return new ArrayList<>(failed);
+    }
+
+    /**
+     * Brings one player's backups on the target in line with the source: extra old backups are trimmed and missing
+     * ones copied. If the numbers don't line up (the player's backups were removed and numbered again) or the
+     * contents still differ, the player is copied over from scratch.
+     * @return Whether both sides match afterwards
+     */
+    private boolean fixPlayer(UUID playerUuid) throws Exception {
+        BackupStore target = migratingStore.target();
+        List<BackupSummary> sourceSummaries = source.getBackupSummaries(playerUuid);
+        List<BackupSummary> targetSummaries = target.getBackupSummaries(playerUuid);
+        if (sourceSummaries == null || targetSummaries == null) {
+            return false;
+        }
+
+        Map<Integer, BackupSummary> extra = new HashMap<>();
+        for (BackupSummary summary : targetSummaries) {
+            extra.put(summary.id(), summary);
+        }
+        boolean conflict = false;
+        int lowestNumber = Integer.MAX_VALUE;
+        List<BackupSummary> missing = new ArrayList<>();
+        List<BackupSummary> recounted = new ArrayList<>();
+        for (BackupSummary summary : sourceSummaries) {
+            lowestNumber = Math.min(lowestNumber, summary.id());
+            BackupSummary onTarget = extra.remove(summary.id());
+            if (onTarget == null) {
+                missing.add(summary);
+            } else if (onTarget.timestamp() != summary.timestamp() || !Objects.equals(onTarget.eventType(), summary.eventType())) {
+                conflict = true;
+            } else if (onTarget.deathCount() != summary.deathCount()) {
+                // Deaths coalesced on the source after the backup was copied
+                recounted.add(summary);
+            }
+        }
+        for (int number : extra.keySet()) {
+            // Trimming can only drop the oldest backups
+            conflict |= number > lowestNumber;
+        }
+
+        if (!conflict) {
+            if (sourceSummaries.isEmpty()) {
+                target.removeAllBackupsForPlayer(playerUuid);
+            } else if (!extra.isEmpty()) {
+                target.trimBackupsForPlayer(playerUuid, targetSummaries.size() - extra.size());
+            }
+            for (BackupSummary summary : recounted) {
+                target.setDeathCount(playerUuid, summary.id(), summary.deathCount());
+            }
+            List<NumberedBackup> toCopy = new ArrayList<>();
+            for (BackupSummary summary : missing) {
+                BackupEntry entry = source.getBackupByNumber(playerUuid, summary.id());
+                if (entry != null) {
+                    toCopy.add(new NumberedBackup(summary.id(), entry, summary.deathCount(), summary.archived()));
+                }
+            }
+            if (!toCopy.isEmpty()) {
+                importWithRetry(toCopy);
+            }
+            if (digestPlayer(source, playerUuid).equals(digestPlayer(target, playerUuid))) {
+                fixedPlayers.increment();
+                return true;
+            }
+        }
+
+        LOGGER.debug("Copying all backups of player {} to MySQL again", playerUuid);
+        target.removeAllBackupsForPlayer(playerUuid);
+        scanPlayer(source, playerUuid, this::importWithRetry);
+        fixedPlayers.increment();
+        return digestPlayer(source, playerUuid).equals(digestPlayer(target, playerUuid));
+    }
+
+    private Digest digestPlayer(BackupStore store, UUID playerUuid) throws Exception {
+        Map<UUID, Digest> digests = new HashMap<>();
+        scanPlayer(store, playerUuid, page -> addToDigests(digests, page));
+        Digest digest = digests.get(playerUuid);
+        return digest != null ? digest : new Digest(0, 0);
+    }
+
+    private static void addToDigests(Map<UUID, Digest> digests, List<NumberedBackup> page) throws IOException {
+        for (NumberedBackup backup : page) {
+            // Numbers come along so a backup stored under another number counts as different, and the death count
+            // and archived flag so a coalesce or an archiving that only reached one side does too
+            long checksum = HASH.newHasher()
+                .putInt(backup.backupNumber())
+                .putInt(backup.deathCount())
+                .putBoolean(backup.archived())
+                .putBytes(NbtPayloadCodec.writeRaw(BackupEntryTags.toTag(backup.entry())))
+                .hash().asLong();
+            digests.merge(backup.entry().playerUuid(), new Digest(1, checksum),
+                (a, b) -> new Digest(a.count() + b.count(), a.checksum() + b.checksum()));
+        }
+    }
+
+    /**
+     * Pages through the backups of players whose UUID starts with the range's hex digit.
+     */
+    private void scanRange(BackupStore store, int range, PageConsumer consumer) throws Exception {
+        BackupPosition after = new BackupPosition(new UUID((long) range << 60, 0), 0);
+        scan(store, after, uuid -> uuid.getMostSignificantBits() >>> 60 == range, consumer);
+    }
+
+    private void scanPlayer(BackupStore store, UUID playerUuid, PageConsumer consumer) throws Exception {
+        scan(store, new BackupPosition(playerUuid, 0), playerUuid::equals, consumer);
+    }
+
+    /**
+     * Pages through backups from a position until the first one whose player is outside the scan.
+     */
+    private void scan(BackupStore store, BackupPosition after, Predicate<UUID> inScan, PageConsumer consumer) throws Exception {
+        while (true) {
+            if (cancelled || failing) {
+                throw new InterruptedException("Migration cancelled");
+            }
+            List<NumberedBackup> page = store.readBackupsAfter(after, chunkSize);
+            if (page == null) {
+                throw new MigrationException("could not read backups from " + (store == source ? "the old database" : "MySQL"));
+            }
+            int end = 0;
+            while (end < page.size() && inScan.test(page.get(end).entry().playerUuid())) {
+                end++;
+            }
+            if (end > 0) {
+                consumer.accept(page.subList(0, end));
+            }
+            if (end < page.size() || page.size() < chunkSize) {
+                return;
+            }
+            after = page.get(end - 1).position();
+        }
+    }
+
+    /**
+     * @return The number of backups stored; the rest were on the target already
+     */
+    private int importWithRetry(List<NumberedBackup> backups) throws Exception {
+        BackupStore target = migratingStore.target();
+        for (int attempt = 1; ; attempt++) {
+            int imported = target.importBackups(backups);
+            if (imported >= 0) {
+                return imported;
+            }
+            if (attempt == IMPORT_ATTEMPTS) {
+                throw new MigrationException("could not write backups to MySQL");
+            }
+            Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+        }
+    }
+
+    private void waitFor(List<Future<?>> futures) throws Exception {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // The other workers stop at their next page; the migration is over either way
+            failing = true;
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void logProgress() {
+        long now = System.currentTimeMillis();
+        if (now - lastLogged >= LOG_INTERVAL_MILLIS) {
+            lastLogged = now;
+            LOGGER.info("Migration {}: {} backup(s) copied, {} verified, about {}% done", phase.name().toLowerCase(),
+                copied.sum() + alreadyCopied.sum(), verified.sum(), getProgress().percent());
+        }
+    }
+
+    /**
+     * Asks the migration to stop and waits for it to put the old engine back.
+     */
+    void cancelAndWait(long timeoutMillis) {
+        cancel();
+        controller.shutdown();
+        try {
+            if (!controller.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Migration did not stop in time.");
+                controller.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            controller.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks the migration to stop at its next page. Has no effect once the switch has begun.
+     * @return False if it is no longer running
+     */
+    public boolean cancel() {
+        if (!isRunning() || phase == Phase.SWITCHING) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    public boolean isRunning() {
+        return finishedAt == 0;
+    }
+
+    public Progress getProgress() {
+        MigratingBackupStore store = migratingStore;
+        // Each range's share of the key space, scaled by how far through it the copy got
+        double done = 0;
+        for (int range = 0; range < RANGES; range++) {
+            // The UUID bits after the range's hex digit, as a fraction
+            done += rangeCopied.get(range) == 1 ? 1 : (double) ((rangePosition.get(range) << 4) >>> 11) / (1L << 53);
+        }
+        int percent = (int) (done * 100 / RANGES);
+        long end = finishedAt != 0 ? finishedAt : System.currentTimeMillis();
+        return new Progress(phase, percent, rangesDone.get(), RANGES, copied.sum(), alreadyCopied.sum(), verified.sum(),
+            store != null ? store.dualWrites() : 0, store != null ? store.missedWrites() : 0,
+            store != null ? store.dirtyPlayerCount() : 0, fixedPlayers.sum(), frozenMillis, end - startedAt, result);
+    }
+
+    /**
+     * @param percent How far the copy got; 100 from verification on
+     * @param copied Backups stored on the target by the copy
+     * @param alreadyCopied Backups the copy found on the target already
+     * @param dualWrites New backups saved to both engines meanwhile
+     * @param missedWrites New backups the target missed, fixed up before the switch
+     * @param pendingPlayers Players waiting to be compared again
+     */
+    public record Progress(Phase phase, int percent, int rangesDone, int ranges, long copied, long alreadyCopied, long verified,
+                           long dualWrites, long missedWrites, int pendingPlayers, long fixedPlayers, long frozenMillis,
+                           long elapsedMillis, @Nullable String result) {}
+
+    private record Digest(long count, long checksum) {}
+
+    @FunctionalInterface
+    private interface RangeTask {
+        void run(int range) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface PageConsumer {
+        void accept(List<NumberedBackup> page) throws Exception;
+    }
+
+    private static class MigrationException extends Exception {
+        MigrationException(String message) {
+            super(message);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.eliteinventorybackups.integration;
 
 import com.eliteinventorybackups.util.InventorySerializer;
 import com.mojang.logging.LogUtils;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.fml.ModList;
@@ -69,6 +70,20 @@ public class CuriosIntegration {
      * @return Serialized Curios inventory data, or null if not available
      */
     public static String backupCurios(ServerPlayer player) {
+        Map<String, List<ItemStack>> curiosSlots = captureCurios(player);
+        if (curiosSlots == null) {
+            return null;
+        }
+        return serializeCurios(curiosSlots);
+    }
+
+    /**
+     * Capture copies of all Curios stacks for a player without serializing them.
+     * Must be called on the server thread; the returned stacks are safe to serialize elsewhere.
+     * @param player The player to capture Curios for
+     * @return Map of slot type to copied stacks, or null if not available
+     */
+    public static Map<String, List<ItemStack>> captureCurios(ServerPlayer player) {
         if (!isAvailable) {
             return null;
         }
@@ -78,7 +93,7 @@ public class CuriosIntegration {
             Object curiosHandlerResult = getCuriosInventoryMethod.invoke(curiosHelper, player);
             
             if (curiosHandlerResult == null) {
-                return "{}"; // Empty curios
+                return new HashMap<>(); // Empty curios
             }
             
             // Handle LazyOptional result
@@ -91,7 +106,7 @@ public class CuriosIntegration {
             }
             
             if (curiosHandler == null) {
-                return "{}";
+                return new HashMap<>();
             }
             
             // Get all curios slots using getCurios() method
@@ -109,18 +124,19 @@ public class CuriosIntegration {
                     if (slotHandler != null) {
                         List<ItemStack> slotStacks = extractStacksFromSlot(slotHandler);
                         if (!slotStacks.isEmpty()) {
-                            curiosSlots.put(slotType, slotStacks);
+                            // Copy so the snapshot is not affected by later changes to the live stacks
+                            List<ItemStack> copies = new ArrayList<>(slotStacks.size());
+                            for (ItemStack stack : slotStacks) {
+                                copies.add(stack.copy());
+                            }
+                            curiosSlots.put(slotType, copies);
                         }
                     }
                 }
             }
             
-            String serializedData = serializeCuriosData(curiosSlots);
-            LOGGER.info("Backed up Curios for player {}: {} slot types, serialized data: {}", 
-                player.getName().getString(), 
-                curiosSlots.size(),
-                serializedData.length() > 200 ? serializedData.substring(0, 200) + "..." : serializedData);
-            return serializedData;
+            LOGGER.debug("Captured Curios for player {}: {} slot types", player.getName().getString(), curiosSlots.size());
+            return curiosSlots;
             
         } catch (Exception e) {
             LOGGER.error("Failed to backup Curios for player {}: {}", player.getName().getString(), e.getMessage(), e);
@@ -163,10 +179,24 @@ public class CuriosIntegration {
         if (!isAvailable || curiosData == null || curiosData.isEmpty() || curiosData.equals("{}")) {
             return false;
         }
-        
+        return restoreCurios(player, deserializeCuriosData(curiosData));
+    }
+
+    /**
+     * Restore Curios items for a player from the tag layout produced by {@link #curiosToTag}
+     * @param player The player to restore Curios for
+     * @param curiosTag Curios slot type to serialized stacks
+     * @return true if restoration was successful
+     */
+    public static boolean restoreCurios(ServerPlayer player, CompoundTag curiosTag) {
+        if (!isAvailable || curiosTag == null || curiosTag.isEmpty()) {
+            return false;
+        }
+        return restoreCurios(player, curiosFromTag(curiosTag));
+    }
+
+    private static boolean restoreCurios(ServerPlayer player, Map<String, List<ItemStack>> curiosSlots) {
         try {
-            // Parse the curios data
-            Map<String, List<ItemStack>> curiosSlots = deserializeCuriosData(curiosData);
             if (curiosSlots.isEmpty()) {
                 return true;
             }
@@ -389,7 +419,7 @@ public class CuriosIntegration {
     /**
      * Serialize curios data to JSON-like string format
      */
-    private static String serializeCuriosData(Map<String, List<ItemStack>> curiosSlots) {
+    public static String serializeCurios(Map<String, List<ItemStack>> curiosSlots) {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
         
@@ -412,6 +442,41 @@ public class CuriosIntegration {
         return sb.toString();
     }
     
+    /**
+     * Convert captured curios stacks to a CompoundTag of slot type to serialized stacks
+     */
+    public static CompoundTag curiosToTag(Map<String, List<ItemStack>> curiosSlots) {
+        CompoundTag curiosTag = new CompoundTag();
+        for (Map.Entry<String, List<ItemStack>> entry : curiosSlots.entrySet()) {
+            curiosTag.put(entry.getKey(), InventorySerializer.serializeItemList(entry.getValue()));
+        }
+        return curiosTag;
+    }
+
+    /**
+     * Read a CompoundTag produced by {@link #curiosToTag} back into slot type to stacks
+     */
+    public static Map<String, List<ItemStack>> curiosFromTag(CompoundTag curiosTag) {
+        Map<String, List<ItemStack>> curiosSlots = new HashMap<>();
+        for (String slotType : curiosTag.getAllKeys()) {
+            List<ItemStack> stacks = InventorySerializer.deserializeItemList(curiosTag.getCompound(slotType));
+            if (!stacks.isEmpty()) {
+                curiosSlots.put(slotType, stacks);
+            }
+        }
+        return curiosSlots;
+    }
+
+    /**
+     * Convert legacy JSON-like curios text from older backups into the tag layout used by {@link #curiosToTag}
+     */
+    public static CompoundTag parseLegacyCurios(String curiosData) {
+        if (curiosData == null || curiosData.isEmpty() || curiosData.equals("{}")) {
+            return new CompoundTag();
+        }
+        return curiosToTag(deserializeCuriosData(curiosData));
+    }
+    
     /**
      * Deserialize curios data from JSON-like string format
      */
@@ -26,28 +26,63 @@ public class GenericNbtIntegration {
     );
     
     /**
-     * Backup all player NBT data, excluding paths handled by specific integrations
-     * @param player The player to backup
-     * @return Serialized player NBT data, or null if failed
+     * Capture the player's full NBT on the server thread. Filtering is left to
+     * {@link #filterCapturedNbt} so it can run off-thread.
+     * @param player The player to capture
+     * @return The player's saved NBT, or null if failed
      */
-    public static String backupPlayerNbt(ServerPlayer player) {
+    public static CompoundTag capturePlayerNbt(ServerPlayer player) {
         try {
-            // Get full player NBT
             CompoundTag fullNbt = new CompoundTag();
             player.save(fullNbt);
-            
+            return fullNbt;
+        } catch (Exception e) {
+            LOGGER.error("Failed to backup player NBT for {}: {}", player.getName().getString(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Filter NBT previously captured with {@link #capturePlayerNbt}
+     * @param fullNbt The captured player NBT
+     * @param playerName Player name for logging
+     * @return The modded portion of the player NBT (empty if there is none), or null if failed
+     */
+    public static CompoundTag filterCapturedNbt(CompoundTag fullNbt, String playerName) {
+        if (fullNbt == null) {
+            return null;
+        }
+        
+        try {
             // Filter out data handled by specific integrations
             CompoundTag filteredNbt = filterNbtData(fullNbt);
             
             // Only return if there's actual modded data
             if (hasModdedInventoryData(filteredNbt)) {
-                return filteredNbt.toString();
+                return filteredNbt;
             } else {
-                return "{}"; // No modded data to backup
+                return new CompoundTag(); // No modded data to backup
             }
             
         } catch (Exception e) {
-            LOGGER.error("Failed to backup player NBT for {}: {}", player.getName().getString(), e.getMessage(), e);
+            LOGGER.error("Failed to backup player NBT for {}: {}", playerName, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Convert generic NBT text from older backups into a CompoundTag
+     * @param nbtData Serialized NBT data
+     * @return The parsed NBT, or null if there was none or it could not be parsed
+     */
+    public static CompoundTag parseLegacyNbt(String nbtData) {
+        if (nbtData == null || nbtData.isEmpty()) {
+            return null;
+        }
+        try {
+            return TagParser.parseTag(nbtData);
+        } catch (Exception e) {
+            LOGGER.error("Failed to parse legacy player NBT: {}", e.getMessage(), e);
             return null;
         }
     }
@@ -55,17 +90,15 @@ public class GenericNbtIntegration {
     /**
      * Restore player NBT data, being careful not to overwrite vanilla or specifically handled data
      * @param player The player to restore to
-     * @param nbtData Serialized NBT data
+     * @param nbtToRestore Backed up NBT data
      * @return true if restoration was successful
      */
-    public static boolean restorePlayerNbt(ServerPlayer player, String nbtData) {
-        if (nbtData == null || nbtData.isEmpty() || nbtData.equals("{}")) {
+    public static boolean restorePlayerNbt(ServerPlayer player, CompoundTag nbtToRestore) {
+        if (nbtToRestore == null || nbtToRestore.isEmpty()) {
             return true; // No data to restore is considered success
         }
         
         try {
-            CompoundTag nbtToRestore = TagParser.parseTag(nbtData);
-            
             // Get current player NBT
             CompoundTag currentNbt = new CompoundTag();
             player.save(currentNbt);
@@ -1,5 +1,7 @@
 package com.eliteinventorybackups.model;
 
+import net.minecraft.nbt.CompoundTag;
+
 import java.util.UUID;
 
 public record BackupEntry(
@@ -7,19 +9,19 @@ public record BackupEntry(
     UUID playerUuid,
     String playerName,
     long timestamp,
-    String eventType, // e.g., "login", "logout", "death", "manual"
+    String eventType, // e.g., "login", "logout", "death", "autosave", "manual"
     String world,
     double posX,
     double posY,
     double posZ,
     int experienceLevel,
     float experienceProgress,
-    String inventoryMain, // Serialized main inventory
-    String inventoryArmor, // Serialized armor inventory
-    String inventoryOffhand, // Serialized offhand inventory
-    String inventoryEnderChest, // Serialized Ender Chest inventory
+    CompoundTag inventoryMain, // Serialized main inventory ({Items, Size})
+    CompoundTag inventoryArmor, // Serialized armor inventory
+    CompoundTag inventoryOffhand, // Serialized offhand inventory
+    CompoundTag inventoryEnderChest, // Serialized Ender Chest inventory
     String causeOfDeath, // Nullable, only for death events
-    String inventoryCurios, // Nullable, for Curios/Baubles API if integrated
-    String playerNbt, // Nullable, generic NBT backup as fallback
-    String moddedInventories // Nullable, JSON of modded inventory data
+    CompoundTag inventoryCurios, // Nullable, Curios slot type -> serialized stacks
+    CompoundTag playerNbt, // Nullable, generic NBT backup as fallback
+    CompoundTag moddedInventories // Nullable, modded inventory data
 ) {} 
\ No newline at end of file
@@ -5,5 +5,7 @@ public record BackupSummary(
     int id,
     long timestamp,
     String eventType,
-    String world // Optional: maybe useful in summary
+    String world, // Optional: maybe useful in summary
+    int deathCount, // Deaths folded into this backup by death-loop coalescing, 1 for everything else
+    boolean archived // Inventories moved to an archive file by tiering; slower to load
 ) {} 
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.eliteinventorybackups.util;
+
+import com.eliteinventorybackups.model.BackupEntry;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Converts a whole {@link BackupEntry} to a single compound and back, for the file formats that store
+ * backups outside the database (journal, log store).
+ */
+public class BackupEntryTags {
+
+    public static CompoundTag toTag(BackupEntry entry) {
+        CompoundTag tag = new CompoundTag();
+        tag.putString("PlayerUuid", entry.playerUuid().toString());
+        tag.putString("PlayerName", entry.playerName());
+        tag.putLong("Timestamp", entry.timestamp());
+        tag.putString("EventType", entry.eventType());
+        putIfPresent(tag, "World", entry.world());
+        tag.putDouble("X", entry.posX());
+        tag.putDouble("Y", entry.posY());
+        tag.putDouble("Z", entry.posZ());
+        tag.putInt("XpLevel", entry.experienceLevel());
+        tag.putFloat("XpProgress", entry.experienceProgress());
+        tag.put("Main", entry.inventoryMain());
+        tag.put("Armor", entry.inventoryArmor());
+        tag.put("Offhand", entry.inventoryOffhand());
+        tag.put("Ender", entry.inventoryEnderChest());
+        putIfPresent(tag, "CauseOfDeath", entry.causeOfDeath());
+        putIfPresent(tag, "Curios", entry.inventoryCurios());
+        putIfPresent(tag, "Nbt", entry.playerNbt());
+        putIfPresent(tag, "Modded", entry.moddedInventories());
+        return tag;
+    }
+
+    /**
+     * The entry id is not stored; it comes back as 0.
+     */
+    public static BackupEntry fromTag(CompoundTag tag) {
+        return new BackupEntry(
+            0,
+            UUID.fromString(tag.getString("PlayerUuid")),
+            tag.getString("PlayerName"),
+            tag.getLong("Timestamp"),
+            tag.getString("EventType"),
+            tag.contains("World") ? tag.getString("World") : null,
+            tag.getDouble("X"),
+            tag.getDouble("Y"),
+            tag.getDouble("Z"),
+            tag.getInt("XpLevel"),
+            tag.getFloat("XpProgress"),
+            tag.getCompound("Main"),
+            tag.getCompound("Armor"),
+            tag.getCompound("Offhand"),
+            tag.getCompound("Ender"),
+            tag.contains("CauseOfDeath") ? tag.getString("CauseOfDeath") : null,
+            compoundOrNull(tag, "Curios"),
+            compoundOrNull(tag, "Nbt"),
+            compoundOrNull(tag, "Modded")
+        );
+    }
+
+    private static void putIfPresent(CompoundTag tag, String key, @Nullable String value) {
+        if (value != null) {
+            tag.putString(key, value);
+        }
+    }
+
+    private static void putIfPresent(CompoundTag tag, String key, @Nullable CompoundTag value) {
+        if (value != null) {
+            tag.put(key, value);
+        }
+    }
+
+    @Nullable
+    private static CompoundTag compoundOrNull(CompoundTag tag, String key) {
+        return tag.contains(key, Tag.TAG_COMPOUND) ? tag.getCompound(key) : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.eliteinventorybackups.util;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import net.minecraft.nbt.CompoundTag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Fingerprint of a backup's stored content, computed per section (main, armor, offhand, ender chest,
+ * curios, generic NBT, modded inventories). Two backups with equal fingerprints have identical payloads,
+ * and two sections with equal hashes have identical contents.
+ * Metadata such as position and experience is not part of the fingerprint.
+ */
+public record ContentFingerprint(Map<String, HashCode> sections) {
+    // Payload section keys, in the order they are combined
+    public static final List<String> SECTION_KEYS = List.of("main", "armor", "offhand", "ender", "curios", "nbt", "modded");
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    // Stands in for a section that is not present (e.g. Curios backup disabled)
+    private static final HashCode ABSENT = HashCode.fromBytes(new byte[16]);
+
+    /**
+     * Fingerprint a backup payload compound whose keys are {@link #SECTION_KEYS}.
+     */
+    public static ContentFingerprint of(CompoundTag payload) throws IOException {
+        Map<String, HashCode> sections = new HashMap<>();
+        for (String key : SECTION_KEYS) {
+            if (payload.contains(key)) {
+                sections.put(key, hash(payload.getCompound(key)));
+            }
+        }
+        return new ContentFingerprint(sections);
+    }
+
+    /**
+     * Hash a single section. Sections are hashed from their NbtIo encoding, before compression.
+     */
+    public static HashCode hash(CompoundTag section) throws IOException {
+        return HASH.hashBytes(NbtPayloadCodec.writeRaw(section));
+    }
+
+    /**
+     * The hash of one section as a 32 character hex string, or null if the section is not present.
+     */
+    public String section(String key) {
+        HashCode hash = sections.get(key);
+        return hash != null ? hash.toString() : null;
+    }
+
+    /**
+     * Whether both fingerprints have the same inventories. The generic player NBT is ignored,
+     * since it also holds position, health and the like.
+     */
+    public boolean sameInventories(ContentFingerprint other) {
+        for (String key : SECTION_KEYS) {
+            if (!key.equals("nbt") && !Objects.equals(sections.get(key), other.sections().get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The combined fingerprint as a 32 character hex string, as stored in the database.
+     */
+    public String combined() {
+        List<HashCode> ordered = new ArrayList<>(SECTION_KEYS.size());
+        for (String key : SECTION_KEYS) {
+            ordered.add(sections.getOrDefault(key, ABSENT));
+        }
+        return Hashing.combineOrdered(ordered).toString();
+    }
+}
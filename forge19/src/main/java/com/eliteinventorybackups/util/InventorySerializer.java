@@ -3,18 +3,11 @@ package com.eliteinventorybackups.util;
 import com.mojang.logging.LogUtils;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
-import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.TagParser;
 import net.minecraft.world.item.ItemStack;
 import org.slf4j.Logger;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 
 public class InventorySerializer {
@@ -28,7 +21,17 @@ public class InventorySerializer {
         if (items == null || items.isEmpty()) {
             return "{}"; // Empty NBT compound string
         }
+        return serializeItemList(items).toString(); // Converts CompoundTag to Mojangson string
+    }
+
+    /**
+     * Serializes a list of ItemStacks into a CompoundTag with an "Items" ListTag and the original "Size".
+     */
+    public static CompoundTag serializeItemList(List<ItemStack> items) {
         CompoundTag rootTag = new CompoundTag();
+        if (items == null || items.isEmpty()) {
+            return rootTag;
+        }
         ListTag itemListTag = new ListTag();
         for (int i = 0; i < items.size(); i++) {
             ItemStack stack = items.get(i);
@@ -41,7 +44,7 @@ public class InventorySerializer {
         }
         rootTag.put("Items", itemListTag);
         rootTag.putInt("Size", items.size()); // Store original size
-        return rootTag.toString(); // Converts CompoundTag to Mojangson string
+        return rootTag;
     }
 
     /**
@@ -61,7 +64,42 @@ public class InventorySerializer {
         }
         
         try {
-            CompoundTag rootTag = TagParser.parseTag(nbtString);
+            return deserializeItemList(TagParser.parseTag(nbtString));
+        } catch (Exception e) {
+            LOGGER.error("Failed to deserialize ItemStack list from NBT string: {}", nbtString, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Converts a legacy text section (Mojangson compound or ["{...}"] array) into the
+     * CompoundTag layout produced by {@link #serializeItemList}.
+     */
+    public static CompoundTag parseLegacyItemList(String nbtString) {
+        if (nbtString == null || nbtString.isEmpty() || nbtString.equals("{}")) {
+            return new CompoundTag();
+        }
+        if (nbtString.startsWith("[") && nbtString.endsWith("]")) {
+            return serializeItemList(deserializeLegacyArrayFormat(nbtString));
+        }
+        try {
+            return TagParser.parseTag(nbtString);
+        } catch (Exception e) {
+            LOGGER.error("Failed to parse legacy ItemStack list from NBT string: {}", nbtString, e);
+            return new CompoundTag();
+        }
+    }
+
+    /**
+     * Deserializes a CompoundTag produced by {@link #serializeItemList} back into a List of ItemStacks,
+     * keeping empty ItemStacks for empty slots.
+     */
+    public static List<ItemStack> deserializeItemList(CompoundTag rootTag) {
+        if (rootTag == null || rootTag.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        try {
             ListTag itemListTag = rootTag.getList("Items", CompoundTag.TAG_COMPOUND);
             
             // Get the original size if stored, otherwise estimate
@@ -87,7 +125,7 @@ public class InventorySerializer {
             }
             return items;
         } catch (Exception e) {
-            LOGGER.error("Failed to deserialize ItemStack list from NBT string: {}", nbtString, e);
+            LOGGER.error("Failed to deserialize ItemStack list from NBT: {}", rootTag, e);
             return new ArrayList<>();
         }
     }
@@ -0,0 +1,106 @@
+package com.eliteinventorybackups.util;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Swaps the items of an item list section for references into the shared item store and back.
+ * A referenced item is stored without its Slot and Count, so a stack of 64 cobblestone in slot 3 and
+ * one of 12 in slot 20 share the same stored item.
+ */
+public class ItemRefs {
+    private static final String REF_KEY = "Ref";
+
+    /**
+     * Replace each item of an item list section with {Slot, Count, Ref}. Other sections are returned unchanged.
+     * @param items Receives the referenced items, keyed by hash
+     */
+    public static CompoundTag intern(CompoundTag section, Map<String, CompoundTag> items) throws IOException {
+        if (!section.contains("Items", Tag.TAG_LIST)) {
+            return section;
+        }
+
+        CompoundTag interned = new CompoundTag();
+        for (String key : section.getAllKeys()) {
+            if (!key.equals("Items")) {
+                interned.put(key, section.get(key).copy());
+            }
+        }
+        ListTag refs = new ListTag();
+        ListTag stacks = section.getList("Items", Tag.TAG_COMPOUND);
+        for (int i = 0; i < stacks.size(); i++) {
+            CompoundTag stack = stacks.getCompound(i);
+            CompoundTag item = stack.copy();
+            item.remove("Slot");
+            item.remove("Count");
+            String hash = ContentFingerprint.hash(item).toString();
+            items.putIfAbsent(hash, item);
+
+            CompoundTag ref = new CompoundTag();
+            copyIfPresent(stack, ref, "Slot");
+            copyIfPresent(stack, ref, "Count");
+            ref.putString(REF_KEY, hash);
+            refs.add(ref);
+        }
+        interned.put("Items", refs);
+        return interned;
+    }
+
+    /**
+     * Hashes of the items a section refers to.
+     */
+    public static Set<String> refs(CompoundTag section) {
+        Set<String> hashes = new HashSet<>();
+        ListTag stacks = section.getList("Items", Tag.TAG_COMPOUND);
+        for (int i = 0; i < stacks.size(); i++) {
+            CompoundTag stack = stacks.getCompound(i);
+            if (stack.contains(REF_KEY, Tag.TAG_STRING)) {
+                hashes.add(stack.getString(REF_KEY));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Turn the references of a freshly loaded section back into full items, in place. Items stored in full (older backups) are kept as they are.
+     * @param items The referenced items, keyed by hash
+     */
+    public static CompoundTag resolve(CompoundTag section, Map<String, CompoundTag> items) throws IOException {
+        if (!section.contains("Items", Tag.TAG_LIST)) {
+            return section;
+        }
+
+        ListTag resolved = new ListTag();
+        ListTag stacks = section.getList("Items", Tag.TAG_COMPOUND);
+        for (int i = 0; i < stacks.size(); i++) {
+            CompoundTag stack = stacks.getCompound(i);
+            if (!stack.contains(REF_KEY, Tag.TAG_STRING)) {
+                resolved.add(stack);
+                continue;
+            }
+            CompoundTag item = items.get(stack.getString(REF_KEY));
+            if (item == null) {
+                throw new IOException("Stored item " + stack.getString(REF_KEY) + " is missing");
+            }
+            CompoundTag full = item.copy();
+            copyIfPresent(stack, full, "Slot");
+            copyIfPresent(stack, full, "Count");
+            resolved.add(full);
+        }
+        section.put("Items", resolved);
+        return section;
+    }
+
+    private static void copyIfPresent(CompoundTag from, CompoundTag to, String key) {
+        Tag value = from.get(key);
+        if (value != null) {
+            to.put(key, value.copy());
+        }
+    }
+}
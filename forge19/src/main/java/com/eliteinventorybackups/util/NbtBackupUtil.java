@@ -1,6 +1,5 @@
 package com.eliteinventorybackups.util;
 
-import com.eliteinventorybackups.config.ModConfig;
 import com.mojang.logging.LogUtils;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtUtils;
@@ -10,34 +9,6 @@ import org.slf4j.Logger;
 public class NbtBackupUtil {
     private static final Logger LOGGER = LogUtils.getLogger();
 
-    /**
-     * Backup player's NBT data as a fallback for unsupported mods
-     */
-    public static String backupPlayerNbt(ServerPlayer player) {
-        if (!ModConfig.SERVER.enableGenericNbtBackup.get()) {
-            return null;
-        }
-
-        try {
-            CompoundTag playerTag = new CompoundTag();
-            player.save(playerTag);
-            
-            // Remove position data (we store that separately)
-            playerTag.remove("Pos");
-            playerTag.remove("Dimension");
-            
-            // Remove basic inventory data (we store that separately too)
-            playerTag.remove("Inventory");
-            playerTag.remove("EnderItems");
-            
-            // Keep everything else (modded data, capabilities, etc.)
-            return playerTag.toString();
-        } catch (Exception e) {
-            LOGGER.error("Failed to backup player NBT for {}: {}", player.getName().getString(), e.getMessage());
-            return null;
-        }
-    }
-
     /**
      * Restore player NBT data
      */
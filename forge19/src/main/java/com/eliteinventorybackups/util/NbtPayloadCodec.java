@@ -0,0 +1,107 @@
+package com.eliteinventorybackups.util;
+
+import com.eliteinventorybackups.config.ModConfig;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Versioned binary encoding for backup payloads.
+ * <p>
+ * Layout: {@code [magic 0xEB][format version][codec][NbtIo body]}. The body is deflated when
+ * compression is enabled and the payload is large enough to benefit. The magic byte can never
+ * start a legacy SNBT string ('{' or '['), so readers can tell the formats apart.
+ */
+public class NbtPayloadCodec {
+    public static final byte MAGIC = (byte) 0xEB;
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final byte CODEC_RAW = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3;
+    // Below this size the deflate overhead outweighs any savings
+    private static final int MIN_COMPRESS_SIZE = 128;
+
+    /**
+     * Encode a compound using the configured compression level.
+     */
+    public static byte[] encode(CompoundTag tag) throws IOException {
+        return encode(tag, ModConfig.SERVER.payloadCompressionLevel.get());
+    }
+
+    /**
+     * Encode a compound. A compression level of 0 stores the NBT body uncompressed.
+     */
+    public static byte[] encode(CompoundTag tag, int compressionLevel) throws IOException {
+        byte[] body = writeRaw(tag);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + HEADER_SIZE);
+        out.write(MAGIC);
+        out.write(FORMAT_VERSION);
+        if (compressionLevel <= 0 || body.length < MIN_COMPRESS_SIZE) {
+            out.write(CODEC_RAW);
+            out.write(body);
+            return out.toByteArray();
+        }
+
+        out.write(CODEC_DEFLATE);
+        Deflater deflater = new Deflater(Math.min(compressionLevel, Deflater.BEST_COMPRESSION));
+        try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater)) {
+            deflaterOut.write(body);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a payload previously produced by {@link #encode}.
+     * @throws IOException if the data is not a supported binary payload
+     */
+    public static CompoundTag decode(byte[] data) throws IOException {
+        if (!isBinary(data)) {
+            throw new IOException("Not a binary backup payload");
+        }
+        if (data[1] > FORMAT_VERSION) {
+            throw new IOException("Unsupported backup payload version " + data[1]);
+        }
+
+        InputStream body = new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        if (data[2] == CODEC_DEFLATE) {
+            body = new InflaterInputStream(body);
+        } else if (data[2] != CODEC_RAW) {
+            throw new IOException("Unknown backup payload codec " + data[2]);
+        }
+        try (DataInputStream in = new DataInputStream(body)) {
+            return NbtIo.read(in, NbtAccounter.UNLIMITED);
+        }
+    }
+
+    /**
+     * Check whether the data starts with the binary payload header.
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC;
+    }
+
+    /**
+     * Write a compound with {@link NbtIo} without any header or compression.
+     */
+    public static byte[] writeRaw(CompoundTag tag) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            NbtIo.write(tag, out);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,148 @@
+package com.eliteinventorybackups.util;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Slot-level differences between two versions of a backup section.
+ * Item list sections (the {@link InventorySerializer#serializeItemList} layout) are diffed per slot,
+ * any other compound per top-level key.
+ */
+public class SectionDelta {
+    private static final Set<String> ITEM_LIST_KEYS = Set.of("Items", "Size");
+
+    /**
+     * Compute the delta that turns {@code base} into {@code target}.
+     * @return The delta, or null if it would not be meaningfully smaller than storing the target in full
+     */
+    @Nullable
+    public static CompoundTag diff(CompoundTag base, CompoundTag target) {
+        CompoundTag delta = isItemList(base) && isItemList(target) ? diffSlots(base, target) : diffKeys(base, target);
+        if (delta == null) {
+            return null;
+        }
+        // Replaying must give back exactly the same section, or its content hash would not match
+        return apply(base, delta).equals(target) ? delta : null;
+    }
+
+    /**
+     * Apply a delta produced by {@link #diff} to a copy of its base.
+     */
+    public static CompoundTag apply(CompoundTag base, CompoundTag delta) {
+        if (delta.contains("Slots")) {
+            Map<Integer, CompoundTag> slots = slotMap(base);
+            for (int slot : delta.getIntArray("Cleared")) {
+                slots.remove(slot);
+            }
+            ListTag changed = delta.getList("Slots", Tag.TAG_COMPOUND);
+            for (int i = 0; i < changed.size(); i++) {
+                CompoundTag item = changed.getCompound(i);
+                slots.put(item.getByte("Slot") & 0xFF, item);
+            }
+
+            CompoundTag result = new CompoundTag();
+            ListTag items = new ListTag();
+            for (CompoundTag item : slots.values()) {
+                items.add(item.copy());
+            }
+            result.put("Items", items);
+            if (delta.contains("Size")) {
+                result.putInt("Size", delta.getInt("Size"));
+            }
+            return result;
+        }
+
+        CompoundTag result = base.copy();
+        ListTag removed = delta.getList("Removed", Tag.TAG_STRING);
+        for (int i = 0; i < removed.size(); i++) {
+            result.remove(removed.getString(i));
+        }
+        CompoundTag set = delta.getCompound("Set");
+        for (String key : set.getAllKeys()) {
+            result.put(key, set.get(key).copy());
+        }
+        return result;
+    }
+
+    @Nullable
+    private static CompoundTag diffSlots(CompoundTag base, CompoundTag target) {
+        Map<Integer, CompoundTag> baseSlots = slotMap(base);
+        Map<Integer, CompoundTag> targetSlots = slotMap(target);
+
+        ListTag changed = new ListTag();
+        for (Map.Entry<Integer, CompoundTag> slot : targetSlots.entrySet()) {
+            if (!slot.getValue().equals(baseSlots.get(slot.getKey()))) {
+                changed.add(slot.getValue().copy());
+            }
+        }
+        List<Integer> cleared = new ArrayList<>();
+        for (Integer slot : baseSlots.keySet()) {
+            if (!targetSlots.containsKey(slot)) {
+                cleared.add(slot);
+            }
+        }
+        // Rewriting most of the inventory: a keyframe is about as small and cheaper to read back
+        if ((changed.size() + cleared.size()) * 2 > Math.max(targetSlots.size(), 1)) {
+            return null;
+        }
+
+        CompoundTag delta = new CompoundTag();
+        delta.put("Slots", changed);
+        delta.putIntArray("Cleared", cleared.stream().mapToInt(Integer::intValue).toArray());
+        if (target.contains("Size")) {
+            delta.putInt("Size", target.getInt("Size"));
+        }
+        return delta;
+    }
+
+    @Nullable
+    private static CompoundTag diffKeys(CompoundTag base, CompoundTag target) {
+        CompoundTag set = new CompoundTag();
+        for (String key : target.getAllKeys()) {
+            Tag value = target.get(key);
+            if (!value.equals(base.get(key))) {
+                set.put(key, value.copy());
+            }
+        }
+        ListTag removed = new ListTag();
+        for (String key : base.getAllKeys()) {
+            if (!target.contains(key)) {
+                removed.add(StringTag.valueOf(key));
+            }
+        }
+        if (set.size() * 2 > Math.max(target.size(), 1)) {
+            return null;
+        }
+
+        CompoundTag delta = new CompoundTag();
+        delta.put("Set", set);
+        delta.put("Removed", removed);
+        return delta;
+    }
+
+    private static boolean isItemList(CompoundTag tag) {
+        return tag.contains("Items", Tag.TAG_LIST) && ITEM_LIST_KEYS.containsAll(tag.getAllKeys());
+    }
+
+    /**
+     * Items of an item list section by slot, in slot order (the order {@link InventorySerializer} writes them in).
+     */
+    private static Map<Integer, CompoundTag> slotMap(CompoundTag section) {
+        Map<Integer, CompoundTag> slots = new TreeMap<>();
+        ListTag items = section.getList("Items", Tag.TAG_COMPOUND);
+        for (int i = 0; i < items.size(); i++) {
+            CompoundTag item = items.getCompound(i);
+            slots.put(item.getByte("Slot") & 0xFF, item);
+        }
+        return slots;
+    }
+}